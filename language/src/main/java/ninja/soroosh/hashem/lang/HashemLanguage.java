@@ -8,8 +8,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CallTarget;
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.Option;
 import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.Scope;
 import com.oracle.truffle.api.Truffle;
@@ -28,13 +30,20 @@ import com.oracle.truffle.api.nodes.RootNode;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.source.SourceSection;
 import ninja.soroosh.hashem.lang.builtins.HashemBuiltinNode;
+import org.graalvm.options.OptionCategory;
+import org.graalvm.options.OptionDescriptors;
+import org.graalvm.options.OptionKey;
+import org.graalvm.options.OptionStability;
 import ninja.soroosh.hashem.lang.nodes.HashemEvalRootNode;
 import ninja.soroosh.hashem.lang.nodes.local.HashemLexicalScope;
 import ninja.soroosh.hashem.lang.parser.HashemLanguageParser;
 import ninja.soroosh.hashem.lang.runtime.HashemContext;
 import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
 import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.HashemArray;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
 import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemRope;
 
 @TruffleLanguage.Registration(id = HashemLanguage.ID, name = "Hashemi", defaultMimeType = HashemLanguage.MIME_TYPE, characterMimeTypes = HashemLanguage.MIME_TYPE, contextPolicy = ContextPolicy.SHARED, fileTypeDetectors = HashemFileDetector.class)
 @ProvidedTags({StandardTags.CallTag.class, StandardTags.StatementTag.class, StandardTags.RootTag.class, StandardTags.RootBodyTag.class, StandardTags.ExpressionTag.class,
@@ -45,15 +54,41 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
     public static final String ID = "hashemi";
     public static final String MIME_TYPE = "application/x-hashem";
 
+    @Option(help = "Bind all web servers with SO_REUSEPORT on the nio engine, so that several worker processes share their ports.", category = OptionCategory.EXPERT, stability = OptionStability.STABLE) //
+    public static final OptionKey<Boolean> WebReusePort = new OptionKey<>(false);
+
+    @Option(help = "File the summed numbers of all web servers are written to every second, read by the worker supervisor.", category = OptionCategory.EXPERT, stability = OptionStability.STABLE) //
+    public static final OptionKey<String> WebStatsFile = new OptionKey<>("");
+
+    /**
+     * Valid as long as this language instance is used by a single context only. Nodes may cache
+     * context-specific values, like resolved functions, while it holds.
+     */
+    private final Assumption singleContext = Truffle.getRuntime().createAssumption("Single Hashemi context.");
+
     public HashemLanguage() {
         counter++;
     }
 
+    @Override
+    protected void initializeMultipleContexts() {
+        singleContext.invalidate();
+    }
+
+    public Assumption getSingleContext() {
+        return singleContext;
+    }
+
     @Override
     protected HashemContext createContext(Env env) {
         return new HashemContext(this, env, new ArrayList<>(EXTERNAL_BUILTINS));
     }
 
+    @Override
+    protected OptionDescriptors getOptionDescriptors() {
+        return new HashemLanguageOptionDescriptors();
+    }
+
     @Override
     protected boolean isThreadAccessAllowed(Thread thread, boolean singleThreaded) {
         return true;
@@ -126,7 +161,7 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
     protected boolean isObjectOfLanguage(Object object) {
         if (!(object instanceof TruffleObject)) {
             return false;
-        } else if (object instanceof HashemBigNumber || object instanceof HashemBebin || object instanceof HashemPooch) {
+        } else if (object instanceof HashemBigNumber || object instanceof HashemRope || object instanceof HashemArray || object instanceof HashemMap || object instanceof HashemBebin || object instanceof HashemPooch) {
             return true;
         } else if (HashemContext.isSLObject(object)) {
             return true;
@@ -146,7 +181,9 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
                 return "ANY";
             }
             InteropLibrary interop = InteropLibrary.getFactory().getUncached(value);
-            if (interop.fitsInLong(value)) {
+            if (value instanceof Double) {
+                return Double.toString((double) value);
+            } else if (interop.fitsInLong(value)) {
                 return Long.toString(interop.asLong(value));
             } else if (interop.isBoolean(value)) {
                 return Boolean.toString(interop.asBoolean(value));
@@ -162,6 +199,8 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
                 }
             } else if (interop.hasMembers(value)) {
                 return "Object";
+            } else if (interop.hasArrayElements(value)) {
+                return "Array";
             } else if (value instanceof HashemBigNumber) {
                 return value.toString();
             } else {
@@ -195,6 +234,8 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
             return "Function";
         } else if (interop.hasMembers(value)) {
             return "Object";
+        } else if (interop.hasArrayElements(value)) {
+            return "Array";
         } else {
             return "Unsupported";
         }
@@ -265,6 +306,7 @@ public final class HashemLanguage extends TruffleLanguage<HashemContext> {
 
     @Override
     protected void disposeContext(HashemContext context) {
+        context.dispose();
         super.disposeContext(context);
     }
 
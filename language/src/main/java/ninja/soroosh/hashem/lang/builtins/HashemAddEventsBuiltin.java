@@ -0,0 +1,48 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEventChannel;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEventHub;
+
+/**
+ * Builtin function that installs a stream of server-sent events:
+ * {@code akhbar = addEvents(server, "/akhbar")} answers every {@code GET /akhbar} with a
+ * {@code text/event-stream} that stays open, and {@code akhbar.send("salam")} sends an event to
+ * all subscribers, see {@link HashemWebEventHub}.
+ * <p>
+ * With {@code addEvents(server, "/akhbar", handler)} the handler is called for every new
+ * subscriber with the request and its {@link HashemWebEventChannel}. The subscribers are parked on
+ * the selector of the server, so event streams need the {@code nio} engine.
+ */
+@NodeInfo(shortName = "addEvents")
+public abstract class HashemAddEventsBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    @SuppressWarnings("unused")
+    public HashemWebEventHub addEvents(HashemWebServer server, String path, HashemPooch handler) {
+        return doAddEvents(server, path, null);
+    }
+
+    @Specialization
+    public HashemWebEventHub addEvents(HashemWebServer server, String path, HashemBebin handler) {
+        return doAddEvents(server, path, handler);
+    }
+
+    @TruffleBoundary
+    private HashemWebEventHub doAddEvents(HashemWebServer server, String path, HashemBebin handler) {
+        if (!path.startsWith("/")) {
+            throw new HashemException("addEvents path must start with /, got \"" + path + "\"", this);
+        }
+        try {
+            return server.addEvents(path, handler);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new HashemException("addEvents: " + e.getMessage(), this);
+        }
+    }
+}
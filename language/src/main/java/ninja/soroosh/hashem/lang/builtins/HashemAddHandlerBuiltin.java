@@ -1,49 +1,74 @@
 package ninja.soroosh.hashem.lang.builtins;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
-import com.oracle.truffle.api.dsl.Cached;
-import com.oracle.truffle.api.dsl.CachedContext;
 import com.oracle.truffle.api.dsl.Specialization;
-import com.oracle.truffle.api.nodes.IndirectCallNode;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.library.CachedLibrary;
 import com.oracle.truffle.api.nodes.NodeInfo;
-import com.oracle.truffle.api.object.DynamicObject;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.nodes.web.HashemWebResponseNode;
 import ninja.soroosh.hashem.lang.runtime.HashemBebin;
-import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
 import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRequest;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponseCache;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRouteOptions;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRouter;
 
-import java.io.IOException;
+import java.util.Locale;
 
+/**
+ * Builtin function that installs a bebin as a handler of a web server. The handler is called with
+ * a {@link HashemWebRequest} as its only argument and answers with an object that has a
+ * {@code status}, a {@code body} and optionally {@code headers}, see {@link HashemWebResponseNode}.
+ * <p>
+ * {@code addHandler(server, "GET", "/users/:id", handler)} registers the handler for one method
+ * and path pattern, the captured segments are available as {@code request.params.id}. The method
+ * {@code "*"} matches all methods. {@code addHandler(server, handler)} registers a handler for
+ * every request that no other route matches. See {@link HashemWebRouter}.
+ * <p>
+ * An object as the optional fifth argument configures the route, see
+ * {@link HashemWebRouteOptions}; e.g. with {@code cacheTtl} the responses of the route are served
+ * from a {@link HashemWebResponseCache}.
+ */
 @NodeInfo(shortName = "addHandler")
 public abstract class HashemAddHandlerBuiltin extends HashemBuiltinNode {
+
     @Specialization
-    public String addHandler(HashemWebServer server,
-                             HashemBebin source,
-                             @CachedContext(HashemLanguage.class) HashemContext context,
-                             @Cached() IndirectCallNode callNode) {
-        return doAddHandler(server, source, context, callNode);
+    @SuppressWarnings("unused")
+    public String addHandler(HashemWebServer server, HashemBebin handler, HashemPooch path, HashemPooch unused, HashemPooch options) {
+        doAddFallback(server, handler);
+        return "";
     }
 
-    @TruffleBoundary
-    public String doAddHandler(HashemWebServer server, HashemBebin source, HashemContext context, IndirectCallNode callNode) {
-        server.getValue().createContext("/", new HttpHandler() {
-            @Override
-            public void handle(HttpExchange exchange) throws IOException {
-                try {
-                    DynamicObject answer = (DynamicObject) callNode.call(source.getCallTarget());
-                    int rCode = ((Long) answer.get("status", 200)).intValue();
-                    String body = (String) answer.get("body", "");
-                    byte[] response = body.getBytes();
-                    exchange.sendResponseHeaders(rCode, response.length);
-                    exchange.getResponseBody().write(response);
-                    exchange.getResponseBody().close();
-                } catch (Throwable e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+    @Specialization
+    @SuppressWarnings("unused")
+    public String addHandler(HashemWebServer server, String method, String path, HashemBebin handler, HashemPooch options) {
+        doAddRoute(server, method, path, handler, HashemWebRouteOptions.defaults());
+        return "";
+    }
+
+    @Specialization(guards = "objects.hasMembers(options)", limit = "3")
+    public String addHandler(HashemWebServer server, String method, String path, HashemBebin handler, Object options,
+                             @CachedLibrary("options") InteropLibrary objects) {
+        doAddRoute(server, method, path, handler, HashemWebRouteOptions.fromObject(options, this));
         return "";
     }
+
+    @TruffleBoundary
+    private void doAddFallback(HashemWebServer server, HashemBebin handler) {
+        server.addFallback(handler);
+    }
+
+    @TruffleBoundary
+    private void doAddRoute(HashemWebServer server, String method, String path, HashemBebin handler, HashemWebRouteOptions options) {
+        if (!path.startsWith("/")) {
+            throw new HashemException("addHandler path must start with /, got \"" + path + "\"", this);
+        }
+        try {
+            server.addRoute(method.toUpperCase(Locale.ROOT), path, handler, options);
+        } catch (IllegalArgumentException e) {
+            throw new HashemException("addHandler: " + e.getMessage(), this);
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemArray;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+
+/**
+ * Builtin function that creates a {@link HashemArray} of the given size. {@code araye(n)} starts
+ * with zeros, {@code araye(n, value)} with the value in every element; the type of the value picks
+ * the storage strategy the array starts with.
+ */
+@NodeInfo(shortName = "araye")
+public abstract class HashemArrayBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    @SuppressWarnings("unused")
+    public HashemArray araye(long size, HashemPooch value) {
+        return new HashemArray(new long[checkSize(size)]);
+    }
+
+    @Specialization
+    @TruffleBoundary
+    public HashemArray araye(long size, long value) {
+        long[] store = new long[checkSize(size)];
+        Arrays.fill(store, value);
+        return new HashemArray(store);
+    }
+
+    @Specialization
+    @TruffleBoundary
+    public HashemArray araye(long size, boolean value) {
+        boolean[] store = new boolean[checkSize(size)];
+        Arrays.fill(store, value);
+        return new HashemArray(store);
+    }
+
+    @Specialization
+    @TruffleBoundary
+    public HashemArray araye(long size, Object value) {
+        Object[] store = new Object[checkSize(size)];
+        Arrays.fill(store, value);
+        return new HashemArray(store);
+    }
+
+    private int checkSize(long size) {
+        if (size < 0 || size > HashemArray.MAX_SIZE) {
+            throw new HashemException("araye: size " + size + " is not between 0 and " + HashemArray.MAX_SIZE, this);
+        }
+        return (int) size;
+    }
+}
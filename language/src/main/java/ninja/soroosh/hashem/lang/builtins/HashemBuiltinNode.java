@@ -41,6 +41,11 @@ public abstract class HashemBuiltinNode extends HashemExpressionNode {
         return super.executeLong(frame);
     }
 
+    @Override
+    public final double executeDouble(VirtualFrame frame) throws UnexpectedResultException {
+        return super.executeDouble(frame);
+    }
+
     @Override
     public final void executeVoid(VirtualFrame frame) {
         super.executeVoid(frame);
@@ -0,0 +1,20 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+
+/**
+ * Builtin function that creates a {@link HashemWebFuture} without a value, to be completed later
+ * with {@code future.complete(value)}.
+ */
+@NodeInfo(shortName = "future")
+public abstract class HashemFutureBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    @TruffleBoundary
+    public HashemWebFuture future() {
+        return new HashemWebFuture();
+    }
+}
@@ -6,14 +6,20 @@ import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.library.CachedLibrary;
 import com.oracle.truffle.api.nodes.NodeInfo;
 import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
 
 /**
  * Built-in function that queries the size property of a foreign object. See
- * <link>Messages.GET_SIZE</link>.
+ * <link>Messages.GET_SIZE</link>. For a {@link HashemMap} it is the number of keys.
  */
 @NodeInfo(shortName = "getSize")
 public abstract class HashemGetSizeBuiltin extends HashemBuiltinNode {
 
+    @Specialization
+    public long getSize(HashemMap map) {
+        return map.getSize();
+    }
+
     @Specialization(limit = "3")
     public Object getSize(Object obj, @CachedLibrary("obj") InteropLibrary arrays) {
         try {
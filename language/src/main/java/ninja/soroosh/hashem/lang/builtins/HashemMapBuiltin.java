@@ -0,0 +1,19 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
+
+/**
+ * Builtin function that creates an empty {@link HashemMap}.
+ */
+@NodeInfo(shortName = "naghshe")
+public abstract class HashemMapBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    @TruffleBoundary
+    public HashemMap naghshe() {
+        return new HashemMap();
+    }
+}
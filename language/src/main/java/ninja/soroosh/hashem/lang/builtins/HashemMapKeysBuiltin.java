@@ -0,0 +1,19 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.HashemArray;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
+
+/**
+ * Builtin function that returns the keys of a {@link HashemMap} as an array, in the order they
+ * were added. The array is a copy, the map can be changed while iterating over it.
+ */
+@NodeInfo(shortName = "kelidha")
+public abstract class HashemMapKeysBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public HashemArray kelidha(HashemMap map) {
+        return new HashemArray(map.getKeys());
+    }
+}
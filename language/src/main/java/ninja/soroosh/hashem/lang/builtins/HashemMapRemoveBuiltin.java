@@ -0,0 +1,17 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
+
+/**
+ * Builtin function that removes a key from a {@link HashemMap} and returns whether it was there.
+ */
+@NodeInfo(shortName = "hazf")
+public abstract class HashemMapRemoveBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public boolean hazf(HashemMap map, Object key) {
+        return map.remove(key);
+    }
+}
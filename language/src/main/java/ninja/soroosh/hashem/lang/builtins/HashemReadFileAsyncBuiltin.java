@@ -0,0 +1,96 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Builtin function that reads a text file without blocking: {@code readFileAsync("safhe.html")}
+ * answers a {@link HashemWebFuture} that gets the content of the file, decoded as UTF-8. The file is
+ * read by an {@link AsynchronousFileChannel}, so a handler that answers with the future does not
+ * hold its worker while the file is read. A relative path is resolved against the current working
+ * directory of the context.
+ */
+@NodeInfo(shortName = "readFileAsync")
+public abstract class HashemReadFileAsyncBuiltin extends HashemBuiltinNode {
+
+    /** Largest file that is read, the content is held in memory as a whole. */
+    private static final long MAX_SIZE = 64 * 1024 * 1024;
+
+    @Specialization
+    public HashemWebFuture readFileAsync(String path, @CachedContext(HashemLanguage.class) HashemContext context) {
+        return doReadFileAsync(path, context);
+    }
+
+    @TruffleBoundary
+    private HashemWebFuture doReadFileAsync(String path, HashemContext context) {
+        AsynchronousFileChannel channel;
+        long size;
+        try {
+            TruffleFile file = context.getEnv().getPublicTruffleFile(path);
+            channel = AsynchronousFileChannel.open(Paths.get(file.getCanonicalFile().getPath()), StandardOpenOption.READ);
+            size = channel.size();
+        } catch (IOException | SecurityException e) {
+            throw new HashemException("readFileAsync can not read \"" + path + "\": " + e.getMessage(), this);
+        }
+        if (size > MAX_SIZE) {
+            close(channel);
+            throw new HashemException("readFileAsync: \"" + path + "\" is larger than " + MAX_SIZE + " bytes", this);
+        }
+        HashemWebFuture future = new HashemWebFuture();
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        channel.read(content, 0, content, new Reader(channel, future));
+        return future;
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            /* nothing was written */
+        }
+    }
+
+    /** Reads until the buffer is full or the file ends, then completes the future. */
+    private static final class Reader implements CompletionHandler<Integer, ByteBuffer> {
+
+        private final AsynchronousFileChannel channel;
+        private final HashemWebFuture future;
+
+        Reader(AsynchronousFileChannel channel, HashemWebFuture future) {
+            this.channel = channel;
+            this.future = future;
+        }
+
+        @Override
+        public void completed(Integer read, ByteBuffer content) {
+            if (read >= 0 && content.hasRemaining()) {
+                channel.read(content, content.position(), content, this);
+                return;
+            }
+            close(channel);
+            content.flip();
+            future.complete(StandardCharsets.UTF_8.decode(content).toString());
+        }
+
+        @Override
+        public void failed(Throwable error, ByteBuffer content) {
+            close(channel);
+            future.fail(error);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebStaticFiles;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Builtin function that serves the files of a directory:
+ * {@code serveStatic(server, "/assets", "public")} answers {@code GET /assets/app.js} with the
+ * file {@code public/app.js}. The files are sent by the server itself, without calling a handler,
+ * see {@link HashemWebStaticFiles}. A relative directory is resolved against the current working
+ * directory of the context.
+ */
+@NodeInfo(shortName = "serveStatic")
+public abstract class HashemServeStaticBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public String serveStatic(HashemWebServer server, String path, String directory, @CachedContext(HashemLanguage.class) HashemContext context) {
+        doServeStatic(server, path, directory, context);
+        return "";
+    }
+
+    @TruffleBoundary
+    private void doServeStatic(HashemWebServer server, String path, String directory, HashemContext context) {
+        if (!path.startsWith("/")) {
+            throw new HashemException("serveStatic path must start with /, got \"" + path + "\"", this);
+        }
+        try {
+            TruffleFile root = context.getEnv().getPublicTruffleFile(directory);
+            if (!root.isDirectory()) {
+                throw new HashemException("serveStatic: \"" + directory + "\" is not a directory", this);
+            }
+            server.addStatic(path, Paths.get(root.getCanonicalFile().getPath()));
+        } catch (IOException | SecurityException e) {
+            throw new HashemException("serveStatic can not read \"" + directory + "\": " + e.getMessage(), this);
+        }
+    }
+}
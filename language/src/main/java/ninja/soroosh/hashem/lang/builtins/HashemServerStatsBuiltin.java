@@ -0,0 +1,19 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebMetrics;
+
+/**
+ * Builtin function that returns the current numbers of a web server, e.g. how many requests wait
+ * for a worker and how many were rejected, see {@link HashemWebMetrics}.
+ */
+@NodeInfo(shortName = "serverStats")
+public abstract class HashemServerStatsBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public HashemWebMetrics serverStats(HashemWebServer server) {
+        return server.getMetrics();
+    }
+}
@@ -0,0 +1,28 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+
+/**
+ * Stops all web servers of the context, like {@code stop} does for one of them:
+ * {@code stopAll()} or {@code stopAll(timeoutMs)}. Returns the number of stopped servers.
+ */
+@NodeInfo(shortName = "stopAll")
+public abstract class HashemStopAllBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public long stopAll(@SuppressWarnings("unused") HashemPooch timeout,
+                        @CachedContext(HashemLanguage.class) HashemContext context) {
+        return context.getWebServers().stopAll(HashemWebServer.DEFAULT_STOP_TIMEOUT);
+    }
+
+    @Specialization
+    public long stopAll(long timeoutMillis, @CachedContext(HashemLanguage.class) HashemContext context) {
+        return context.getWebServers().stopAll(Math.max(0, timeoutMillis));
+    }
+}
@@ -5,13 +5,28 @@ import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
 import ninja.soroosh.hashem.lang.HashemLanguage;
 import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
 import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
 
+/**
+ * Stops a web server gracefully: {@code stop(server)} or {@code stop(server, timeoutMs)}. New
+ * requests are rejected while the requests in flight get up to the timeout to finish, 5 seconds
+ * if none is given. The port is free for a new {@code webserver(port)} afterwards.
+ */
 @NodeInfo(shortName = "stop")
 public abstract class HashemStopBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public String stop(HashemWebServer server, @SuppressWarnings("unused") HashemPooch timeout,
+                       @CachedContext(HashemLanguage.class) HashemContext context) {
+        context.getWebServers().stop(server, HashemWebServer.DEFAULT_STOP_TIMEOUT);
+        return "";
+    }
+
     @Specialization
-    public String stop(HashemWebServer server, @CachedContext(HashemLanguage.class) HashemContext context) {
-        server.stop();
+    public String stop(HashemWebServer server, long timeoutMillis,
+                       @CachedContext(HashemLanguage.class) HashemContext context) {
+        context.getWebServers().stop(server, Math.max(0, timeoutMillis));
         return "";
     }
 }
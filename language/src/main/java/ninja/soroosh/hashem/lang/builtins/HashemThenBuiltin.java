@@ -0,0 +1,23 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+
+/**
+ * Builtin function that chains a bebin to a {@link HashemWebFuture}:
+ * {@code then(readFileAsync(path), sakht)} is a future for the answer of {@code sakht} called with
+ * the content of the file. The bebin is called on a worker of the web server the future is
+ * returned to.
+ */
+@NodeInfo(shortName = "then")
+public abstract class HashemThenBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    @TruffleBoundary
+    public HashemWebFuture then(HashemWebFuture future, HashemBebin continuation) {
+        return future.then(continuation);
+    }
+}
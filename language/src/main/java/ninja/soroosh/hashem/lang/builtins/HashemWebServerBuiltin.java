@@ -3,37 +3,61 @@ package ninja.soroosh.hashem.lang.builtins;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.CachedContext;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.library.CachedLibrary;
 import com.oracle.truffle.api.nodes.NodeInfo;
-import com.sun.net.httpserver.HttpServer;
+import ninja.soroosh.hashem.lang.HashemException;
 import ninja.soroosh.hashem.lang.HashemLanguage;
 import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
 import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEngine;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebServerOptions;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebServerRegistry;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 
+/**
+ * Builtin function that creates a web server listening on the given port. The optional second
+ * argument configures the server, see {@link HashemWebServerOptions}: {@code webserver(8080)} uses
+ * a single worker, {@code webserver(8080, 4)} uses four workers. The option {@code engine} selects
+ * the HTTP implementation, see {@link HashemWebEngine}. If the context already has a server on the
+ * port, that server is returned and the options are ignored, see {@link HashemWebServerRegistry}.
+ * With the language option {@code --hashemi.WebReusePort}, set by the launcher for its worker
+ * processes, every server uses the nio engine and shares its port with the other workers.
+ */
 @NodeInfo(shortName = "webserver")
 public abstract class HashemWebServerBuiltin extends HashemBuiltinNode {
+
     @Specialization
-    public HashemWebServer webserver(long port, @CachedContext(HashemLanguage.class) HashemContext context) {
-        if (context.getWebServer(port) == null) {
-            HashemWebServer hashemWebServer = doBuildServer(port);
-            context.addWebServer(port, hashemWebServer);
-            return hashemWebServer;
-        }
-        return context.getWebServer(port);
+    @SuppressWarnings("unused")
+    public HashemWebServer webserver(long port, HashemPooch options, @CachedContext(HashemLanguage.class) HashemContext context) {
+        return lookupOrBuild(port, HashemWebServerOptions.defaults(), context);
     }
 
-    @TruffleBoundary
-    private HashemWebServer doBuildServer(long port) {
-        InetSocketAddress address = new InetSocketAddress((int) port);
+    @Specialization
+    public HashemWebServer webserver(long port, long workers, @CachedContext(HashemLanguage.class) HashemContext context) {
+        return lookupOrBuild(port, HashemWebServerOptions.ofWorkers(workers, this), context);
+    }
 
-        HttpServer server = null;
+    @Specialization(guards = "objects.hasMembers(options)", limit = "3")
+    public HashemWebServer webserver(long port, Object options,
+                                     @CachedLibrary("options") InteropLibrary objects,
+                                     @CachedContext(HashemLanguage.class) HashemContext context) {
+        return lookupOrBuild(port, HashemWebServerOptions.fromObject(options, this), context);
+    }
+
+    @TruffleBoundary
+    private HashemWebServer lookupOrBuild(long port, HashemWebServerOptions options, HashemContext context) {
+        if (context.getEnv().getOptions().get(HashemLanguage.WebReusePort)) {
+            /* a worker process of the launcher, all workers share the port */
+            options.setEngine(HashemWebEngine.NIO).setReusePort(true);
+        }
         try {
-            server = HttpServer.create(address, 0);
+            return context.getWebServers().lookupOrCreate((int) port,
+                            () -> new HashemWebServer((int) port, options, context.getLanguage(), context.getEnv(), context.getFunctionRegistry()));
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new HashemException("webserver can not listen on port " + port + ": " + e.getMessage(), this);
         }
-        return new HashemWebServer(server);
     }
 }
@@ -0,0 +1,21 @@
+package ninja.soroosh.hashem.lang.builtins;
+
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemContext;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebServerRegistry;
+
+/**
+ * Builtin function that returns the web servers of the context by port, e.g.
+ * {@code webservers()[8080]}, see {@link HashemWebServerRegistry}.
+ */
+@NodeInfo(shortName = "webservers")
+public abstract class HashemWebServersBuiltin extends HashemBuiltinNode {
+
+    @Specialization
+    public HashemWebServerRegistry webservers(@CachedContext(HashemLanguage.class) HashemContext context) {
+        return context.getWebServers();
+    }
+}
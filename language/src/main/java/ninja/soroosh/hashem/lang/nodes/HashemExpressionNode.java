@@ -67,6 +67,10 @@ public abstract class HashemExpressionNode extends HashemStatementNode {
         return HashemTypesGen.expectLong(executeGeneric(frame));
     }
 
+    public double executeDouble(VirtualFrame frame) throws UnexpectedResultException {
+        return HashemTypesGen.expectDouble(executeGeneric(frame));
+    }
+
     public boolean executeBoolean(VirtualFrame frame) throws UnexpectedResultException {
         return HashemTypesGen.expectBoolean(executeGeneric(frame));
     }
@@ -1,7 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes;
 
-import java.math.BigInteger;
-
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.ImplicitCast;
 import com.oracle.truffle.api.dsl.TypeCast;
@@ -10,6 +8,7 @@ import com.oracle.truffle.api.dsl.TypeSystem;
 import ninja.soroosh.hashem.lang.HashemLanguage;
 import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
 import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemRope;
 
 /**
  * The type system of Hashemi, as explained in {@link HashemLanguage}. Based on the {@link TypeSystem}
@@ -17,7 +16,7 @@ import ninja.soroosh.hashem.lang.runtime.HashemPooch;
  * conversion methods for some types. In this class, we only cover types where the automatically
  * generated ones would not be sufficient.
  */
-@TypeSystem({long.class, boolean.class})
+@TypeSystem({long.class, double.class, boolean.class})
 public abstract class HashemTypes {
 
     /**
@@ -47,11 +46,38 @@ public abstract class HashemTypes {
      * specializations where a {@link HashemBigNumber} is expected. This models the semantic of Hashemi: It
      * only has an arbitrary precision Number type (implemented as {@link HashemBigNumber}, and
      * {@code long} is only used as a performance optimization to avoid the costly
-     * {@link HashemBigNumber} arithmetic for values that fit into a 64-bit primitive value.
+     * {@link HashemBigNumber} arithmetic for values that fit into a 64-bit primitive value. The cast
+     * only fills the two words of a compact {@link HashemBigNumber}, so it needs no boundary.
      */
     @ImplicitCast
-    @TruffleBoundary
     public static HashemBigNumber castBigNumber(long value) {
-        return new HashemBigNumber(BigInteger.valueOf(value));
+        return new HashemBigNumber(value);
+    }
+
+    /**
+     * Informs the Truffle DSL that a {@code long} value can be used in all specializations where a
+     * {@code double} is expected, so that arithmetic that mixes integers and floating point numbers
+     * is done in floating point. The {@code long} and {@link HashemBigNumber} specializations come
+     * first in the nodes, so two integers are never converted.
+     */
+    @ImplicitCast
+    public static double castDouble(long value) {
+        return value;
+    }
+
+    @ImplicitCast
+    @TruffleBoundary
+    public static double castDouble(HashemBigNumber value) {
+        return value.getValue().doubleValue();
+    }
+
+    /**
+     * Informs the Truffle DSL that a {@link HashemRope} can be used in all specializations where a
+     * {@link String} is expected. Concatenation produces ropes to stay cheap; they are flattened
+     * only when a node needs the String itself.
+     */
+    @ImplicitCast
+    public static String castString(HashemRope value) {
+        return value.toString();
     }
 }
@@ -9,6 +9,7 @@ import ninja.soroosh.hashem.lang.HashemException;
 import ninja.soroosh.hashem.lang.nodes.HashemBinaryNode;
 import ninja.soroosh.hashem.lang.nodes.HashemTypes;
 import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
+import ninja.soroosh.hashem.lang.runtime.HashemRope;
 
 /**
  *Hashemi node that performs the "+" operation, which performs addition on arbitrary precision numbers,
@@ -44,43 +45,92 @@ public abstract class HashemAddNode extends HashemBinaryNode {
     }
 
     /**
-     * This is the slow path of the arbitrary-precision arithmetic. The {@link HashemBigNumber} type of
-     * Java is doing everything we need.
+     * This is the slow path of the arbitrary-precision arithmetic. {@link HashemBigNumber} adds
+     * numbers of up to 128 bits inline and only calls {@link java.math.BigInteger} for larger ones;
+     * the result is a {@code long} again if it fits into one.
      * <p>
-     * This specialization is automatically selected by the Truffle DSL if both the left and right
-     * operand are {@link HashemBigNumber} values. Because the type system defines an
-     * {@link ImplicitCast implicit conversion} from {@code long} to {@link HashemBigNumber} in
-     * {@link HashemTypes#castBigNumber(long)}, this specialization is also taken if the left or the
-     * right operand is a {@code long} value. Because the {@link #add(long, long) long}
-     * specialization} has the {@code rewriteOn} attribute, this specialization is also taken if
-     * both input values are {@code long} values but the primitive addition overflows.
+     * The mixed specializations handle a {@code long} that meets a {@link HashemBigNumber} without
+     * converting it. Because the type system defines an {@link ImplicitCast implicit conversion}
+     * from {@code long} to {@link HashemBigNumber} in {@link HashemTypes#castBigNumber(long)}, the
+     * last one is also taken if both input values are {@code long} values but the primitive
+     * addition overflows, since the {@link #add(long, long) long specialization} has the
+     * {@code rewriteOn} attribute.
+     */
+    @Specialization
+    protected Object add(long left, HashemBigNumber right) {
+        return HashemBigNumber.add(left, right);
+    }
+
+    @Specialization
+    protected Object add(HashemBigNumber left, long right) {
+        return HashemBigNumber.add(left, right);
+    }
+
+    @Specialization
+    protected Object add(HashemBigNumber left, HashemBigNumber right) {
+        return HashemBigNumber.add(left, right);
+    }
+
+    /**
+     * Specialization for floating point addition. Because the type system defines
+     * {@link HashemTypes#castDouble(long) implicit conversions} from {@code long} and
+     * {@link HashemBigNumber} to {@code double}, it is also taken if only one operand is a
+     * {@code double}. It is declared after the {@link HashemBigNumber} specialization, so that
+     * overflowing {@code long} additions still stay exact.
      */
     @Specialization
-    @TruffleBoundary
-    protected HashemBigNumber add(HashemBigNumber left, HashemBigNumber right) {
-        return new HashemBigNumber(left.getValue().add(right.getValue()));
+    protected double add(double left, double right) {
+        return left + right;
+    }
+
+    /**
+     * Specializations for String concatenation. Concatenating Strings or {@link HashemRope ropes}
+     * only allocates a new rope, the characters are copied when the result is needed as a whole.
+     * So these specializations need no {@link TruffleBoundary} and loops that append to a String
+     * stay linear.
+     * <p>
+     * The rope specializations come first: a {@link String} parameter also accepts a rope through
+     * the {@link HashemTypes#castString(HashemRope) implicit cast}, which would flatten it.
+     */
+    @Specialization
+    protected HashemRope add(HashemRope left, HashemRope right) {
+        return new HashemRope(left, right);
+    }
+
+    @Specialization
+    protected HashemRope add(HashemRope left, String right) {
+        return new HashemRope(left, right);
+    }
+
+    @Specialization
+    protected HashemRope add(String left, HashemRope right) {
+        return new HashemRope(left, right);
+    }
+
+    @Specialization
+    protected HashemRope add(String left, String right) {
+        return new HashemRope(left, right);
     }
 
     /**
-     * Specialization for String concatenation. TheHashemispecification says that String concatenation
-     * works if either the left or the right operand is a String. The non-string operand is
-     * converted then automatically converted to a String.
+     * Specialization for String concatenation with other values. TheHashemispecification says that
+     * String concatenation works if either the left or the right operand is a String. The
+     * non-string operand is converted then automatically converted to a String.
      * <p>
      * To implement these semantics, we tell the Truffle DSL to use a custom guard. The guard
      * function is defined in {@link #isString this class}, but could also be in any superclass.
      */
     @Specialization(guards = "isString(left, right)")
-    @TruffleBoundary
-    protected String add(Object left, Object right) {
-        return left.toString() + right.toString();
+    protected HashemRope add(Object left, Object right) {
+        return HashemRope.concat(left, right);
     }
 
     /**
      * Guard for String concatenation: returns true if either the left or the right operand is a
-     * {@link String}.
+     * {@link String} or a {@link HashemRope}.
      */
     protected boolean isString(Object a, Object b) {
-        return a instanceof String || b instanceof String;
+        return a instanceof String || b instanceof String || a instanceof HashemRope || b instanceof HashemRope;
     }
 
     @Fallback
@@ -1,9 +1,11 @@
 
 package ninja.soroosh.hashem.lang.nodes.expression;
 
+import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CallTarget;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.nodes.NodeInfo;
 import ninja.soroosh.hashem.lang.HashemLanguage;
@@ -32,6 +34,12 @@ public final class HashemBebinLiteralNode extends HashemExpressionNode {
      */
     @CompilationFinal private HashemBebin cachedFunction;
 
+    /**
+     * The {@link HashemBebin} objects belong to the registry of one context. Once the AST is shared
+     * by several contexts, the function is looked up in the registry of the current one instead.
+     */
+    @CompilationFinal private Assumption singleContext;
+
     public HashemBebinLiteralNode(String functionName) {
         this.functionName = functionName;
     }
@@ -42,9 +50,18 @@ public final class HashemBebinLiteralNode extends HashemExpressionNode {
             /* We are about to change a @CompilationFinal field. */
             CompilerDirectives.transferToInterpreterAndInvalidate();
             /* First execution of the node: lookup the function in the function registry. */
+            singleContext = lookupLanguageReference(HashemLanguage.class).get().getSingleContext();
             cachedFunction = lookupContextReference(HashemLanguage.class).get().getFunctionRegistry().lookup(functionName, true);
         }
-        return cachedFunction;
+        if (singleContext.isValid()) {
+            return cachedFunction;
+        }
+        return lookup(lookupContextReference(HashemLanguage.class).get());
+    }
+
+    @TruffleBoundary
+    private HashemBebin lookup(HashemContext context) {
+        return context.getFunctionRegistry().lookup(functionName, true);
     }
 
 }
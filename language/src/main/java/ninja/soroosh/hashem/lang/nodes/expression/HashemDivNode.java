@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -29,9 +28,17 @@ public abstract class HashemDivNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
-    protected HashemBigNumber div(HashemBigNumber left, HashemBigNumber right) {
-        return new HashemBigNumber(left.getValue().divide(right.getValue()));
+    protected Object div(HashemBigNumber left, HashemBigNumber right) {
+        return HashemBigNumber.divide(left, right);
+    }
+
+    /**
+     * Division of doubles, also taken if only one operand is a double. It follows IEEE 754, so
+     * dividing by zero gives an infinity or NaN instead of an error.
+     */
+    @Specialization
+    protected double div(double left, double right) {
+        return left / right;
     }
 
     @Fallback
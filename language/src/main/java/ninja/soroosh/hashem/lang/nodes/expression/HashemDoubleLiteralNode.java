@@ -0,0 +1,31 @@
+package ninja.soroosh.hashem.lang.nodes.expression;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
+import ninja.soroosh.hashem.lang.nodes.HashemExpressionNode;
+
+/**
+ * Constant literal for a primitive {@code double} value, e.g. {@code 3.14}. The unboxed value can be
+ * returned when the parent expects a double value and calls
+ * {@link HashemDoubleLiteralNode#executeDouble}.
+ */
+@NodeInfo(shortName = "const")
+public final class HashemDoubleLiteralNode extends HashemExpressionNode {
+
+    private final double value;
+
+    public HashemDoubleLiteralNode(double value) {
+        this.value = value;
+    }
+
+    @Override
+    public double executeDouble(VirtualFrame frame) throws UnexpectedResultException {
+        return value;
+    }
+
+    @Override
+    public Object executeGeneric(VirtualFrame frame) {
+        return value;
+    }
+}
@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.interop.TruffleObject;
@@ -10,6 +9,7 @@ import ninja.soroosh.hashem.lang.nodes.HashemBinaryNode;
 import ninja.soroosh.hashem.lang.runtime.HashemBebin;
 import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
 import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemRope;
 
 /**
  * The {@code ==} operator ofHashemiis defined on all types. Therefore, we need a
@@ -30,9 +30,24 @@ public abstract class HashemEqualNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
+    protected boolean equal(long left, HashemBigNumber right) {
+        return HashemBigNumber.compare(left, right) == 0;
+    }
+
+    @Specialization
+    protected boolean equal(HashemBigNumber left, long right) {
+        return HashemBigNumber.compare(left, right) == 0;
+    }
+
+    @Specialization
     protected boolean equal(HashemBigNumber left, HashemBigNumber right) {
-        return left.equals(right);
+        return HashemBigNumber.compare(left, right) == 0;
+    }
+
+    /** Also compares a double with an integer, so {@code 1 == 1.0} holds. */
+    @Specialization
+    protected boolean equal(double left, double right) {
+        return left == right;
     }
 
     @Specialization
@@ -61,9 +76,10 @@ public abstract class HashemEqualNode extends HashemBinaryNode {
     }
 
     /**
-     * Specialization for foreign {@link TruffleObject}s.
+     * Specialization for foreign {@link TruffleObject}s. {@link HashemRope Ropes} are compared by
+     * their characters in {@link #equal(String, String)}.
      */
-    @Specialization
+    @Specialization(guards = {"!isRope(left)", "!isRope(right)"})
     protected boolean equal(TruffleObject left, TruffleObject right) {
         return left == right;
     }
@@ -88,7 +104,24 @@ public abstract class HashemEqualNode extends HashemBinaryNode {
     }
 
     static boolean differentClasses(Object left, Object right) {
-        return left.getClass() != right.getClass();
+        return classOf(left) != classOf(right);
+    }
+
+    /**
+     * A rope is a String that is not flattened yet, and all numbers can be compared with each
+     * other.
+     */
+    private static Class<?> classOf(Object value) {
+        if (value instanceof HashemRope) {
+            return String.class;
+        } else if (value instanceof Long || value instanceof Double || value instanceof HashemBigNumber) {
+            return Number.class;
+        }
+        return value.getClass();
+    }
+
+    static boolean isRope(Object value) {
+        return value instanceof HashemRope;
     }
 
     @Fallback
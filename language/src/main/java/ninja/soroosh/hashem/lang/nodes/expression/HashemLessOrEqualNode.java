@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -20,9 +19,23 @@ public abstract class HashemLessOrEqualNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
+    protected boolean lessOrEqual(long left, HashemBigNumber right) {
+        return HashemBigNumber.compare(left, right) <= 0;
+    }
+
+    @Specialization
+    protected boolean lessOrEqual(HashemBigNumber left, long right) {
+        return HashemBigNumber.compare(left, right) <= 0;
+    }
+
+    @Specialization
     protected boolean lessOrEqual(HashemBigNumber left, HashemBigNumber right) {
-        return left.compareTo(right) <= 0;
+        return HashemBigNumber.compare(left, right) <= 0;
+    }
+
+    @Specialization
+    protected boolean lessOrEqual(double left, double right) {
+        return left <= right;
     }
 
     @Fallback
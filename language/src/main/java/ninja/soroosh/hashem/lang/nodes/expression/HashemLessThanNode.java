@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -21,9 +20,23 @@ public abstract class HashemLessThanNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
+    protected boolean lessThan(long left, HashemBigNumber right) {
+        return HashemBigNumber.compare(left, right) < 0;
+    }
+
+    @Specialization
+    protected boolean lessThan(HashemBigNumber left, long right) {
+        return HashemBigNumber.compare(left, right) < 0;
+    }
+
+    @Specialization
     protected boolean lessThan(HashemBigNumber left, HashemBigNumber right) {
-        return left.compareTo(right) < 0;
+        return HashemBigNumber.compare(left, right) < 0;
+    }
+
+    @Specialization
+    protected boolean lessThan(double left, double right) {
+        return left < right;
     }
 
     @Fallback
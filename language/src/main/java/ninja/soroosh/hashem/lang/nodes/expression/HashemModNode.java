@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -21,9 +20,13 @@ public abstract class HashemModNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
-    protected HashemBigNumber mod(HashemBigNumber left, HashemBigNumber right) {
-        return new HashemBigNumber(left.getValue().mod(right.getValue()));
+    protected Object mod(HashemBigNumber left, HashemBigNumber right) {
+        return HashemBigNumber.mod(left, right);
+    }
+
+    @Specialization
+    protected double mod(double left, double right) {
+        return left % right;
     }
 
     @Fallback
@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -20,9 +19,23 @@ public abstract class HashemMulNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
-    protected HashemBigNumber mul(HashemBigNumber left, HashemBigNumber right) {
-        return new HashemBigNumber(left.getValue().multiply(right.getValue()));
+    protected Object mul(long left, HashemBigNumber right) {
+        return HashemBigNumber.multiply(left, right);
+    }
+
+    @Specialization
+    protected Object mul(HashemBigNumber left, long right) {
+        return HashemBigNumber.multiply(left, right);
+    }
+
+    @Specialization
+    protected Object mul(HashemBigNumber left, HashemBigNumber right) {
+        return HashemBigNumber.multiply(left, right);
+    }
+
+    @Specialization
+    protected double mul(double left, double right) {
+        return left * right;
     }
 
     @Fallback
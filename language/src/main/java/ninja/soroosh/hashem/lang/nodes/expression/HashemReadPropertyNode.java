@@ -8,9 +8,15 @@ import com.oracle.truffle.api.interop.InvalidArrayIndexException;
 import com.oracle.truffle.api.interop.UnknownIdentifierException;
 import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.library.CachedLibrary;
+import com.oracle.truffle.api.nodes.Node;
 import com.oracle.truffle.api.nodes.NodeInfo;
+import com.oracle.truffle.api.profiles.BranchProfile;
+import com.oracle.truffle.api.profiles.ValueProfile;
 import ninja.soroosh.hashem.lang.nodes.HashemExpressionNode;
 import ninja.soroosh.hashem.lang.nodes.util.HashemToMemberNode;
+import ninja.soroosh.hashem.lang.runtime.HashemArray;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
 import ninja.soroosh.hashem.lang.runtime.HashemUndefinedNameException;
 
 /**
@@ -28,6 +34,58 @@ public abstract class HashemReadPropertyNode extends HashemExpressionNode {
 
     static final int LIBRARY_LIMIT = 3;
 
+    /**
+     * Reads an element of a {@link HashemArray}. The class of its storage is profiled, so compiled
+     * code knows the strategy and reads the element unboxed.
+     */
+    @Specialization
+    protected Object readArray(HashemArray array, long index,
+                    @Cached("createClassProfile()") ValueProfile storeProfile,
+                    @Cached BranchProfile outOfBounds) {
+        Object store = storeProfile.profile(array.getStore());
+        if (store instanceof long[]) {
+            long[] longs = (long[]) store;
+            return longs[checkIndex(this, index, longs.length, outOfBounds)];
+        } else if (store instanceof boolean[]) {
+            boolean[] booleans = (boolean[]) store;
+            return booleans[checkIndex(this, index, booleans.length, outOfBounds)];
+        } else {
+            Object[] objects = (Object[]) store;
+            return objects[checkIndex(this, index, objects.length, outOfBounds)];
+        }
+    }
+
+    /**
+     * Reads a key of a {@link HashemMap}, {@code POOCH} if it is missing. {@code long} and String
+     * keys, including ropes through the implicit cast, call the lookups for their type.
+     */
+    @Specialization
+    protected Object readMap(HashemMap map, long key) {
+        return orPooch(map.get(key));
+    }
+
+    @Specialization
+    protected Object readMap(HashemMap map, String key) {
+        return orPooch(map.get(key));
+    }
+
+    @Specialization
+    protected Object readMap(HashemMap map, Object key) {
+        return orPooch(map.get(key));
+    }
+
+    private static Object orPooch(Object value) {
+        return value == null ? HashemPooch.SINGLETON : value;
+    }
+
+    static int checkIndex(Node location, long index, int length, BranchProfile outOfBounds) {
+        if (index < 0 || index >= length) {
+            outOfBounds.enter();
+            throw HashemUndefinedNameException.undefinedProperty(location, index);
+        }
+        return (int) index;
+    }
+
     @Specialization(guards = "arrays.hasArrayElements(receiver)", limit = "LIBRARY_LIMIT")
     protected Object writeArray(Object receiver, Object index,
                     @CachedLibrary("receiver") InteropLibrary arrays,
@@ -1,6 +1,5 @@
 package ninja.soroosh.hashem.lang.nodes.expression;
 
-import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.NodeInfo;
@@ -20,9 +19,23 @@ public abstract class HashemSubNode extends HashemBinaryNode {
     }
 
     @Specialization
-    @TruffleBoundary
-    protected HashemBigNumber sub(HashemBigNumber left, HashemBigNumber right) {
-        return new HashemBigNumber(left.getValue().subtract(right.getValue()));
+    protected Object sub(long left, HashemBigNumber right) {
+        return HashemBigNumber.subtract(left, right);
+    }
+
+    @Specialization
+    protected Object sub(HashemBigNumber left, long right) {
+        return HashemBigNumber.subtract(left, right);
+    }
+
+    @Specialization
+    protected Object sub(HashemBigNumber left, HashemBigNumber right) {
+        return HashemBigNumber.subtract(left, right);
+    }
+
+    @Specialization
+    protected double sub(double left, double right) {
+        return left - right;
     }
 
     @Fallback
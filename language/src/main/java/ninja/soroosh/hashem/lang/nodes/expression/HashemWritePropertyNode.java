@@ -11,8 +11,12 @@ import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.interop.UnsupportedTypeException;
 import com.oracle.truffle.api.library.CachedLibrary;
 import com.oracle.truffle.api.nodes.NodeInfo;
+import com.oracle.truffle.api.profiles.BranchProfile;
+import com.oracle.truffle.api.profiles.ValueProfile;
 import ninja.soroosh.hashem.lang.nodes.HashemExpressionNode;
 import ninja.soroosh.hashem.lang.nodes.util.HashemToMemberNode;
+import ninja.soroosh.hashem.lang.runtime.HashemArray;
+import ninja.soroosh.hashem.lang.runtime.HashemMap;
 import ninja.soroosh.hashem.lang.runtime.HashemUndefinedNameException;
 
 /**
@@ -33,6 +37,50 @@ public abstract class HashemWritePropertyNode extends HashemExpressionNode {
 
     static final int LIBRARY_LIMIT = 3;
 
+    /**
+     * Writes an element of a {@link HashemArray}. As long as the value fits the profiled storage
+     * strategy it is stored unboxed; otherwise the array is moved to {@code Object[]} storage.
+     */
+    @Specialization
+    protected Object writeArray(HashemArray array, long index, Object value,
+                    @Cached("createClassProfile()") ValueProfile storeProfile,
+                    @Cached BranchProfile outOfBounds) {
+        Object store = storeProfile.profile(array.getStore());
+        if (store instanceof long[] && value instanceof Long) {
+            long[] longs = (long[]) store;
+            longs[HashemReadPropertyNode.checkIndex(this, index, longs.length, outOfBounds)] = (long) value;
+        } else if (store instanceof boolean[] && value instanceof Boolean) {
+            boolean[] booleans = (boolean[]) store;
+            booleans[HashemReadPropertyNode.checkIndex(this, index, booleans.length, outOfBounds)] = (boolean) value;
+        } else if (store instanceof Object[]) {
+            Object[] objects = (Object[]) store;
+            objects[HashemReadPropertyNode.checkIndex(this, index, objects.length, outOfBounds)] = value;
+        } else {
+            int checked = HashemReadPropertyNode.checkIndex(this, index, (int) array.getSize(), outOfBounds);
+            array.generalize()[checked] = value;
+        }
+        return value;
+    }
+
+    /** Writes a key of a {@link HashemMap}, with the lookups for {@code long} and String keys. */
+    @Specialization
+    protected Object writeMap(HashemMap map, long key, Object value) {
+        map.put(key, value);
+        return value;
+    }
+
+    @Specialization
+    protected Object writeMap(HashemMap map, String key, Object value) {
+        map.put(key, value);
+        return value;
+    }
+
+    @Specialization
+    protected Object writeMap(HashemMap map, Object key, Object value) {
+        map.put(key, value);
+        return value;
+    }
+
     @Specialization(guards = "arrays.hasArrayElements(receiver)", limit = "LIBRARY_LIMIT")
     protected Object write(Object receiver, Object index, Object value,
                     @CachedLibrary("receiver") InteropLibrary arrays,
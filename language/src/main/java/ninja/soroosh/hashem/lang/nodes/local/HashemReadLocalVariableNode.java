@@ -17,7 +17,9 @@ import ninja.soroosh.hashem.lang.nodes.HashemExpressionNode;
  * We use the primitive type only when the same primitive type is uses for all writes. If the local
  * variable is type-polymorphic, then the value is always stored as an Object, i.e., primitive
  * values are boxed. Even a mixture of {@code long} and {@code boolean} writes leads to both being
- * stored boxed.
+ * stored boxed. The exception are {@code long} and {@code double}: a variable that gets both keeps
+ * both unboxed, see {@link HashemWriteLocalVariableNode#writeDouble}, and this node reads whatever
+ * the frame holds.
  */
 @NodeField(name = "slot", type = FrameSlot.class)
 public abstract class HashemReadLocalVariableNode extends HashemExpressionNode {
@@ -43,7 +45,12 @@ public abstract class HashemReadLocalVariableNode extends HashemExpressionNode {
         return FrameUtil.getBooleanSafe(frame, getSlot());
     }
 
-    @Specialization(replaces = {"readLong", "readBoolean"})
+    @Specialization(guards = "frame.isDouble(getSlot())")
+    protected double readDouble(VirtualFrame frame) {
+        return FrameUtil.getDoubleSafe(frame, getSlot());
+    }
+
+    @Specialization(replaces = {"readLong", "readBoolean", "readDouble"})
     protected Object readObject(VirtualFrame frame) {
         if (!frame.isObject(getSlot())) {
             /*
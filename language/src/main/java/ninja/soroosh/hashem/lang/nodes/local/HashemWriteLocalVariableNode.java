@@ -25,13 +25,16 @@ public abstract class HashemWriteLocalVariableNode extends HashemExpressionNode
 
     /**
      * Specialized method to write a primitive {@code long} value. This is only possible if the
-     * local variable also has currently the type {@code long} or was never written before,
-     * therefore a Truffle DSL {@link #isLongOrIllegal(VirtualFrame) custom guard} is specified.
+     * local variable also has currently the type {@code long} or {@code double} (see
+     * {@link #writeDouble}), or was never written before, therefore a Truffle DSL
+     * {@link #isNumberOrIllegal(VirtualFrame) custom guard} is specified.
      */
-    @Specialization(guards = "isLongOrIllegal(frame)")
+    @Specialization(guards = "isNumberOrIllegal(frame)")
     protected long writeLong(VirtualFrame frame, long value) {
-        /* Initialize type on first write of the local variable. No-op if kind is already Long. */
-        frame.getFrameDescriptor().setFrameSlotKind(getSlot(), FrameSlotKind.Long);
+        /* Initialize type on first write of the local variable. A double variable stays one. */
+        if (frame.getFrameDescriptor().getFrameSlotKind(getSlot()) == FrameSlotKind.Illegal) {
+            frame.getFrameDescriptor().setFrameSlotKind(getSlot(), FrameSlotKind.Long);
+        }
 
         frame.setLong(getSlot(), value);
         return value;
@@ -46,6 +49,29 @@ public abstract class HashemWriteLocalVariableNode extends HashemExpressionNode
         return value;
     }
 
+    /**
+     * Doubles are kept unboxed in the frame like longs. The value is taken as an {@link Object}
+     * and checked to be a {@link Double}: a {@code double} parameter would also accept a
+     * {@code long} through the implicit cast of the type system, and the variable would silently
+     * turn an integer into a floating point number.
+     * <p>
+     * A variable of type {@code long} that gets a {@code double}, as in
+     * {@code jam = 0; ... jam = jam + 0.5;}, becomes a {@code double} variable. Such a variable
+     * still takes {@code long} values, which keep their type: the frame tags every value, and the
+     * read node specializes on the tag of the value it finds. So a variable that mixes integers
+     * and floating point numbers stays unboxed, only other types generalize it to
+     * {@link FrameSlotKind#Object}.
+     */
+    @Specialization(guards = {"isNumberOrIllegal(frame)", "isDouble(value)"})
+    protected double writeDouble(VirtualFrame frame, Object value) {
+        /* Initialize type on first write of the local variable. No-op if kind is already Double. */
+        frame.getFrameDescriptor().setFrameSlotKind(getSlot(), FrameSlotKind.Double);
+
+        double result = (double) value;
+        frame.setDouble(getSlot(), result);
+        return result;
+    }
+
     /**
      * Generic write method that works for all possible types.
      * <p>
@@ -56,7 +82,7 @@ public abstract class HashemWriteLocalVariableNode extends HashemExpressionNode
      * {@link Object}, it is guaranteed to never fail, i.e., once we are in this specialization the
      * node will never be re-specialized.
      */
-    @Specialization(replaces = {"writeLong", "writeBoolean"})
+    @Specialization(replaces = {"writeLong", "writeBoolean", "writeDouble"})
     protected Object write(VirtualFrame frame, Object value) {
         /*
          * Regardless of the type before, the new and final type of the local variable is Object.
@@ -72,16 +98,20 @@ public abstract class HashemWriteLocalVariableNode extends HashemExpressionNode
     }
 
     /**
-     * Guard function that the local variable has the type {@code long}.
+     * Guard function that the local variable has the type {@code long} or {@code double}.
      *
      * @param frame The parameter seems unnecessary, but it is required: Without the parameter, the
      *            Truffle DSL would not check the guard on every execution of the specialization.
      *            Guards without parameters are assumed to be pure, but our guard depends on the
      *            slot kind which can change.
      */
-    protected boolean isLongOrIllegal(VirtualFrame frame) {
+    protected boolean isNumberOrIllegal(VirtualFrame frame) {
         final FrameSlotKind kind = frame.getFrameDescriptor().getFrameSlotKind(getSlot());
-        return kind == FrameSlotKind.Long || kind == FrameSlotKind.Illegal;
+        return kind == FrameSlotKind.Long || kind == FrameSlotKind.Double || kind == FrameSlotKind.Illegal;
+    }
+
+    protected static boolean isDouble(Object value) {
+        return value instanceof Double;
     }
 
     protected boolean isBooleanOrIllegal(VirtualFrame frame) {
@@ -48,6 +48,12 @@ public abstract class HashemToMemberNode extends Node {
         return value.toString();
     }
 
+    @Specialization
+    @TruffleBoundary
+    protected static String fromDouble(double value) {
+        return String.valueOf(value);
+    }
+
     @Specialization(limit = "LIMIT")
     protected static String fromInterop(Object value, @CachedLibrary("value") InteropLibrary interop) throws UnknownIdentifierException {
         try {
@@ -12,6 +12,7 @@ import ninja.soroosh.hashem.lang.nodes.HashemTypes;
 import ninja.soroosh.hashem.lang.runtime.HashemBebin;
 import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
 import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+import ninja.soroosh.hashem.lang.runtime.HashemRope;
 
 /**
  * The node to normalize any value to an Hashemi value. This is useful to reduce the number of values
@@ -23,6 +24,15 @@ public abstract class HashemUnboxNode extends HashemExpressionNode {
 
     static final int LIMIT = 5;
 
+    /**
+     * Ropes are Hashemi Strings and are kept as they are, so that concatenating to them stays cheap.
+     * This specialization comes before {@link #fromString}, which would flatten them.
+     */
+    @Specialization
+    protected static HashemRope fromRope(HashemRope value) {
+        return value;
+    }
+
     @Specialization
     protected static String fromString(String value) {
         return value;
@@ -43,6 +53,11 @@ public abstract class HashemUnboxNode extends HashemExpressionNode {
         return value;
     }
 
+    @Specialization
+    protected static double fromDouble(double value) {
+        return value;
+    }
+
     @Specialization
     protected static HashemBebin fromFunction(HashemBebin value) {
         return value;
@@ -59,7 +74,7 @@ public abstract class HashemUnboxNode extends HashemExpressionNode {
             if (interop.fitsInLong(value)) {
                 return interop.asLong(value);
             } else if (interop.fitsInDouble(value)) {
-                return (long) interop.asDouble(value);
+                return interop.asDouble(value);
             } else if (interop.isString(value)) {
                 return interop.asString(value);
             } else if (interop.isBoolean(value)) {
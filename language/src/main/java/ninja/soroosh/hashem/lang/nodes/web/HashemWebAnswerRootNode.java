@@ -0,0 +1,46 @@
+package ninja.soroosh.hashem.lang.nodes.web;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.RootNode;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponse;
+
+/**
+ * Extracts the {@link HashemWebResponse} from the value of a {@link HashemWebFuture} a handler
+ * answered with. Every server has one instance, called on a worker with the value as the only
+ * argument, since reading the members of a Hashemi object needs an entered context.
+ */
+public final class HashemWebAnswerRootNode extends RootNode {
+
+    @Child private HashemWebResponseNode responseNode = HashemWebResponseNodeGen.create();
+
+    public HashemWebAnswerRootNode(HashemLanguage language) {
+        super(language);
+    }
+
+    @Override
+    public Object execute(VirtualFrame frame) {
+        return responseNode.execute(frame.getArguments()[0]);
+    }
+
+    @Override
+    public boolean isInternal() {
+        return true;
+    }
+
+    @Override
+    protected boolean isInstrumentable() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "web answer";
+    }
+
+    @Override
+    public String toString() {
+        return "web answer";
+    }
+}
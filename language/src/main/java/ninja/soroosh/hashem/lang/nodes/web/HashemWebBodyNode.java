@@ -0,0 +1,54 @@
+package ninja.soroosh.hashem.lang.nodes.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebBody;
+
+/**
+ * Encodes a response body as UTF-8. Handlers often answer with a string literal, and literals are
+ * interned by the parser, so the body string is mostly the identical instance on every request.
+ * The node caches the encoded body for up to {@link #CACHE_LIMIT} such instances. Once a handler
+ * answers with more distinct strings, the node remembers only the last encoded body, which still
+ * avoids encoding bodies that change rarely.
+ */
+@NodeInfo(shortName = "webBody")
+public abstract class HashemWebBodyNode extends Node {
+
+    static final int CACHE_LIMIT = 3;
+
+    /** The last encoded body of the generic case. */
+    private volatile HashemWebBody last;
+
+    public abstract HashemWebBody execute(String body);
+
+    @Specialization(guards = "body == cachedBody", limit = "CACHE_LIMIT")
+    @SuppressWarnings("unused")
+    protected static HashemWebBody doCached(String body,
+                    @Cached("body") String cachedBody,
+                    @Cached("encodeShared(cachedBody)") HashemWebBody cachedEncoded) {
+        return cachedEncoded;
+    }
+
+    @Specialization(replaces = "doCached")
+    protected HashemWebBody doEncode(String body) {
+        HashemWebBody encoded = last;
+        if (encoded == null || encoded.getText() != body) {
+            encoded = encode(body);
+            last = encoded;
+        }
+        return encoded;
+    }
+
+    @TruffleBoundary
+    static HashemWebBody encodeShared(String body) {
+        return body.isEmpty() ? HashemWebBody.EMPTY : HashemWebBody.encodeShared(body);
+    }
+
+    @TruffleBoundary
+    static HashemWebBody encode(String body) {
+        return body.isEmpty() ? HashemWebBody.EMPTY : HashemWebBody.encode(body);
+    }
+}
@@ -0,0 +1,105 @@
+package ninja.soroosh.hashem.lang.nodes.web;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.DirectCallNode;
+import com.oracle.truffle.api.nodes.RootNode;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponse;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebStream;
+
+/**
+ * The root of one web handler. Every route of a web server gets its own instance, called with the
+ * {@link ninja.soroosh.hashem.lang.runtime.web.HashemWebRequest request} and the
+ * {@link HashemWebStream streaming response} as arguments. The
+ * handler bebin is called through a {@link DirectCallNode}, so the handler can be inlined and the
+ * whole request, from calling the handler to extracting the {@link HashemWebResponse}, is compiled
+ * as one unit.
+ * <p>
+ * A handler that answers with a {@link HashemWebFuture} gets the future back unchanged, its value
+ * is converted by a {@link HashemWebAnswerRootNode} once it is there.
+ * <p>
+ * The handler of an event stream is called with the request and the
+ * {@link ninja.soroosh.hashem.lang.runtime.web.HashemWebEventChannel channel} instead, its answer
+ * is ignored.
+ * <p>
+ * Like the inline cache of {@link HashemBebin}, the call node speculates that the handler is not
+ * redefined. When it is, the assumption is invalidated and a call node for the new call target is
+ * created, under the lock of the node since the workers run it concurrently.
+ */
+public final class HashemWebHandlerRootNode extends RootNode {
+
+    private final HashemBebin handler;
+    private final String name;
+    private final boolean events;
+
+    @CompilationFinal private Assumption callTargetStable;
+    @Child private DirectCallNode callNode;
+    @Child private HashemWebResponseNode responseNode = HashemWebResponseNodeGen.create();
+
+    public HashemWebHandlerRootNode(HashemLanguage language, HashemBebin handler, String name, boolean events) {
+        super(language);
+        this.handler = handler;
+        this.name = name;
+        this.events = events;
+        this.callTargetStable = handler.getCallTargetStable();
+        this.callNode = DirectCallNode.create(handler.getCallTarget());
+    }
+
+    @Override
+    public Object execute(VirtualFrame frame) {
+        if (!callTargetStable.isValid()) {
+            /* The handler bebin was redefined. */
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            atomic(this::updateCallNode);
+        }
+        Object[] arguments = frame.getArguments();
+        Object answer = callNode.call(arguments);
+        if (events) {
+            return null;
+        }
+        if (((HashemWebStream) arguments[1]).isStarted()) {
+            /* the handler streamed its response, the answer is ignored */
+            return null;
+        }
+        if (answer instanceof HashemWebFuture) {
+            return answer;
+        }
+        return responseNode.execute(answer);
+    }
+
+    /**
+     * Every worker runs this root node, so several of them may see the invalid assumption at once;
+     * only the first one replaces the call node.
+     */
+    private void updateCallNode() {
+        if (!callTargetStable.isValid()) {
+            callTargetStable = handler.getCallTargetStable();
+            callNode = insert(DirectCallNode.create(handler.getCallTarget()));
+        }
+    }
+
+    @Override
+    public boolean isInternal() {
+        return true;
+    }
+
+    @Override
+    protected boolean isInstrumentable() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "web handler " + name;
+    }
+}
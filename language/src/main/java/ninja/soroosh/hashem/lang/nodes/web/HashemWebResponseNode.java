@@ -0,0 +1,127 @@
+package ninja.soroosh.hashem.lang.nodes.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Fallback;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.library.CachedLibrary;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.NodeInfo;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts the {@link HashemWebResponse} from the object a web handler answered with:
+ *
+ * <pre>
+ * javab = jadid();
+ * javab.status = 201;
+ * javab.body = "sakhte shod";
+ * javab.headers = jadid();
+ * javab.headers["Content-Type"] = "text/plain";
+ * bede javab;
+ * </pre>
+ *
+ * All members are optional, the status defaults to {@code 200} and the body to an empty string. A
+ * handler may also answer with a plain string, which becomes the body of a {@code 200} response.
+ * <p>
+ * The members are read through cached {@link InteropLibrary interop libraries}, which for Hashemi
+ * objects specialize on the shape of the answer. Handlers that build their answer the same way
+ * every time therefore only cost a shape check per member.
+ */
+@NodeInfo(shortName = "webResponse")
+public abstract class HashemWebResponseNode extends Node {
+
+    static final int LIBRARY_LIMIT = 3;
+
+    static final String STATUS = "status";
+    static final String BODY = "body";
+    static final String HEADERS = "headers";
+
+    @Child private HashemWebBodyNode bodyNode = HashemWebBodyNodeGen.create();
+
+    public abstract HashemWebResponse execute(Object answer);
+
+    @Specialization(guards = "answers.isString(answer)", limit = "LIBRARY_LIMIT")
+    protected HashemWebResponse doString(Object answer,
+                    @CachedLibrary("answer") InteropLibrary answers) {
+        try {
+            return new HashemWebResponse(200, null, bodyNode.execute(answers.asString(answer)));
+        } catch (InteropException e) {
+            throw error("can not read the answer: ", e.getMessage());
+        }
+    }
+
+    @Specialization(guards = "answers.hasMembers(answer)", limit = "LIBRARY_LIMIT")
+    protected HashemWebResponse doObject(Object answer,
+                    @CachedLibrary("answer") InteropLibrary answers,
+                    @CachedLibrary(limit = "LIBRARY_LIMIT") InteropLibrary values) {
+        try {
+            int status = 200;
+            if (answers.isMemberReadable(answer, STATUS)) {
+                Object value = answers.readMember(answer, STATUS);
+                if (!values.fitsInInt(value)) {
+                    throw error("response status must be a number, got ", value);
+                }
+                status = values.asInt(value);
+                if (status < 100 || status > 999) {
+                    throw error("response status must be between 100 and 999, got ", status);
+                }
+            }
+            String body = "";
+            if (answers.isMemberReadable(answer, BODY)) {
+                Object value = answers.readMember(answer, BODY);
+                if (!values.isString(value)) {
+                    throw error("response body must be a string, got ", value);
+                }
+                body = values.asString(value);
+            }
+            Map<String, String> headers = null;
+            if (answers.isMemberReadable(answer, HEADERS)) {
+                headers = readHeaders(answers.readMember(answer, HEADERS));
+            }
+            return new HashemWebResponse(status, headers, bodyNode.execute(body));
+        } catch (InteropException e) {
+            throw error("can not read the answer: ", e.getMessage());
+        }
+    }
+
+    /**
+     * Answers that are neither strings nor objects. This is a fallback rather than a specialization
+     * that replaces the others, so that one bad answer does not send the good answers that follow
+     * to the error as well.
+     */
+    @Fallback
+    protected HashemWebResponse doOther(Object answer) {
+        throw error("must answer with an object or a string, got ", answer);
+    }
+
+    /** Reads the {@code headers} sub-object into a map, in the order of its members. */
+    @TruffleBoundary
+    private Map<String, String> readHeaders(Object headers) throws InteropException {
+        InteropLibrary objects = InteropLibrary.getFactory().getUncached(headers);
+        if (!objects.hasMembers(headers)) {
+            throw error("response headers must be an object, got ", headers);
+        }
+        Object names = objects.getMembers(headers);
+        InteropLibrary arrays = InteropLibrary.getFactory().getUncached(names);
+        long size = arrays.getArraySize(names);
+        Map<String, String> result = new LinkedHashMap<>();
+        for (long i = 0; i < size; i++) {
+            String name = InteropLibrary.getFactory().getUncached().asString(arrays.readArrayElement(names, i));
+            Object value = objects.readMember(headers, name);
+            InteropLibrary values = InteropLibrary.getFactory().getUncached(value);
+            result.put(name, values.isString(value) ? values.asString(value) : String.valueOf(value));
+        }
+        return result;
+    }
+
+    @TruffleBoundary
+    private HashemException error(String message, Object value) {
+        return new HashemException("web handler: " + message + value, this);
+    }
+}
@@ -302,5 +302,5 @@ fragment STRING_CHAR : ~('"' | '\\' | '\r' | '\n');
 
 IDENTIFIER : LETTER (LETTER | DIGIT)*;
 STRING_LITERAL : '"' STRING_CHAR* '"';
-NUMERIC_LITERAL : '0' | NON_ZERO_DIGIT DIGIT*;
+NUMERIC_LITERAL : ('0' | NON_ZERO_DIGIT DIGIT*) ('.' DIGIT+)?;
 
@@ -114,7 +114,7 @@ public class HashemLanguageLexer extends Lexer {
 	public ATN getATN() { return _ATN; }
 
 	public static final String _serializedATN =
-		"\3\u608b\ua72a\u8133\ub9ed\u417c\u3be7\u7786\u5964\2(\u0110\b\1\4\2\t"+
+		"\3\u608b\ua72a\u8133\ub9ed\u417c\u3be7\u7786\u5964\2(\u0118\b\1\4\2\t"+
 		"\2\4\3\t\3\4\4\t\4\4\5\t\5\4\6\t\6\4\7\t\7\4\b\t\b\4\t\t\t\4\n\t\n\4\13"+
 		"\t\13\4\f\t\f\4\r\t\r\4\16\t\16\4\17\t\17\4\20\t\20\4\21\t\21\4\22\t\22"+
 		"\4\23\t\23\4\24\t\24\4\25\t\25\4\26\t\26\4\27\t\27\4\30\t\30\4\31\t\31"+
@@ -131,74 +131,77 @@ public class HashemLanguageLexer extends Lexer {
 		"#\3#\3#\3#\3#\3$\3$\3$\3$\7$\u00dd\n$\f$\16$\u00e0\13$\3$\3$\3%\5%\u00e5"+
 		"\n%\3&\3&\3\'\3\'\3(\5(\u00ec\n(\3)\3)\3*\3*\3+\3+\3,\3,\3-\3-\3-\7-\u00f9"+
 		"\n-\f-\16-\u00fc\13-\3.\3.\7.\u0100\n.\f.\16.\u0103\13.\3.\3.\3/\3/\3"+
-		"/\7/\u010a\n/\f/\16/\u010d\13/\5/\u010f\n/\3\u00d0\2\60\3\3\5\4\7\5\t"+
-		"\6\13\7\r\b\17\t\21\n\23\13\25\f\27\r\31\16\33\17\35\20\37\21!\22#\23"+
-		"%\24\'\25)\26+\27-\30/\31\61\32\63\33\65\34\67\359\36;\37= ?!A\"C#E$G"+
-		"%I\2K\2M\2O\2Q\2S\2U\2W\2Y&[\'](\3\2\n\5\2\13\f\16\17\"\"\4\2\f\f\17\17"+
-		"\6\2&&C\\aac|\3\2\63;\3\2\62;\5\2\62;CHch\3\2\629\6\2\f\f\17\17$$^^\2"+
-		"\u010f\2\3\3\2\2\2\2\5\3\2\2\2\2\7\3\2\2\2\2\t\3\2\2\2\2\13\3\2\2\2\2"+
-		"\r\3\2\2\2\2\17\3\2\2\2\2\21\3\2\2\2\2\23\3\2\2\2\2\25\3\2\2\2\2\27\3"+
-		"\2\2\2\2\31\3\2\2\2\2\33\3\2\2\2\2\35\3\2\2\2\2\37\3\2\2\2\2!\3\2\2\2"+
-		"\2#\3\2\2\2\2%\3\2\2\2\2\'\3\2\2\2\2)\3\2\2\2\2+\3\2\2\2\2-\3\2\2\2\2"+
-		"/\3\2\2\2\2\61\3\2\2\2\2\63\3\2\2\2\2\65\3\2\2\2\2\67\3\2\2\2\29\3\2\2"+
-		"\2\2;\3\2\2\2\2=\3\2\2\2\2?\3\2\2\2\2A\3\2\2\2\2C\3\2\2\2\2E\3\2\2\2\2"+
-		"G\3\2\2\2\2Y\3\2\2\2\2[\3\2\2\2\2]\3\2\2\2\3_\3\2\2\2\5e\3\2\2\2\7g\3"+
-		"\2\2\2\ti\3\2\2\2\13k\3\2\2\2\rm\3\2\2\2\17o\3\2\2\2\21t\3\2\2\2\23v\3"+
-		"\2\2\2\25{\3\2\2\2\27\u0084\3\2\2\2\31\u0087\3\2\2\2\33\u008e\3\2\2\2"+
-		"\35\u0092\3\2\2\2\37\u0096\3\2\2\2!\u009b\3\2\2\2#\u009e\3\2\2\2%\u00a1"+
-		"\3\2\2\2\'\u00a3\3\2\2\2)\u00a6\3\2\2\2+\u00a8\3\2\2\2-\u00ab\3\2\2\2"+
-		"/\u00ae\3\2\2\2\61\u00b1\3\2\2\2\63\u00b3\3\2\2\2\65\u00b5\3\2\2\2\67"+
-		"\u00b7\3\2\2\29\u00b9\3\2\2\2;\u00bb\3\2\2\2=\u00bd\3\2\2\2?\u00bf\3\2"+
-		"\2\2A\u00c1\3\2\2\2C\u00c4\3\2\2\2E\u00ca\3\2\2\2G\u00d8\3\2\2\2I\u00e4"+
-		"\3\2\2\2K\u00e6\3\2\2\2M\u00e8\3\2\2\2O\u00eb\3\2\2\2Q\u00ed\3\2\2\2S"+
-		"\u00ef\3\2\2\2U\u00f1\3\2\2\2W\u00f3\3\2\2\2Y\u00f5\3\2\2\2[\u00fd\3\2"+
-		"\2\2]\u010e\3\2\2\2_`\7d\2\2`a\7g\2\2ab\7d\2\2bc\7k\2\2cd\7p\2\2d\4\3"+
-		"\2\2\2ef\7*\2\2f\6\3\2\2\2gh\7.\2\2h\b\3\2\2\2ij\7+\2\2j\n\3\2\2\2kl\7"+
-		"}\2\2l\f\3\2\2\2mn\7\177\2\2n\16\3\2\2\2op\7m\2\2pq\7j\2\2qr\7q\2\2rs"+
-		"\7d\2\2s\20\3\2\2\2tu\7=\2\2u\22\3\2\2\2vw\7d\2\2wx\7c\2\2xy\7f\2\2yz"+
-		"\7k\2\2z\24\3\2\2\2{|\7f\2\2|}\7g\2\2}~\7d\2\2~\177\7w\2\2\177\u0080\7"+
-		"i\2\2\u0080\u0081\7i\2\2\u0081\u0082\7g\2\2\u0082\u0083\7t\2\2\u0083\26"+
-		"\3\2\2\2\u0084\u0085\7v\2\2\u0085\u0086\7c\2\2\u0086\30\3\2\2\2\u0087"+
-		"\u0088\7+\2\2\u0088\u0089\7\"\2\2\u0089\u008a\7d\2\2\u008a\u008b\7q\2"+
-		"\2\u008b\u008c\7q\2\2\u008c\u008d\7f\2\2\u008d\32\3\2\2\2\u008e\u008f"+
-		"\7c\2\2\u008f\u0090\7i\2\2\u0090\u0091\7g\2\2\u0091\34\3\2\2\2\u0092\u0093"+
-		"\7p\2\2\u0093\u0094\7c\2\2\u0094\u0095\7A\2\2\u0095\36\3\2\2\2\u0096\u0097"+
-		"\7d\2\2\u0097\u0098\7g\2\2\u0098\u0099\7f\2\2\u0099\u009a\7g\2\2\u009a"+
-		" \3\2\2\2\u009b\u009c\7~\2\2\u009c\u009d\7~\2\2\u009d\"\3\2\2\2\u009e"+
-		"\u009f\7(\2\2\u009f\u00a0\7(\2\2\u00a0$\3\2\2\2\u00a1\u00a2\7>\2\2\u00a2"+
-		"&\3\2\2\2\u00a3\u00a4\7>\2\2\u00a4\u00a5\7?\2\2\u00a5(\3\2\2\2\u00a6\u00a7"+
-		"\7@\2\2\u00a7*\3\2\2\2\u00a8\u00a9\7@\2\2\u00a9\u00aa\7?\2\2\u00aa,\3"+
-		"\2\2\2\u00ab\u00ac\7?\2\2\u00ac\u00ad\7?\2\2\u00ad.\3\2\2\2\u00ae\u00af"+
-		"\7#\2\2\u00af\u00b0\7?\2\2\u00b0\60\3\2\2\2\u00b1\u00b2\7-\2\2\u00b2\62"+
-		"\3\2\2\2\u00b3\u00b4\7/\2\2\u00b4\64\3\2\2\2\u00b5\u00b6\7,\2\2\u00b6"+
-		"\66\3\2\2\2\u00b7\u00b8\7\61\2\2\u00b88\3\2\2\2\u00b9\u00ba\7\'\2\2\u00ba"+
-		":\3\2\2\2\u00bb\u00bc\7?\2\2\u00bc<\3\2\2\2\u00bd\u00be\7\60\2\2\u00be"+
-		">\3\2\2\2\u00bf\u00c0\7]\2\2\u00c0@\3\2\2\2\u00c1\u00c2\7_\2\2\u00c2B"+
-		"\3\2\2\2\u00c3\u00c5\t\2\2\2\u00c4\u00c3\3\2\2\2\u00c5\u00c6\3\2\2\2\u00c6"+
-		"\u00c4\3\2\2\2\u00c6\u00c7\3\2\2\2\u00c7\u00c8\3\2\2\2\u00c8\u00c9\b\""+
-		"\2\2\u00c9D\3\2\2\2\u00ca\u00cb\7\61\2\2\u00cb\u00cc\7,\2\2\u00cc\u00d0"+
-		"\3\2\2\2\u00cd\u00cf\13\2\2\2\u00ce\u00cd\3\2\2\2\u00cf\u00d2\3\2\2\2"+
-		"\u00d0\u00d1\3\2\2\2\u00d0\u00ce\3\2\2\2\u00d1\u00d3\3\2\2\2\u00d2\u00d0"+
-		"\3\2\2\2\u00d3\u00d4\7,\2\2\u00d4\u00d5\7\61\2\2\u00d5\u00d6\3\2\2\2\u00d6"+
-		"\u00d7\b#\2\2\u00d7F\3\2\2\2\u00d8\u00d9\7\61\2\2\u00d9\u00da\7\61\2\2"+
-		"\u00da\u00de\3\2\2\2\u00db\u00dd\n\3\2\2\u00dc\u00db\3\2\2\2\u00dd\u00e0"+
-		"\3\2\2\2\u00de\u00dc\3\2\2\2\u00de\u00df\3\2\2\2\u00df\u00e1\3\2\2\2\u00e0"+
-		"\u00de\3\2\2\2\u00e1\u00e2\b$\2\2\u00e2H\3\2\2\2\u00e3\u00e5\t\4\2\2\u00e4"+
-		"\u00e3\3\2\2\2\u00e5J\3\2\2\2\u00e6\u00e7\t\5\2\2\u00e7L\3\2\2\2\u00e8"+
-		"\u00e9\t\6\2\2\u00e9N\3\2\2\2\u00ea\u00ec\t\7\2\2\u00eb\u00ea\3\2\2\2"+
-		"\u00ecP\3\2\2\2\u00ed\u00ee\t\b\2\2\u00eeR\3\2\2\2\u00ef\u00f0\4\62\63"+
-		"\2\u00f0T\3\2\2\2\u00f1\u00f2\7\13\2\2\u00f2V\3\2\2\2\u00f3\u00f4\n\t"+
-		"\2\2\u00f4X\3\2\2\2\u00f5\u00fa\5I%\2\u00f6\u00f9\5I%\2\u00f7\u00f9\5"+
-		"M\'\2\u00f8\u00f6\3\2\2\2\u00f8\u00f7\3\2\2\2\u00f9\u00fc\3\2\2\2\u00fa"+
-		"\u00f8\3\2\2\2\u00fa\u00fb\3\2\2\2\u00fbZ\3\2\2\2\u00fc\u00fa\3\2\2\2"+
-		"\u00fd\u0101\7$\2\2\u00fe\u0100\5W,\2\u00ff\u00fe\3\2\2\2\u0100\u0103"+
-		"\3\2\2\2\u0101\u00ff\3\2\2\2\u0101\u0102\3\2\2\2\u0102\u0104\3\2\2\2\u0103"+
-		"\u0101\3\2\2\2\u0104\u0105\7$\2\2\u0105\\\3\2\2\2\u0106\u010f\7\62\2\2"+
-		"\u0107\u010b\5K&\2\u0108\u010a\5M\'\2\u0109\u0108\3\2\2\2\u010a\u010d"+
-		"\3\2\2\2\u010b\u0109\3\2\2\2\u010b\u010c\3\2\2\2\u010c\u010f\3\2\2\2\u010d"+
-		"\u010b\3\2\2\2\u010e\u0106\3\2\2\2\u010e\u0107\3\2\2\2\u010f^\3\2\2\2"+
-		"\r\2\u00c6\u00d0\u00de\u00e4\u00eb\u00f8\u00fa\u0101\u010b\u010e\3\b\2"+
-		"\2";
+		"/\7/\u010a\n/\f/\16/\u010d\13/\5/\u010f\n/\3/\3/\6/\u0113\n/\r/\16/\u0114"+
+		"\5/\u0117\n/\3\u00d0\2\60\3\3\5\4\7\5\t\6\13\7\r\b\17\t\21\n\23\13\25"+
+		"\f\27\r\31\16\33\17\35\20\37\21!\22#\23%\24\'\25)\26+\27-\30/\31\61\32"+
+		"\63\33\65\34\67\359\36;\37= ?!A\"C#E$G%I\2K\2M\2O\2Q\2S\2U\2W\2Y&[\']"+
+		"(\3\2\n\5\2\13\f\16\17\"\"\4\2\f\f\17\17\6\2&&C\\aac|\3\2\63;\3\2\62;"+
+		"\5\2\62;CHch\3\2\629\6\2\f\f\17\17$$^^\2\u0119\2\3\3\2\2\2\2\5\3\2\2\2"+
+		"\2\7\3\2\2\2\2\t\3\2\2\2\2\13\3\2\2\2\2\r\3\2\2\2\2\17\3\2\2\2\2\21\3"+
+		"\2\2\2\2\23\3\2\2\2\2\25\3\2\2\2\2\27\3\2\2\2\2\31\3\2\2\2\2\33\3\2\2"+
+		"\2\2\35\3\2\2\2\2\37\3\2\2\2\2!\3\2\2\2\2#\3\2\2\2\2%\3\2\2\2\2\'\3\2"+
+		"\2\2\2)\3\2\2\2\2+\3\2\2\2\2-\3\2\2\2\2/\3\2\2\2\2\61\3\2\2\2\2\63\3\2"+
+		"\2\2\2\65\3\2\2\2\2\67\3\2\2\2\29\3\2\2\2\2;\3\2\2\2\2=\3\2\2\2\2?\3\2"+
+		"\2\2\2A\3\2\2\2\2C\3\2\2\2\2E\3\2\2\2\2G\3\2\2\2\2Y\3\2\2\2\2[\3\2\2\2"+
+		"\2]\3\2\2\2\3_\3\2\2\2\5e\3\2\2\2\7g\3\2\2\2\ti\3\2\2\2\13k\3\2\2\2\r"+
+		"m\3\2\2\2\17o\3\2\2\2\21t\3\2\2\2\23v\3\2\2\2\25{\3\2\2\2\27\u0084\3\2"+
+		"\2\2\31\u0087\3\2\2\2\33\u008e\3\2\2\2\35\u0092\3\2\2\2\37\u0096\3\2\2"+
+		"\2!\u009b\3\2\2\2#\u009e\3\2\2\2%\u00a1\3\2\2\2\'\u00a3\3\2\2\2)\u00a6"+
+		"\3\2\2\2+\u00a8\3\2\2\2-\u00ab\3\2\2\2/\u00ae\3\2\2\2\61\u00b1\3\2\2\2"+
+		"\63\u00b3\3\2\2\2\65\u00b5\3\2\2\2\67\u00b7\3\2\2\29\u00b9\3\2\2\2;\u00bb"+
+		"\3\2\2\2=\u00bd\3\2\2\2?\u00bf\3\2\2\2A\u00c1\3\2\2\2C\u00c4\3\2\2\2E"+
+		"\u00ca\3\2\2\2G\u00d8\3\2\2\2I\u00e4\3\2\2\2K\u00e6\3\2\2\2M\u00e8\3\2"+
+		"\2\2O\u00eb\3\2\2\2Q\u00ed\3\2\2\2S\u00ef\3\2\2\2U\u00f1\3\2\2\2W\u00f3"+
+		"\3\2\2\2Y\u00f5\3\2\2\2[\u00fd\3\2\2\2]\u010e\3\2\2\2_`\7d\2\2`a\7g\2"+
+		"\2ab\7d\2\2bc\7k\2\2cd\7p\2\2d\4\3\2\2\2ef\7*\2\2f\6\3\2\2\2gh\7.\2\2"+
+		"h\b\3\2\2\2ij\7+\2\2j\n\3\2\2\2kl\7}\2\2l\f\3\2\2\2mn\7\177\2\2n\16\3"+
+		"\2\2\2op\7m\2\2pq\7j\2\2qr\7q\2\2rs\7d\2\2s\20\3\2\2\2tu\7=\2\2u\22\3"+
+		"\2\2\2vw\7d\2\2wx\7c\2\2xy\7f\2\2yz\7k\2\2z\24\3\2\2\2{|\7f\2\2|}\7g\2"+
+		"\2}~\7d\2\2~\177\7w\2\2\177\u0080\7i\2\2\u0080\u0081\7i\2\2\u0081\u0082"+
+		"\7g\2\2\u0082\u0083\7t\2\2\u0083\26\3\2\2\2\u0084\u0085\7v\2\2\u0085\u0086"+
+		"\7c\2\2\u0086\30\3\2\2\2\u0087\u0088\7+\2\2\u0088\u0089\7\"\2\2\u0089"+
+		"\u008a\7d\2\2\u008a\u008b\7q\2\2\u008b\u008c\7q\2\2\u008c\u008d\7f\2\2"+
+		"\u008d\32\3\2\2\2\u008e\u008f\7c\2\2\u008f\u0090\7i\2\2\u0090\u0091\7"+
+		"g\2\2\u0091\34\3\2\2\2\u0092\u0093\7p\2\2\u0093\u0094\7c\2\2\u0094\u0095"+
+		"\7A\2\2\u0095\36\3\2\2\2\u0096\u0097\7d\2\2\u0097\u0098\7g\2\2\u0098\u0099"+
+		"\7f\2\2\u0099\u009a\7g\2\2\u009a \3\2\2\2\u009b\u009c\7~\2\2\u009c\u009d"+
+		"\7~\2\2\u009d\"\3\2\2\2\u009e\u009f\7(\2\2\u009f\u00a0\7(\2\2\u00a0$\3"+
+		"\2\2\2\u00a1\u00a2\7>\2\2\u00a2&\3\2\2\2\u00a3\u00a4\7>\2\2\u00a4\u00a5"+
+		"\7?\2\2\u00a5(\3\2\2\2\u00a6\u00a7\7@\2\2\u00a7*\3\2\2\2\u00a8\u00a9\7"+
+		"@\2\2\u00a9\u00aa\7?\2\2\u00aa,\3\2\2\2\u00ab\u00ac\7?\2\2\u00ac\u00ad"+
+		"\7?\2\2\u00ad.\3\2\2\2\u00ae\u00af\7#\2\2\u00af\u00b0\7?\2\2\u00b0\60"+
+		"\3\2\2\2\u00b1\u00b2\7-\2\2\u00b2\62\3\2\2\2\u00b3\u00b4\7/\2\2\u00b4"+
+		"\64\3\2\2\2\u00b5\u00b6\7,\2\2\u00b6\66\3\2\2\2\u00b7\u00b8\7\61\2\2\u00b8"+
+		"8\3\2\2\2\u00b9\u00ba\7\'\2\2\u00ba:\3\2\2\2\u00bb\u00bc\7?\2\2\u00bc"+
+		"<\3\2\2\2\u00bd\u00be\7\60\2\2\u00be>\3\2\2\2\u00bf\u00c0\7]\2\2\u00c0"+
+		"@\3\2\2\2\u00c1\u00c2\7_\2\2\u00c2B\3\2\2\2\u00c3\u00c5\t\2\2\2\u00c4"+
+		"\u00c3\3\2\2\2\u00c5\u00c6\3\2\2\2\u00c6\u00c4\3\2\2\2\u00c6\u00c7\3\2"+
+		"\2\2\u00c7\u00c8\3\2\2\2\u00c8\u00c9\b\"\2\2\u00c9D\3\2\2\2\u00ca\u00cb"+
+		"\7\61\2\2\u00cb\u00cc\7,\2\2\u00cc\u00d0\3\2\2\2\u00cd\u00cf\13\2\2\2"+
+		"\u00ce\u00cd\3\2\2\2\u00cf\u00d2\3\2\2\2\u00d0\u00d1\3\2\2\2\u00d0\u00ce"+
+		"\3\2\2\2\u00d1\u00d3\3\2\2\2\u00d2\u00d0\3\2\2\2\u00d3\u00d4\7,\2\2\u00d4"+
+		"\u00d5\7\61\2\2\u00d5\u00d6\3\2\2\2\u00d6\u00d7\b#\2\2\u00d7F\3\2\2\2"+
+		"\u00d8\u00d9\7\61\2\2\u00d9\u00da\7\61\2\2\u00da\u00de\3\2\2\2\u00db\u00dd"+
+		"\n\3\2\2\u00dc\u00db\3\2\2\2\u00dd\u00e0\3\2\2\2\u00de\u00dc\3\2\2\2\u00de"+
+		"\u00df\3\2\2\2\u00df\u00e1\3\2\2\2\u00e0\u00de\3\2\2\2\u00e1\u00e2\b$"+
+		"\2\2\u00e2H\3\2\2\2\u00e3\u00e5\t\4\2\2\u00e4\u00e3\3\2\2\2\u00e5J\3\2"+
+		"\2\2\u00e6\u00e7\t\5\2\2\u00e7L\3\2\2\2\u00e8\u00e9\t\6\2\2\u00e9N\3\2"+
+		"\2\2\u00ea\u00ec\t\7\2\2\u00eb\u00ea\3\2\2\2\u00ecP\3\2\2\2\u00ed\u00ee"+
+		"\t\b\2\2\u00eeR\3\2\2\2\u00ef\u00f0\4\62\63\2\u00f0T\3\2\2\2\u00f1\u00f2"+
+		"\7\13\2\2\u00f2V\3\2\2\2\u00f3\u00f4\n\t\2\2\u00f4X\3\2\2\2\u00f5\u00fa"+
+		"\5I%\2\u00f6\u00f9\5I%\2\u00f7\u00f9\5M\'\2\u00f8\u00f6\3\2\2\2\u00f8"+
+		"\u00f7\3\2\2\2\u00f9\u00fc\3\2\2\2\u00fa\u00f8\3\2\2\2\u00fa\u00fb\3\2"+
+		"\2\2\u00fbZ\3\2\2\2\u00fc\u00fa\3\2\2\2\u00fd\u0101\7$\2\2\u00fe\u0100"+
+		"\5W,\2\u00ff\u00fe\3\2\2\2\u0100\u0103\3\2\2\2\u0101\u00ff\3\2\2\2\u0101"+
+		"\u0102\3\2\2\2\u0102\u0104\3\2\2\2\u0103\u0101\3\2\2\2\u0104\u0105\7$"+
+		"\2\2\u0105\\\3\2\2\2\u0106\u010f\7\62\2\2\u0107\u010b\5K&\2\u0108\u010a"+
+		"\5M\'\2\u0109\u0108\3\2\2\2\u010a\u010d\3\2\2\2\u010b\u0109\3\2\2\2\u010b"+
+		"\u010c\3\2\2\2\u010c\u010f\3\2\2\2\u010d\u010b\3\2\2\2\u010e\u0106\3\2"+
+		"\2\2\u010e\u0107\3\2\2\2\u010f\u0116\3\2\2\2\u0110\u0112\7\60\2\2\u0111"+
+		"\u0113\5M\'\2\u0112\u0111\3\2\2\2\u0113\u0114\3\2\2\2\u0114\u0112\3\2"+
+		"\2\2\u0114\u0115\3\2\2\2\u0115\u0117\3\2\2\2\u0116\u0110\3\2\2\2\u0116"+
+		"\u0117\3\2\2\2\u0117^\3\2\2\2\17\2\u00c6\u00d0\u00de\u00e4\u00eb\u00f8"+
+		"\u00fa\u0101\u010b\u010e\u0114\u0116\3\b\2\2";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
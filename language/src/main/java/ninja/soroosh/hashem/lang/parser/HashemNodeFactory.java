@@ -447,12 +447,18 @@ public class HashemNodeFactory {
 
     public HashemExpressionNode createNumericLiteral(Token literalToken) {
         HashemExpressionNode result;
-        try {
-            /* Try if the literal is small enough to fit into a long value. */
-            result = new HashemLongLiteralNode(Long.parseLong(literalToken.getText()));
-        } catch (NumberFormatException ex) {
-            /* Overflow of long value, so fall back to BigInteger. */
-            result = new HashemBigIntegerLiteralNode(new BigInteger(literalToken.getText()));
+        String text = literalToken.getText();
+        if (text.indexOf('.') >= 0) {
+            /* A literal with a fraction is a floating point number. */
+            result = new HashemDoubleLiteralNode(Double.parseDouble(text));
+        } else {
+            try {
+                /* Try if the literal is small enough to fit into a long value. */
+                result = new HashemLongLiteralNode(Long.parseLong(text));
+            } catch (NumberFormatException ex) {
+                /* Overflow of long value, so fall back to BigInteger. */
+                result = new HashemBigIntegerLiteralNode(new BigInteger(text));
+            }
         }
         srcFromToken(result, literalToken);
         result.addExpressionTag();
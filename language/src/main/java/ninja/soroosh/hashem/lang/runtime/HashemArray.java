@@ -0,0 +1,179 @@
+package ninja.soroosh.hashem.lang.runtime;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.InvalidArrayIndexException;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+/**
+ * The Hashemi array, created by {@code araye(n)} and accessed with the {@code [ ]} operator:
+ *
+ * <pre>
+ * a = araye(3);
+ * a[0] = 313;
+ * bechap(a[0] + a[1]);
+ * </pre>
+ *
+ * An array has a fixed size. Its elements are kept in the most specific Java array that can hold
+ * them, the storage strategy: a {@code long[]} while all elements are numbers that fit into a
+ * {@code long}, a {@code boolean[]} while all are booleans, and an {@code Object[]} otherwise.
+ * Writing an element that does not fit moves the array to {@code Object[]} for good, so an array
+ * changes its strategy at most once. {@code araye(n)} starts with {@code n} zeros in a
+ * {@code long[]}, {@code araye(n, value)} with {@code n} times the value.
+ * <p>
+ * The nodes for {@code [ ]} profile the class of the storage, so compiled code reads and writes
+ * the unboxed elements with a plain bounds check.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemArray implements TruffleObject {
+
+    /** The largest size of an array, the limit of Java arrays. */
+    public static final long MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Either a {@code long[]}, a {@code boolean[]} or an {@code Object[]}. */
+    private Object store;
+
+    public HashemArray(long[] store) {
+        this.store = store;
+    }
+
+    public HashemArray(boolean[] store) {
+        this.store = store;
+    }
+
+    public HashemArray(Object[] store) {
+        this.store = store;
+    }
+
+    public Object getStore() {
+        return store;
+    }
+
+    /**
+     * Moves the elements to an {@code Object[]}, so that any value can be written. Does nothing if
+     * the array already has that strategy.
+     *
+     * @return the new storage
+     */
+    @TruffleBoundary
+    public Object[] generalize() {
+        Object current = store;
+        if (current instanceof Object[]) {
+            return (Object[]) current;
+        }
+        Object[] objects = new Object[size(current)];
+        if (current instanceof long[]) {
+            long[] longs = (long[]) current;
+            for (int i = 0; i < longs.length; i++) {
+                objects[i] = longs[i];
+            }
+        } else {
+            boolean[] booleans = (boolean[]) current;
+            for (int i = 0; i < booleans.length; i++) {
+                objects[i] = booleans[i];
+            }
+        }
+        store = objects;
+        return objects;
+    }
+
+    public long getSize() {
+        return size(store);
+    }
+
+    private static int size(Object store) {
+        if (store instanceof long[]) {
+            return ((long[]) store).length;
+        } else if (store instanceof boolean[]) {
+            return ((boolean[]) store).length;
+        } else {
+            return ((Object[]) store).length;
+        }
+    }
+
+    /** Reads an element, boxing it if the storage is primitive. The index must be in bounds. */
+    public Object read(int index) {
+        Object current = store;
+        if (current instanceof long[]) {
+            return ((long[]) current)[index];
+        } else if (current instanceof boolean[]) {
+            return ((boolean[]) current)[index];
+        } else {
+            return ((Object[]) current)[index];
+        }
+    }
+
+    /**
+     * Writes an element, generalizing the storage if the value does not fit. The index must be in
+     * bounds.
+     */
+    public void write(int index, Object value) {
+        Object current = store;
+        if (current instanceof long[] && value instanceof Long) {
+            ((long[]) current)[index] = (long) value;
+        } else if (current instanceof boolean[] && value instanceof Boolean) {
+            ((boolean[]) current)[index] = (boolean) value;
+        } else if (current instanceof Object[]) {
+            ((Object[]) current)[index] = value;
+        } else {
+            generalize()[index] = value;
+        }
+    }
+
+    @SuppressWarnings("static-method")
+    @ExportMessage
+    boolean hasArrayElements() {
+        return true;
+    }
+
+    @ExportMessage(name = "getArraySize")
+    long arraySize() {
+        return getSize();
+    }
+
+    @ExportMessage(name = "isArrayElementReadable")
+    @ExportMessage(name = "isArrayElementModifiable")
+    boolean isArrayElement(long index) {
+        return index >= 0 && index < getSize();
+    }
+
+    @SuppressWarnings({"static-method", "unused"})
+    @ExportMessage
+    boolean isArrayElementInsertable(long index) {
+        return false;
+    }
+
+    @ExportMessage
+    Object readArrayElement(long index) throws InvalidArrayIndexException {
+        if (!isArrayElement(index)) {
+            throw InvalidArrayIndexException.create(index);
+        }
+        return read((int) index);
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    void writeArrayElement(long index, Object value) throws InvalidArrayIndexException {
+        if (!isArrayElement(index)) {
+            throw InvalidArrayIndexException.create(index);
+        }
+        write((int) index, HashemContext.fromForeignValue(value));
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        Object current = store;
+        if (current instanceof long[]) {
+            return Arrays.toString((long[]) current);
+        } else if (current instanceof boolean[]) {
+            return Arrays.toString((boolean[]) current);
+        } else {
+            return Arrays.toString((Object[]) current);
+        }
+    }
+}
@@ -10,6 +10,18 @@ import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.library.ExportLibrary;
 import com.oracle.truffle.api.library.ExportMessage;
 
+/**
+ * An integer that does not fit into a {@code long}, the slow path of the arbitrary-precision
+ * arithmetic of Hashemi.
+ * <p>
+ * Most of the numbers that overflow a {@code long}, e.g. in factorials or hash functions, stay well
+ * within 128 bits. Those are kept as two {@code long} words, {@link #high} and {@link #low}, and
+ * added, subtracted, multiplied and compared by the static methods of this class without leaving
+ * compiled code; only results that need more bits fall back to {@link BigInteger} behind a
+ * {@link TruffleBoundary}. The operations return a {@code long} whenever the result fits into one,
+ * so a computation that briefly leaves the {@code long} range comes back to the fast path of the
+ * nodes.
+ */
 @ExportLibrary(InteropLibrary.class)
 public final class HashemBigNumber implements TruffleObject, Comparable<HashemBigNumber> {
 
@@ -24,43 +36,295 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
         return i >= -INT_MAX_SAFE_FLOAT && i <= INT_MAX_SAFE_FLOAT;
     }
 
-    private final BigInteger value;
+    /** Whether the value fits into 128 bits, i.e. {@link #high} and {@link #low} are valid. */
+    private final boolean compact;
+    /** The value as a 128-bit two's complement number, if it is {@link #compact}. */
+    private final long high;
+    private final long low;
+    /** The value, created on demand for compact numbers. */
+    private BigInteger value;
 
     public HashemBigNumber(BigInteger value) {
         this.value = value;
+        this.compact = value.bitLength() < 128;
+        this.high = compact ? value.shiftRight(64).longValue() : 0;
+        this.low = compact ? value.longValue() : 0;
     }
 
     public HashemBigNumber(long value) {
-        this.value = BigInteger.valueOf(value);
+        this(value >> 63, value);
     }
 
+    private HashemBigNumber(long high, long low) {
+        this.compact = true;
+        this.high = high;
+        this.low = low;
+    }
+
+    @TruffleBoundary
     public BigInteger getValue() {
-        return value;
+        BigInteger result = value;
+        if (result == null) {
+            result = BigInteger.valueOf(high).shiftLeft(64).add(BigInteger.valueOf(low >>> 1).shiftLeft(1)).add(BigInteger.valueOf(low & 1));
+            value = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value as a {@code long} if it fits, otherwise as a {@link HashemBigNumber}.
+     */
+    @TruffleBoundary
+    public static Object valueOf(BigInteger value) {
+        if (value.bitLength() < 64) {
+            return value.longValue();
+        }
+        return new HashemBigNumber(value);
+    }
+
+    private static Object valueOf(long high, long low) {
+        if (high == low >> 63) {
+            return low;
+        }
+        return new HashemBigNumber(high, low);
+    }
+
+    public static Object add(HashemBigNumber left, HashemBigNumber right) {
+        if (left.compact && right.compact) {
+            Object result = add(left.high, left.low, right.high, right.low);
+            if (result != null) {
+                return result;
+            }
+        }
+        return addSlow(left, right);
+    }
+
+    public static Object add(long left, HashemBigNumber right) {
+        return add(right, left);
+    }
+
+    public static Object add(HashemBigNumber left, long right) {
+        if (left.compact) {
+            Object result = add(left.high, left.low, right >> 63, right);
+            if (result != null) {
+                return result;
+            }
+        }
+        return addSlow(left, new HashemBigNumber(right));
+    }
+
+    /** Adds two 128-bit numbers, returns {@code null} if the sum needs more bits. */
+    private static Object add(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        long low = leftLow + rightLow;
+        long carry = Long.compareUnsigned(low, leftLow) < 0 ? 1 : 0;
+        long high = leftHigh + rightHigh + carry;
+        if (((leftHigh ^ high) & (rightHigh ^ high)) < 0) {
+            return null;
+        }
+        return valueOf(high, low);
+    }
+
+    @TruffleBoundary
+    private static Object addSlow(HashemBigNumber left, HashemBigNumber right) {
+        return valueOf(left.getValue().add(right.getValue()));
+    }
+
+    public static Object subtract(HashemBigNumber left, HashemBigNumber right) {
+        if (left.compact && right.compact) {
+            Object result = subtract(left.high, left.low, right.high, right.low);
+            if (result != null) {
+                return result;
+            }
+        }
+        return subtractSlow(left, right);
+    }
+
+    public static Object subtract(long left, HashemBigNumber right) {
+        if (right.compact) {
+            Object result = subtract(left >> 63, left, right.high, right.low);
+            if (result != null) {
+                return result;
+            }
+        }
+        return subtractSlow(new HashemBigNumber(left), right);
+    }
+
+    public static Object subtract(HashemBigNumber left, long right) {
+        if (left.compact) {
+            Object result = subtract(left.high, left.low, right >> 63, right);
+            if (result != null) {
+                return result;
+            }
+        }
+        return subtractSlow(left, new HashemBigNumber(right));
+    }
+
+    /** Subtracts two 128-bit numbers, returns {@code null} if the difference needs more bits. */
+    private static Object subtract(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        long low = leftLow - rightLow;
+        long borrow = Long.compareUnsigned(leftLow, rightLow) < 0 ? 1 : 0;
+        long high = leftHigh - rightHigh - borrow;
+        if (((leftHigh ^ rightHigh) & (leftHigh ^ high)) < 0) {
+            return null;
+        }
+        return valueOf(high, low);
+    }
+
+    @TruffleBoundary
+    private static Object subtractSlow(HashemBigNumber left, HashemBigNumber right) {
+        return valueOf(left.getValue().subtract(right.getValue()));
+    }
+
+    public static Object multiply(HashemBigNumber left, HashemBigNumber right) {
+        if (left.compact && right.compact) {
+            Object result = multiply(left.high, left.low, right.high, right.low);
+            if (result != null) {
+                return result;
+            }
+        }
+        return multiplySlow(left, right);
+    }
+
+    public static Object multiply(long left, HashemBigNumber right) {
+        return multiply(right, left);
+    }
+
+    public static Object multiply(HashemBigNumber left, long right) {
+        if (left.compact) {
+            Object result = multiply(left.high, left.low, right >> 63, right);
+            if (result != null) {
+                return result;
+            }
+        }
+        return multiplySlow(left, new HashemBigNumber(right));
+    }
+
+    /**
+     * Multiplies two 128-bit numbers, returns {@code null} if the product needs more bits. The
+     * magnitudes are multiplied as unsigned numbers: at most one of them may use its high word,
+     * otherwise the product cannot fit.
+     */
+    private static Object multiply(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        boolean negative = (leftHigh ^ rightHigh) < 0;
+        long aHigh = leftHigh;
+        long aLow = leftLow;
+        if (leftHigh < 0) {
+            aLow = -leftLow;
+            aHigh = ~leftHigh + (leftLow == 0 ? 1 : 0);
+        }
+        long bHigh = rightHigh;
+        long bLow = rightLow;
+        if (rightHigh < 0) {
+            bLow = -rightLow;
+            bHigh = ~rightHigh + (rightLow == 0 ? 1 : 0);
+        }
+        if ((aHigh < 0) || (bHigh < 0) || (aHigh != 0 && bHigh != 0)) {
+            /* a magnitude of 2 ** 127, or both need more than 64 bits */
+            return null;
+        }
+        long cross = aHigh != 0 ? aHigh : bHigh;
+        long other = aHigh != 0 ? bLow : aLow;
+        if (cross != 0 && unsignedMultiplyHigh(cross, other) != 0) {
+            return null;
+        }
+        long crossLow = cross * other;
+        long low = aLow * bLow;
+        long high = unsignedMultiplyHigh(aLow, bLow) + crossLow;
+        if (Long.compareUnsigned(high, crossLow) < 0 || high < 0) {
+            /* the magnitude needs 128 bits or more */
+            return null;
+        }
+        if (negative) {
+            high = ~high + (low == 0 ? 1 : 0);
+            low = -low;
+        }
+        return valueOf(high, low);
+    }
+
+    /** The high word of the unsigned 128-bit product, {@code Math.multiplyHigh} for unsigned values. */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+        long z0 = t >> 32;
+        long signedHigh = x1 * y1 + z0 + (z1 >> 32);
+        return signedHigh + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    @TruffleBoundary
+    private static Object multiplySlow(HashemBigNumber left, HashemBigNumber right) {
+        return valueOf(left.getValue().multiply(right.getValue()));
+    }
+
+    @TruffleBoundary
+    public static Object divide(HashemBigNumber left, HashemBigNumber right) {
+        return valueOf(left.getValue().divide(right.getValue()));
+    }
+
+    @TruffleBoundary
+    public static Object mod(HashemBigNumber left, HashemBigNumber right) {
+        return valueOf(left.getValue().mod(right.getValue()));
+    }
+
+    public static int compare(HashemBigNumber left, HashemBigNumber right) {
+        if (left.compact && right.compact) {
+            return compare(left.high, left.low, right.high, right.low);
+        }
+        return left.compareTo(right);
+    }
+
+    public static int compare(long left, HashemBigNumber right) {
+        if (right.compact) {
+            return compare(left >> 63, left, right.high, right.low);
+        }
+        return -right.getValue().signum();
+    }
+
+    public static int compare(HashemBigNumber left, long right) {
+        return -compare(right, left);
+    }
+
+    private static int compare(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        if (leftHigh != rightHigh) {
+            return Long.compare(leftHigh, rightHigh);
+        }
+        return Long.compareUnsigned(leftLow, rightLow);
     }
 
     @TruffleBoundary
     public int compareTo(HashemBigNumber o) {
-        return value.compareTo(o.getValue());
+        if (compact && o.compact) {
+            return compare(high, low, o.high, o.low);
+        }
+        return getValue().compareTo(o.getValue());
     }
 
     @Override
     @TruffleBoundary
     public String toString() {
-        return value.toString();
+        return getValue().toString();
     }
 
     @Override
     @TruffleBoundary
     public boolean equals(Object obj) {
         if (obj instanceof HashemBigNumber) {
-            return value.equals(((HashemBigNumber) obj).getValue());
+            HashemBigNumber other = (HashemBigNumber) obj;
+            if (compact || other.compact) {
+                return compact && other.compact && high == other.high && low == other.low;
+            }
+            return getValue().equals(other.value);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return value.hashCode();
+        return compact ? Long.hashCode(high * 31 + low) : value.hashCode();
     }
 
     @SuppressWarnings("static-method")
@@ -72,44 +336,43 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @ExportMessage
     @TruffleBoundary
     boolean fitsInByte() {
-        return value.bitLength() < 8;
+        return getValue().bitLength() < 8;
     }
 
     @ExportMessage
     @TruffleBoundary
     boolean fitsInShort() {
-        return value.bitLength() < 16;
+        return getValue().bitLength() < 16;
     }
 
     @ExportMessage
     @TruffleBoundary
     boolean fitsInFloat() {
-        return fitsInInt() && inSafeFloatRange(value.intValue());
+        return fitsInInt() && inSafeFloatRange(getValue().intValue());
     }
 
     @ExportMessage
-    @TruffleBoundary
     boolean fitsInLong() {
-        return value.bitLength() < 64;
+        return compact && high == low >> 63;
     }
 
     @ExportMessage
     @TruffleBoundary
     boolean fitsInInt() {
-        return value.bitLength() < 32;
+        return getValue().bitLength() < 32;
     }
 
     @ExportMessage
     @TruffleBoundary
     boolean fitsInDouble() {
-        return fitsInLong() && inSafeDoubleRange(value.longValue());
+        return fitsInLong() && inSafeDoubleRange(low);
     }
 
     @ExportMessage
     @TruffleBoundary
     double asDouble() throws UnsupportedMessageException {
         if (fitsInDouble()) {
-            return value.doubleValue();
+            return getValue().doubleValue();
         } else {
             throw UnsupportedMessageException.create();
         }
@@ -119,7 +382,7 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @TruffleBoundary
     long asLong() throws UnsupportedMessageException {
         if (fitsInLong()) {
-            return value.longValue();
+            return low;
         } else {
             throw UnsupportedMessageException.create();
         }
@@ -129,7 +392,7 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @TruffleBoundary
     byte asByte() throws UnsupportedMessageException {
         if (fitsInByte()) {
-            return value.byteValue();
+            return getValue().byteValue();
         } else {
             throw UnsupportedMessageException.create();
         }
@@ -139,7 +402,7 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @TruffleBoundary
     int asInt() throws UnsupportedMessageException {
         if (fitsInInt()) {
-            return value.intValue();
+            return getValue().intValue();
         } else {
             throw UnsupportedMessageException.create();
         }
@@ -149,7 +412,7 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @TruffleBoundary
     float asFloat() throws UnsupportedMessageException {
         if (fitsInFloat()) {
-            return value.floatValue();
+            return getValue().floatValue();
         } else {
             throw UnsupportedMessageException.create();
         }
@@ -159,7 +422,7 @@ public final class HashemBigNumber implements TruffleObject, Comparable<HashemBi
     @TruffleBoundary
     short asShort() throws UnsupportedMessageException {
         if (fitsInShort()) {
-            return value.shortValue();
+            return getValue().shortValue();
         } else {
             throw UnsupportedMessageException.create();
         }
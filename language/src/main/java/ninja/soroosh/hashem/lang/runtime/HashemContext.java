@@ -18,14 +18,15 @@ import ninja.soroosh.hashem.lang.builtins.*;
 import ninja.soroosh.hashem.lang.nodes.HashemExpressionNode;
 import ninja.soroosh.hashem.lang.nodes.HashemRootNode;
 import ninja.soroosh.hashem.lang.nodes.local.HashemReadArgumentNode;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebServerRegistry;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebStatsFile;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * The run-time state of Hashemi during execution. The context is created by the {@link HashemLanguage}. It
@@ -40,7 +41,8 @@ public final class HashemContext {
     private static final Source BUILTIN_SOURCE = Source.newBuilder(HashemLanguage.ID, "", "SL builtin").build();
     static final Layout LAYOUT = Layout.createLayout();
 
-    private final Map<Integer, HashemWebServer> portServers = new HashMap<>();
+    private final HashemWebServerRegistry webServers = new HashemWebServerRegistry();
+    private final HashemWebStatsFile statsFile;
 
     private final Env env;
     private final BufferedReader input;
@@ -64,6 +66,17 @@ public final class HashemContext {
             installBuiltin(builtin);
         }
         this.emptyShape = LAYOUT.createShape(HashemObjectType.SINGLETON);
+        String statsFileName = env.getOptions().get(HashemLanguage.WebStatsFile);
+        if (statsFileName.isEmpty()) {
+            this.statsFile = null;
+        } else {
+            this.statsFile = new HashemWebStatsFile(Paths.get(statsFileName), webServers::getServers);
+            statsFile.start();
+        }
+    }
+
+    public HashemLanguage getLanguage() {
+        return language;
     }
 
     /**
@@ -112,6 +125,10 @@ public final class HashemContext {
         installBuiltin(HashemDefineFunctionBuiltinFactory.getInstance());
         installBuiltin(HashemStackTraceBuiltinFactory.getInstance());
         installBuiltin(HashemNewObjectBuiltinFactory.getInstance());
+        installBuiltin(HashemArrayBuiltinFactory.getInstance());
+        installBuiltin(HashemMapBuiltinFactory.getInstance());
+        installBuiltin(HashemMapKeysBuiltinFactory.getInstance());
+        installBuiltin(HashemMapRemoveBuiltinFactory.getInstance());
         installBuiltin(HashemEvalBuiltinFactory.getInstance());
         installBuiltin(HashemImportBuiltinFactory.getInstance());
         installBuiltin(HashemGetSizeBuiltinFactory.getInstance());
@@ -122,7 +139,15 @@ public final class HashemContext {
         installBuiltin(HashemWebServerBuiltinFactory.getInstance());
         installBuiltin(HashemStartBuiltinFactory.getInstance());
         installBuiltin(HashemStopBuiltinFactory.getInstance());
+        installBuiltin(HashemStopAllBuiltinFactory.getInstance());
         installBuiltin(HashemAddHandlerBuiltinFactory.getInstance());
+        installBuiltin(HashemServeStaticBuiltinFactory.getInstance());
+        installBuiltin(HashemAddEventsBuiltinFactory.getInstance());
+        installBuiltin(HashemFutureBuiltinFactory.getInstance());
+        installBuiltin(HashemThenBuiltinFactory.getInstance());
+        installBuiltin(HashemReadFileAsyncBuiltinFactory.getInstance());
+        installBuiltin(HashemServerStatsBuiltinFactory.getInstance());
+        installBuiltin(HashemWebServersBuiltinFactory.getInstance());
     }
 
     public void installBuiltin(NodeFactory<? extends HashemBuiltinNode> factory) {
@@ -200,8 +225,10 @@ public final class HashemContext {
      */
 
     public static Object fromForeignValue(Object a) {
-        if (a instanceof Long || a instanceof HashemBigNumber || a instanceof String || a instanceof Boolean) {
+        if (a instanceof Long || a instanceof HashemBigNumber || a instanceof String || a instanceof Boolean || a instanceof Double) {
             return a;
+        } else if (a instanceof Float) {
+            return (double) (float) a;
         } else if (a instanceof Character) {
             return String.valueOf(a);
         } else if (a instanceof Number) {
@@ -236,11 +263,15 @@ public final class HashemContext {
         return HashemLanguage.getCurrentContext();
     }
 
-    public void addWebServer(long port, HashemWebServer server) {
-        this.portServers.putIfAbsent((int) port, server);
+    /** The web servers created by this context. */
+    public HashemWebServerRegistry getWebServers() {
+        return webServers;
     }
 
-    public HashemWebServer getWebServer(long port) {
-        return portServers.get(port);
+    /** Called when the context is disposed. */
+    public void dispose() {
+        if (statsFile != null) {
+            statsFile.close();
+        }
     }
 }
@@ -0,0 +1,333 @@
+package ninja.soroosh.hashem.lang.runtime;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+/**
+ * The Hashemi map, created by {@code naghshe()} and accessed with the {@code [ ]} operator:
+ *
+ * <pre>
+ * m = naghshe();
+ * m["salam"] = 1;
+ * m[313] = "adad";
+ * bechap(getSize(m));
+ * bechap(kelidha(m)[0]);
+ * </pre>
+ *
+ * Unlike objects created by {@code jadid()}, whose every property name becomes a shape transition,
+ * a map keeps its keys in a hash table, so scripts can use any number of computed keys without
+ * polluting the shape caches of the property nodes. Reading a key that is not in the map gives
+ * {@code POOCH}.
+ * <p>
+ * The table uses open addressing with linear probing over an index of entry numbers, while the
+ * entries themselves are appended in insertion order; that keeps iteration in insertion order and
+ * the index small. Removed entries leave tombstones that are dropped when the table is rebuilt.
+ * {@code long} keys have their own lookup that compares them unboxed, and String keys one that
+ * compares them with {@link String#equals}; both run in compiled code, only growing the table is
+ * behind a {@link TruffleBoundary}. Other keys are compared with {@link Object#equals}. Keys
+ * that are equal in Hashemi are equal here: numbers that fit into a {@code long} are always kept
+ * as {@code long}, and ropes are flattened.
+ * <p>
+ * A map is not thread-safe. Web handlers of a server with several workers that share a map must
+ * not write it while others read or write it.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemMap implements TruffleObject {
+
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final int INITIAL_ENTRIES = 4;
+
+    /** Slots of the hash table, each the number of an entry, {@link #EMPTY} or {@link #DELETED}. */
+    private int[] index = newIndex(INITIAL_ENTRIES);
+    private Object[] keys = new Object[INITIAL_ENTRIES];
+    private Object[] values = new Object[INITIAL_ENTRIES];
+    private int[] hashes = new int[INITIAL_ENTRIES];
+    /** Number of entries appended, including removed ones. */
+    private int used;
+    private int size;
+
+    public int getSize() {
+        return size;
+    }
+
+    /** Returns the value of the key, or {@code null} if the map does not contain it. */
+    public Object get(long key) {
+        int slot = findLong(key, hash(Long.hashCode(key)));
+        return slot < 0 ? null : values[index[slot]];
+    }
+
+    public Object get(String key) {
+        int slot = findString(key, hash(key.hashCode()));
+        return slot < 0 ? null : values[index[slot]];
+    }
+
+    @TruffleBoundary
+    public Object get(Object key) {
+        Object normalized = normalize(key);
+        if (normalized instanceof Long) {
+            return get((long) normalized);
+        }
+        int slot = findObject(normalized, hash(normalized.hashCode()));
+        return slot < 0 ? null : values[index[slot]];
+    }
+
+    public void put(long key, Object value) {
+        int hash = hash(Long.hashCode(key));
+        int slot = findLong(key, hash);
+        if (slot < 0) {
+            insert(key, hash, value);
+        } else {
+            values[index[slot]] = value;
+        }
+    }
+
+    public void put(String key, Object value) {
+        int hash = hash(key.hashCode());
+        int slot = findString(key, hash);
+        if (slot < 0) {
+            insert(key, hash, value);
+        } else {
+            values[index[slot]] = value;
+        }
+    }
+
+    @TruffleBoundary
+    public void put(Object key, Object value) {
+        Object normalized = normalize(key);
+        if (normalized instanceof Long) {
+            put((long) normalized, value);
+            return;
+        }
+        int hash = hash(normalized.hashCode());
+        int slot = findObject(normalized, hash);
+        if (slot < 0) {
+            insert(normalized, hash, value);
+        } else {
+            values[index[slot]] = value;
+        }
+    }
+
+    /** Removes the key, returns whether the map contained it. */
+    @TruffleBoundary
+    public boolean remove(Object key) {
+        Object normalized = normalize(key);
+        int slot;
+        if (normalized instanceof Long) {
+            long value = (long) normalized;
+            slot = findLong(value, hash(Long.hashCode(value)));
+        } else {
+            slot = findObject(normalized, hash(normalized.hashCode()));
+        }
+        if (slot < 0) {
+            return false;
+        }
+        int entry = index[slot];
+        index[slot] = DELETED;
+        keys[entry] = null;
+        values[entry] = null;
+        size--;
+        return true;
+    }
+
+    /** The keys in insertion order. */
+    @TruffleBoundary
+    public Object[] getKeys() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int entry = 0; entry < used; entry++) {
+            if (keys[entry] != null) {
+                result[count++] = keys[entry];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keys are normalized so that values that are equal in Hashemi find the same entry: ropes are
+     * flattened, and big numbers and doubles that are equal to a {@code long} become one.
+     */
+    private static Object normalize(Object key) {
+        if (key instanceof HashemRope) {
+            return key.toString();
+        } else if (key instanceof HashemBigNumber && ((HashemBigNumber) key).fitsInLong()) {
+            return ((HashemBigNumber) key).getValue().longValue();
+        } else if (key instanceof Double && isLong((double) key)) {
+            return (long) (double) key;
+        }
+        return HashemContext.fromForeignValue(key);
+    }
+
+    private static boolean isLong(double value) {
+        return (double) (long) value == value && value != Long.MAX_VALUE;
+    }
+
+    /** Spreads the high bits of the hash code, as the table only uses the low bits. */
+    private static int hash(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private int findLong(long key, int hash) {
+        int mask = index.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == EMPTY) {
+                return -1;
+            } else if (entry >= 0 && hashes[entry] == hash) {
+                Object candidate = keys[entry];
+                if (candidate instanceof Long && (long) candidate == key) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private int findString(String key, int hash) {
+        int mask = index.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == EMPTY) {
+                return -1;
+            } else if (entry >= 0 && hashes[entry] == hash && key.equals(keys[entry])) {
+                return slot;
+            }
+        }
+    }
+
+    private int findObject(Object key, int hash) {
+        int mask = index.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == EMPTY) {
+                return -1;
+            } else if (entry >= 0 && hashes[entry] == hash && key.equals(keys[entry])) {
+                return slot;
+            }
+        }
+    }
+
+    /** Appends an entry for a key that is not in the map. */
+    private void insert(Object key, int hash, Object value) {
+        if (used == keys.length) {
+            rebuild();
+        }
+        int entry = used++;
+        keys[entry] = key;
+        values[entry] = value;
+        hashes[entry] = hash;
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        while (index[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = entry;
+        size++;
+    }
+
+    /**
+     * Drops the removed entries and grows the table if it is still more than half full. The index
+     * has twice as many slots as there are entries, so at least half of the slots stay empty and
+     * every probe ends.
+     */
+    @TruffleBoundary
+    private void rebuild() {
+        int capacity = size >= keys.length / 2 ? keys.length * 2 : keys.length;
+        Object[] newKeys = new Object[capacity];
+        Object[] newValues = new Object[capacity];
+        int[] newHashes = new int[capacity];
+        int[] newIndex = newIndex(capacity);
+        int mask = newIndex.length - 1;
+        int count = 0;
+        for (int entry = 0; entry < used; entry++) {
+            if (keys[entry] != null) {
+                newKeys[count] = keys[entry];
+                newValues[count] = values[entry];
+                newHashes[count] = hashes[entry];
+                int slot = hashes[entry] & mask;
+                while (newIndex[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                newIndex[slot] = count;
+                count++;
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        hashes = newHashes;
+        index = newIndex;
+        used = count;
+    }
+
+    private static int[] newIndex(int entries) {
+        int[] slots = new int[entries * 2];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    @SuppressWarnings("static-method")
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    /** The String keys, the only ones that interop can name. */
+    @ExportMessage
+    @TruffleBoundary
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemArray(Arrays.stream(getKeys()).filter(key -> key instanceof String).toArray());
+    }
+
+    @ExportMessage(name = "isMemberReadable")
+    @ExportMessage(name = "isMemberModifiable")
+    @ExportMessage(name = "isMemberRemovable")
+    boolean isMemberReadable(String member) {
+        return get(member) != null;
+    }
+
+    @ExportMessage
+    boolean isMemberInsertable(String member) {
+        return get(member) == null;
+    }
+
+    @ExportMessage
+    Object readMember(String member) throws UnknownIdentifierException {
+        Object value = get(member);
+        if (value == null) {
+            throw UnknownIdentifierException.create(member);
+        }
+        return value;
+    }
+
+    @ExportMessage
+    void writeMember(String member, Object value) {
+        put(member, HashemContext.fromForeignValue(value));
+    }
+
+    @ExportMessage
+    void removeMember(String member) throws UnknownIdentifierException {
+        if (!remove(member)) {
+            throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int entry = 0; entry < used; entry++) {
+            if (keys[entry] != null) {
+                if (result.length() > 1) {
+                    result.append(", ");
+                }
+                result.append(keys[entry]).append('=').append(values[entry]);
+            }
+        }
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,154 @@
+package ninja.soroosh.hashem.lang.runtime;
+
+import java.util.ArrayDeque;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+/**
+ * A String that is the concatenation of two others, produced by the {@code +} operator. Creating a
+ * rope only allocates this small node, so a loop like
+ *
+ * <pre>
+ * ta (i &lt; n) bood {
+ *   matn = matn + "*";
+ * }
+ * </pre>
+ *
+ * runs in linear time instead of copying the whole text in every iteration. The characters are
+ * only copied when the String is needed as a whole, e.g. by {@code bechap}, {@code ==}, as a
+ * property name or as the body of a response; the implicit cast in
+ * {@link ninja.soroosh.hashem.lang.nodes.HashemTypes} does that for every specialization that
+ * expects a {@link String}.
+ * <p>
+ * A rope is flattened at most once. Afterwards it forgets its parts, so a long chain of ropes that
+ * were printed one after another does not keep all the intermediate texts alive.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemRope implements TruffleObject, CharSequence {
+
+    private final int length;
+    /*
+     * The parts are either Strings or ropes. They are cleared after flat is set, so a reader that
+     * sees a cleared part finds flat set.
+     */
+    private volatile CharSequence left;
+    private volatile CharSequence right;
+    private volatile String flat;
+
+    public HashemRope(String left, String right) {
+        this(left, right, Math.addExact(left.length(), right.length()));
+    }
+
+    public HashemRope(HashemRope left, String right) {
+        this(left, right, Math.addExact(left.length, right.length()));
+    }
+
+    public HashemRope(String left, HashemRope right) {
+        this(left, right, Math.addExact(left.length(), right.length));
+    }
+
+    public HashemRope(HashemRope left, HashemRope right) {
+        this(left, right, Math.addExact(left.length, right.length));
+    }
+
+    private HashemRope(CharSequence left, CharSequence right, int length) {
+        this.length = length;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Concatenates two values of which at least one is a String or a rope. Other values are
+     * converted with {@link Object#toString()}.
+     */
+    @TruffleBoundary
+    public static HashemRope concat(Object left, Object right) {
+        CharSequence first = text(left);
+        CharSequence second = text(right);
+        return new HashemRope(first, second, Math.addExact(first.length(), second.length()));
+    }
+
+    private static CharSequence text(Object value) {
+        return value instanceof HashemRope ? (HashemRope) value : value.toString();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /** Returns the characters of the rope, copying them on the first call. */
+    @Override
+    public String toString() {
+        String result = flat;
+        if (result == null) {
+            result = flatten();
+        }
+        return result;
+    }
+
+    /**
+     * Copies the parts into one array. The parts are visited from the right, with an explicit
+     * stack, because the ropes built by a loop are as deep as the loop ran and lean to the left;
+     * that way the stack stays small for them.
+     */
+    @TruffleBoundary
+    private String flatten() {
+        char[] chars = new char[length];
+        int end = length;
+        ArrayDeque<CharSequence> pending = new ArrayDeque<>();
+        CharSequence next = this;
+        while (true) {
+            String part = next instanceof HashemRope ? ((HashemRope) next).flat : (String) next;
+            if (part == null) {
+                HashemRope rope = (HashemRope) next;
+                CharSequence first = rope.left;
+                CharSequence second = rope.right;
+                if (first != null && second != null) {
+                    pending.push(first);
+                    next = second;
+                    continue;
+                }
+                /* flattened by another thread meanwhile */
+                part = rope.flat;
+            }
+            end -= part.length();
+            part.getChars(0, part.length(), chars, end);
+            if (pending.isEmpty()) {
+                break;
+            }
+            next = pending.pop();
+        }
+        assert end == 0;
+        String result = new String(chars);
+        flat = result;
+        left = null;
+        right = null;
+        return result;
+    }
+
+    @SuppressWarnings("static-method")
+    @ExportMessage
+    boolean isString() {
+        return true;
+    }
+
+    @ExportMessage
+    String asString() {
+        return toString();
+    }
+}
@@ -1,49 +1,573 @@
-
 package ninja.soroosh.hashem.lang.runtime;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.TruffleException;
+import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.TruffleLanguage.Env;
 import com.oracle.truffle.api.interop.InteropLibrary;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.library.ExportLibrary;
-import com.sun.net.httpserver.HttpServer;
 import ninja.soroosh.hashem.lang.HashemLanguage;
-import org.graalvm.polyglot.Value;
-import org.graalvm.polyglot.proxy.ProxyObject;
+import ninja.soroosh.hashem.lang.nodes.web.HashemWebAnswerRootNode;
+import ninja.soroosh.hashem.lang.runtime.web.HashemNioEngine;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebAccessLog;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebAdmission;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebCompressor;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEngine;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEventChannel;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebEventHub;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebExchange;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebFuture;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebMetrics;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebPrometheus;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRequest;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponse;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebResponseCache;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRoute;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRouteOptions;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRouteStats;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebRouter;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebServerOptions;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebStaticFiles;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebStream;
+import ninja.soroosh.hashem.lang.runtime.web.HashemWebWorkerFactory;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @ExportLibrary(InteropLibrary.class)
-public final class HashemWebServer implements TruffleObject, ProxyObject {
-    private final HttpServer server;
-    private final ExecutorService executorService;
+public final class HashemWebServer implements TruffleObject {
+    private static final Map<String, String> METRICS_HEADERS = Collections.singletonMap(
+                    "Content-Type", HashemWebPrometheus.CONTENT_TYPE);
+
+    /** Milliseconds {@link #stop()} waits for the requests in flight. */
+    public static final long DEFAULT_STOP_TIMEOUT = 5000;
+    /** Milliseconds {@link #stop()} waits for the access log to be written. */
+    private static final long ACCESS_LOG_CLOSE_TIMEOUT = 1000;
+    /** Scrapes of the metrics that may wait for the metrics thread, more are answered with 503. */
+    private static final int METRICS_QUEUE = 4;
+
+    private final HashemWebEngine engine;
+    private final HashemWebServerOptions options;
+    private final HashemWebWorkerFactory workerFactory;
+    private final ThreadPoolExecutor executorService;
+    private final HashemWebRouter router;
+    private final HashemWebCompressor compressor;
+    private final HashemWebAdmission admission;
+    private final RootCallTarget answerTarget;
+    private final HashemWebRouteStats unmatchedStats = new HashemWebRouteStats("unmatched");
+    private final HashemWebAccessLog accessLog;
+    /* the error stream of the context, for failures of the engine that no request can report */
+    private final PrintWriter errors;
+    /* formats and sends the metrics, or null if the server has no metrics route */
+    private final ThreadPoolExecutor metricsExecutor;
+    private final HashemWebResponseCache.Stats cacheStats = new HashemWebResponseCache.Stats();
+    /* longest prefix first */
+    private final List<HashemWebStaticFiles> staticFiles = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the server and binds it to the port.
+     *
+     * @param functions the functions of the script, copied into the contexts of the workers if the
+     *            handlers run in contexts of their own
+     * @throws IOException if the engine can not listen on the port or the access log can not be
+     *             opened
+     */
+    public HashemWebServer(int port, HashemWebServerOptions options, HashemLanguage language,
+                    Env env, HashemBebinRegistry functions) throws IOException {
+        this.options = options;
+        this.router = new HashemWebRouter(language);
+        this.answerTarget = Truffle.getRuntime().createCallTarget(
+                        new HashemWebAnswerRootNode(language));
+        this.errors = new PrintWriter(env.err(), true);
+        this.compressor = options.getCompression() == 0 ? null
+                        : new HashemWebCompressor(options.getCompression(),
+                                        options.getCompressionCache());
+
+        String threadName = options.getThreadName() != null ? options.getThreadName()
+                        : "hashemi-web-" + port;
+        if (options.getAccessLog() != null) {
+            TruffleFile logFile = env.getPublicTruffleFile(options.getAccessLog());
+            Path file = Paths.get(logFile.getAbsoluteFile().getPath());
+            accessLog = new HashemWebAccessLog(file, options.getAccessLogSize(),
+                            options.getAccessLogFiles(), threadName + "-access-log");
+        } else {
+            accessLog = null;
+        }
+        if (options.getMetrics() != null) {
+            String metricsThreadName = threadName + "-metrics";
+            metricsExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(METRICS_QUEUE), runnable -> {
+                                Thread thread = new Thread(runnable, metricsThreadName);
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+        } else {
+            metricsExecutor = null;
+        }
+        BlockingQueue<Runnable> queue = options.getQueue() == 0 ? new LinkedBlockingQueue<>()
+                        : new ArrayBlockingQueue<>(options.getQueue());
+        workerFactory = options.getContexts() > 0
+                        ? new HashemWebWorkerFactory(env, threadName, functions)
+                        : new HashemWebWorkerFactory(env, threadName);
+        int workers = options.getWorkerCount();
+        executorService = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue,
+                        workerFactory);
+
+        /*
+         * Polyglot threads must be created while the context is entered, so all workers are
+         * started here instead of lazily by the first requests.
+         */
+        executorService.prestartAllCoreThreads();
+        admission = new HashemWebAdmission(options, executorService, this::handle);
+
+        try {
+            engine = HashemWebEngine.create(port, options, this::dispatch, this::engineFailed);
+        } catch (IOException | RuntimeException e) {
+            stopWorkers(0);
+            if (metricsExecutor != null) {
+                metricsExecutor.shutdown();
+            }
+            if (accessLog != null) {
+                accessLog.close(0);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Registers a handler for requests with the given method and path pattern, see
+     * {@link HashemWebRouter}.
+     */
+    @TruffleBoundary
+    public HashemWebRoute addRoute(String method, String pattern, HashemBebin handler,
+                    HashemWebRouteOptions routeOptions) {
+        return router.add(method, pattern, handler, routeOptions.createCache(), null);
+    }
 
-    public HashemWebServer(HttpServer server) {
-        this.server = server;
+    /**
+     * Registers an event stream for {@code GET} requests with the given path pattern. Every request
+     * subscribes to the returned hub, and the handler, if any, is called with the request and the
+     * new channel.
+     *
+     * @throws UnsupportedOperationException if the engine can not park connections
+     */
+    @TruffleBoundary
+    public HashemWebEventHub addEvents(String pattern, HashemBebin handler) {
+        if (!(engine instanceof HashemNioEngine)) {
+            throw new UnsupportedOperationException(
+                            "server-sent events need the " + HashemWebEngine.NIO + " engine");
+        }
+        HashemWebEventHub hub = new HashemWebEventHub();
+        router.add("GET", pattern, handler, null, hub);
+        return hub;
+    }
 
-        executorService = Executors
-                .newFixedThreadPool(1,
-                        r -> HashemLanguage.getCurrentContext().getEnv().createThread(r));
+    /**
+     * Registers a handler for all requests that no other route matches.
+     */
+    @TruffleBoundary
+    public HashemWebRoute addFallback(HashemBebin handler) {
+        return router.setFallback(handler);
+    }
 
+    /**
+     * Serves the files of a directory below a path prefix, see {@link HashemWebStaticFiles}. The
+     * files take precedence over the routes.
+     *
+     * @param root the real path of the directory
+     */
+    @TruffleBoundary
+    public void addStatic(String prefix, Path root) {
+        synchronized (staticFiles) {
+            HashemWebStaticFiles files = new HashemWebStaticFiles(prefix, root);
+            staticFiles.removeIf(previous -> previous.getPrefix().equals(files.getPrefix()));
+            staticFiles.add(files);
+            Comparator<HashemWebStaticFiles> byPrefix = Comparator.comparingInt(
+                            (HashemWebStaticFiles f) -> f.getPrefix().length());
+            staticFiles.sort(byPrefix.reversed());
+        }
+    }
 
-        executorService.submit(() -> { //initialize thread pool
+    private HashemWebStaticFiles findStatic(String rawPath) {
+        for (HashemWebStaticFiles files : staticFiles) {
+            if (files.matches(rawPath)) {
+                return files;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called by the engine on its own thread for every request. Static files kept in memory and
+     * responses found in the cache of their route are sent right here, without a worker and
+     * without entering the interpreter; the metrics are handed to a thread of their own. All other
+     * requests go through the {@link HashemWebAdmission}. Static files and responses from the cache
+     * are only sent here if the engine {@link HashemWebEngine#queuesWrites() queues writes};
+     * otherwise a client that reads slowly would hold the engine's thread, so a worker sends them.
+     */
+    private void dispatch(HashemWebExchange exchange) {
+        try {
+            if (!admission.isDraining() && answerOnEngine(exchange)) {
+                return;
+            }
+        } catch (IOException e) {
+            /* the client is gone */
+            return;
+        }
+        admission.submit(exchange);
+    }
+
+    private boolean answerOnEngine(HashemWebExchange exchange) throws IOException {
+        if (exchange.getRawPath().equals(options.getMetrics())) {
+            try {
+                metricsExecutor.execute(() -> sendMetrics(exchange));
+            } catch (RejectedExecutionException e) {
+                /* too many scrapes at once, or the server is stopping */
+                sendEmpty(exchange, 503);
+            }
+            return true;
+        }
+        HashemWebStaticFiles files = findStatic(exchange.getRawPath());
+        if (files != null) {
+            if (!engine.queuesWrites() || !files.serve(exchange, false)) {
+                return false;
+            }
+            record(files.getStats(), exchange, -1);
+            return true;
+        }
+        String key = engine.queuesWrites() ? HashemWebResponseCache.keyOf(exchange) : null;
+        if (key == null) {
+            return false;
+        }
+        HashemWebRouter.Match match = router.match(exchange.getMethod(), exchange.getRawPath());
+        HashemWebRoute route = match == null ? null : match.getRoute();
+        if (route == null || route.getCache() == null) {
+            return false;
+        }
+        HashemWebResponseCache.Entry entry = route.getCache().get(key);
+        if (entry == null || !sendCached(exchange, route.getCache(), entry, true, false)) {
+            return false;
+        }
+        record(route.getStats(), exchange, -1);
+        return true;
+    }
+
+    /** Records an answered exchange in the histograms of its route and in the access log. */
+    private void record(HashemWebRouteStats stats, HashemWebExchange exchange, long handlerNanos) {
+        stats.record(exchange, handlerNanos);
+        if (accessLog != null && exchange.isResponded()) {
+            accessLog.log(exchange);
+        }
+    }
+
+    /**
+     * Answers a scrape of the metrics on the metrics thread. Formatting the histograms of every
+     * route is too much work for the engine's thread, which only gets the finished bytes.
+     */
+    private void sendMetrics(HashemWebExchange exchange) {
+        try {
+            if (!"GET".equals(exchange.getMethod()) && !"HEAD".equals(exchange.getMethod())) {
+                exchange.sendResponse(405, Collections.singletonMap("Allow", "GET, HEAD"),
+                                new byte[0]);
+                return;
+            }
+            String text = HashemWebPrometheus.format(getMetrics(), getRouteStats());
+            exchange.sendResponse(200, METRICS_HEADERS, text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            /* the client is gone */
+        }
+    }
+
+    /** The histograms of all routes, of all static directories and of the unmatched requests. */
+    public List<HashemWebRouteStats> getRouteStats() {
+        List<HashemWebRouteStats> stats = new ArrayList<>();
+        for (HashemWebRoute route : router.getRoutes()) {
+            stats.add(route.getStats());
+        }
+        for (HashemWebStaticFiles files : staticFiles) {
+            stats.add(files.getStats());
+        }
+        stats.add(unmatchedStats);
+        return stats;
+    }
+
+    /** Called by the engine if it can not serve anymore. */
+    private void engineFailed(Throwable e) {
+        errors.println("webserver " + engine + " failed: " + e);
+    }
+
+    /**
+     * Answers one request on a worker thread. The exchange is always answered, a failing handler
+     * results in an empty 500 response and is counted as {@code handlersFailed}. Only cancelling
+     * or exiting the context unwinds the worker without an answer.
+     *
+     * @return {@code false} if the handler answered with a future, the request is answered by
+     *         {@link #suspend} then
+     */
+    private boolean handle(HashemWebExchange exchange) {
+        HashemWebStream stream = null;
+        HashemWebRouteStats stats = unmatchedStats;
+        long handlerNanos = -1;
+        boolean done = true;
+        try {
+            HashemWebStaticFiles files = findStatic(exchange.getRawPath());
+            if (files != null) {
+                stats = files.getStats();
+                files.serve(exchange, true);
+                return true;
+            }
+            HashemWebRouter.Match match = router.match(exchange.getMethod(), exchange.getRawPath());
+            if (match == null) {
+                sendEmpty(exchange, 404);
+                return true;
+            }
+            HashemWebRoute route = match.getRoute();
+            if (route == null) {
+                sendEmpty(exchange, 405);
+                return true;
+            }
+            stats = route.getStats();
+            if (route.getEvents() != null) {
+                subscribe(exchange, route, match.getValues());
+                return true;
+            }
+            HashemWebResponseCache cache = route.getCache();
+            String key = cache == null ? null : HashemWebResponseCache.keyOf(exchange);
+            if (key != null) {
+                HashemWebResponseCache.Entry entry = cache.get(key);
+                if (entry != null) {
+                    sendCached(exchange, cache, entry, true, true);
+                    return true;
+                }
+                cacheStats.miss();
+            }
+            HashemWebRequest request = new HashemWebRequest(exchange);
+            request.setParams(route.getParamNames(), match.getValues());
+            stream = new HashemWebStream(exchange, options.getStreamBuffer());
+            Object answer;
+            long start = System.nanoTime();
+            try {
+                answer = route.call(request, stream);
+            } finally {
+                handlerNanos = System.nanoTime() - start;
+            }
+            if (answer == null) {
+                stream.finish();
+            } else if (answer instanceof HashemWebFuture) {
+                suspend(exchange, (HashemWebFuture) answer, cache, key, stats, handlerNanos);
+                done = false;
+                return false;
+            } else {
+                respond(exchange, (HashemWebResponse) answer, cache, key);
+            }
+        } catch (ThreadDeath e) {
+            /* the context is cancelled */
+            throw e;
+        } catch (Throwable e) {
+            if (isExit(e)) {
+                throw (RuntimeException) e;
+            }
+            admission.handlerFailed();
+            if (stream != null && stream.isStarted()) {
+                /* the status is sent already, end the body where the handler failed */
+                try {
+                    stream.finish();
+                } catch (IOException ignored) {
+                    /* the client is gone */
+                }
+            } else if (!exchange.isResponded()) {
+                sendEmptyQuietly(exchange, 500);
+            }
+        } finally {
+            if (done) {
+                record(stats, exchange, handlerNanos);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isExit(Throwable e) {
+        return e instanceof RuntimeException && e instanceof TruffleException
+                        && ((TruffleException) e).isExit();
+    }
+
+    /** Sends the response of a handler, through the cache of the route if it has one. */
+    private void respond(HashemWebExchange exchange, HashemWebResponse response,
+                    HashemWebResponseCache cache, String key) throws IOException {
+        HashemWebResponseCache.Entry entry = key == null ? null : cache.put(key, response);
+        if (entry != null) {
+            sendCached(exchange, cache, entry, false, true);
+            return;
+        }
+        exchange.sendResponse(
+                        compressor != null ? compressor.compress(exchange, response) : response);
+    }
+
+    /**
+     * Answers the request once the future a handler answered with has its value, without holding
+     * the worker in the meantime. The value is converted to a response on a worker, with
+     * {@code 504} if it does not arrive within {@code asyncTimeout} and {@code 500} if the future
+     * failed, which is counted as {@code futuresFailed}.
+     */
+    private void suspend(HashemWebExchange exchange, HashemWebFuture future,
+                    HashemWebResponseCache cache, String key, HashemWebRouteStats stats,
+                    long handlerNanos) {
+        AtomicBoolean answered = new AtomicBoolean();
+        ScheduledFuture<?> timeout = null;
+        if (options.getAsyncTimeout() > 0) {
+            timeout = HashemWebFuture.schedule(() -> {
+                if (answered.compareAndSet(false, true)) {
+                    sendEmptyQuietly(exchange, 504);
+                    record(stats, exchange, handlerNanos);
+                    admission.resume();
                 }
-        );
+            }, options.getAsyncTimeout());
+        }
+        ScheduledFuture<?> timer = timeout;
+        future.resolve(executorService).thenApplyAsync(answer -> answerTarget.call(answer),
+                        executorService).whenComplete((response, error) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (error == null) {
+                    respond(exchange, (HashemWebResponse) response, cache, key);
+                } else if (error.getCause() instanceof RejectedExecutionException) {
+                    /* the server is stopping, or the queue of the workers is full */
+                    sendEmptyQuietly(exchange, 503);
+                } else {
+                    admission.futureFailed();
+                    sendEmptyQuietly(exchange, 500);
+                }
+            } catch (IOException e) {
+                /* the client is gone */
+            } catch (Throwable e) {
+                admission.futureFailed();
+                if (!exchange.isResponded()) {
+                    sendEmptyQuietly(exchange, 500);
+                }
+            } finally {
+                record(stats, exchange, handlerNanos);
+                admission.resume();
+            }
+        });
+    }
+
+    /**
+     * Subscribes a request to an event stream and calls the handler of the stream. The request is
+     * decoded first, since the connection keeps nothing of it once it streams events.
+     */
+    private static void subscribe(HashemWebExchange exchange, HashemWebRoute route, String[] values)
+                    throws IOException {
+        HashemWebRequest request = new HashemWebRequest(exchange);
+        request.setParams(route.getParamNames(), values);
+        request.decodeAll();
+        HashemWebEventChannel channel = route.getEvents().subscribe(exchange);
+        try {
+            route.callEvents(request, channel);
+        } catch (Throwable e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Answers a request from a cache entry, with {@code 304} if the client has the variant already.
+     * The compressed variant the client needs is created if {@code mayCompress} is set, which is
+     * too expensive for the engine's thread.
+     *
+     * @param hit whether the entry was found in the cache, rather than just added
+     * @return {@code false} if the variant is missing and was not created, nothing is sent then
+     */
+    private boolean sendCached(HashemWebExchange exchange, HashemWebResponseCache cache,
+                    HashemWebResponseCache.Entry entry, boolean hit, boolean mayCompress)
+                    throws IOException {
+        String encoding = compressor == null ? null
+                        : compressor.encodingFor(exchange, entry.getResponse());
+        HashemWebResponseCache.Variant variant = entry.getVariant(encoding);
+        if (variant == null) {
+            if (!mayCompress) {
+                return false;
+            }
+            variant = cache.addVariant(entry, encoding,
+                            compressor.compress(encoding, entry.getResponse().getBody()));
+        }
+        String ifNoneMatch = exchange.getRequestHeader("If-None-Match");
+        if (HashemWebResponseCache.matches(ifNoneMatch, variant.getETag())) {
+            cacheStats.notModified();
+            exchange.sendResponse(304, notModifiedHeaders(variant), new byte[0]);
+        } else {
+            if (hit) {
+                cacheStats.hit();
+            }
+            exchange.sendResponse(variant.getResponse());
+        }
+        return true;
+    }
+
+    private Map<String, String> notModifiedHeaders(HashemWebResponseCache.Variant variant) {
+        if (compressor == null) {
+            return Collections.singletonMap("ETag", variant.getETag());
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("ETag", variant.getETag());
+        headers.put("Vary", "Accept-Encoding");
+        return headers;
+    }
+
+    private static void sendEmpty(HashemWebExchange exchange, int status) throws IOException {
+        exchange.sendResponse(status, null, new byte[0]);
+    }
 
-        server.setExecutor(executorService);
+    private static void sendEmptyQuietly(HashemWebExchange exchange, int status) {
+        try {
+            sendEmpty(exchange, status);
+        } catch (IOException ignored) {
+            /* the client is gone */
+        }
     }
 
+    public int getPort() {
+        return engine.getPort();
+    }
 
-    public HttpServer getValue() {
-        return server;
+    /** A snapshot of the admission counters. */
+    public HashemWebMetrics getMetrics() {
+        return HashemWebMetrics.snapshot(admission, cacheStats, accessLog);
     }
 
+    public HashemWebServerOptions getOptions() {
+        return options;
+    }
 
     @Override
     @TruffleBoundary
     public String toString() {
-        return server.toString();
+        return engine.toString();
     }
 
     @Override
@@ -54,41 +578,63 @@ public final class HashemWebServer implements TruffleObject, ProxyObject {
 
     @Override
     public int hashCode() {
-        return server.hashCode();
+        return engine.hashCode();
     }
 
     @TruffleBoundary
     public void start() {
-        server.start();
+        engine.start();
     }
 
     @TruffleBoundary
     public void stop() {
-        server.stop(5);
-        executorService.shutdown();
+        stop(DEFAULT_STOP_TIMEOUT);
     }
 
-    @Override
-    public Object getMember(String key) {
-        Runnable start = server::start;
-        if (key.equals("start")) {
-            return start;
+    /**
+     * Stops the server gracefully. New requests are rejected with {@code 503} and keep-alive
+     * connections are closed after their current response, while the requests already admitted get
+     * up to {@code timeoutMillis} to finish. Whatever is still running then is cut off.
+     */
+    @TruffleBoundary
+    public void stop(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        admission.drain();
+        engine.stopAccepting();
+        try {
+            admission.awaitIdle(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        engine.stop(remainingMillis(deadline));
+        stopWorkers(remainingMillis(deadline));
+        if (metricsExecutor != null) {
+            metricsExecutor.shutdown();
+        }
+        if (compressor != null) {
+            compressor.close();
+        }
+        if (accessLog != null) {
+            /* the requests cut off above may still log, they are not waited for */
+            accessLog.close(ACCESS_LOG_CLOSE_TIMEOUT);
         }
-        return null;
-    }
-
-    @Override
-    public Object getMemberKeys() {
-        return new String[]{"start"};
     }
 
-    @Override
-    public boolean hasMember(String key) {
-        return false;
+    private static long remainingMillis(long deadline) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
     }
 
-    @Override
-    public void putMember(String key, Value value) {
-
+    private void stopWorkers(long timeoutMillis) {
+        executorService.shutdown();
+        try {
+            /* The workers are polyglot threads, they have to be gone before the context closes. */
+            if (!executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+                executorService.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            workerFactory.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,274 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * {@link HashemWebEngine} on top of the JDK's {@code com.sun.net.httpserver}. The JDK server's own
+ * thread only accepts connections and watches them for requests; every request is handed to a small
+ * dispatch pool, whose thread reads the request head with blocking reads and then calls the
+ * dispatcher. A client that never finishes its head therefore only holds one dispatch thread
+ * instead of the whole server. The request body is read by the worker that handles the exchange.
+ */
+public final class HashemHttpServerEngine implements HashemWebEngine {
+
+    /** Most requests whose heads are read or dispatched at the same time, the others wait. */
+    static final int DISPATCH_THREADS = 64;
+    private static final long DISPATCH_KEEP_ALIVE_SECONDS = 30;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor dispatchPool;
+    private volatile boolean draining;
+    private boolean started;
+
+    public HashemHttpServerEngine(int port, Consumer<HashemWebExchange> dispatcher) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        String threadName = "hashemi-web-dispatch-" + getPort() + "-";
+        AtomicInteger threads = new AtomicInteger();
+        this.dispatchPool = new ThreadPoolExecutor(DISPATCH_THREADS, DISPATCH_THREADS, DISPATCH_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, threadName + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        /* the threads are only started by requests and end when idle */
+        dispatchPool.allowCoreThreadTimeOut(true);
+        /* without an executor, the JDK server would read the heads on its only thread */
+        server.setExecutor(dispatchPool);
+        server.createContext("/", exchange -> dispatcher.accept(new Exchange(exchange, this)));
+    }
+
+    @Override
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** The JDK server writes responses with blocking writes on the calling thread. */
+    @Override
+    public boolean queuesWrites() {
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            server.start();
+        }
+    }
+
+    /**
+     * The JDK server can not close its listening socket without also cutting off the exchanges in
+     * progress, so it keeps accepting and only closes every connection after its response.
+     */
+    @Override
+    public void stopAccepting() {
+        draining = true;
+    }
+
+    /**
+     * Responses are written by the workers before the exchange is closed, so there is nothing left
+     * to wait for once the workers are idle. The JDK server's own delay would wait for idle
+     * connections as well.
+     */
+    @Override
+    public synchronized void stop(long timeoutMillis) {
+        draining = true;
+        if (!started) {
+            /* only the dispatcher thread releases the listening socket */
+            started = true;
+            server.start();
+        }
+        server.stop(0);
+        /* the connections are closed, so no dispatch thread is left waiting for a head */
+        dispatchPool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return server.toString();
+    }
+
+    private static final class Exchange implements HashemWebExchange {
+
+        private final HttpExchange exchange;
+        private final HashemHttpServerEngine engine;
+        private final long startNanos = System.nanoTime();
+        private boolean responded;
+        private long firstByteNanos;
+        private int responseStatus;
+        private long responseBytes;
+
+        Exchange(HttpExchange exchange, HashemHttpServerEngine engine) {
+            this.exchange = exchange;
+            this.engine = engine;
+        }
+
+        @Override
+        public String getMethod() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public String getRawPath() {
+            return exchange.getRequestURI().getRawPath();
+        }
+
+        @Override
+        public String getRawQuery() {
+            return exchange.getRequestURI().getRawQuery();
+        }
+
+        @Override
+        public String getRequestHeader(String name) {
+            List<String> values = exchange.getRequestHeaders().get(name);
+            return values == null || values.isEmpty() ? null : String.join(", ", values);
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaders() {
+            Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                values.put(header.getKey(), String.join(", ", header.getValue()));
+            }
+            return values;
+        }
+
+        @Override
+        public byte[] getRequestBody() {
+            return HashemWebRequest.readFully(exchange.getRequestBody());
+        }
+
+        @Override
+        public void sendResponse(int status, Map<String, String> headers, byte[] body) throws IOException {
+            respondedNow(status);
+            setHeaders(headers);
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            responseBytes = head ? 0 : body.length;
+            /* the JDK server treats a length of 0 as "chunked", -1 means no body */
+            exchange.sendResponseHeaders(status, body.length == 0 || head ? -1 : body.length);
+            if (body.length > 0 && !head) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+            }
+            exchange.close();
+        }
+
+        /**
+         * The JDK server only offers an output stream, so the file is transferred through a small
+         * buffer rather than by the kernel.
+         */
+        @Override
+        public void sendFile(int status, Map<String, String> headers, FileChannel file, long position, long length) throws IOException {
+            respondedNow(status);
+            setHeaders(headers);
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            responseBytes = head ? 0 : length;
+            exchange.sendResponseHeaders(status, length == 0 || head ? -1 : length);
+            if (length > 0 && !head) {
+                WritableByteChannel out = Channels.newChannel(exchange.getResponseBody());
+                long sent = 0;
+                while (sent < length) {
+                    long n = file.transferTo(position + sent, length - sent, out);
+                    if (n <= 0) {
+                        throw new EOFException("file shorter than " + (position + length) + " bytes");
+                    }
+                    sent += n;
+                }
+            }
+            exchange.close();
+        }
+
+        @Override
+        public OutputStream sendChunkedResponse(int status, Map<String, String> headers) throws IOException {
+            respondedNow(status);
+            setHeaders(headers);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        /* a HEAD response has no body */
+                    }
+                };
+            }
+            /* a length of 0 makes the JDK server send a chunked body */
+            exchange.sendResponseHeaders(status, 0);
+            return new FilterOutputStream(exchange.getResponseBody()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    responseBytes += len;
+                    /* the JDK server buffers chunks, send it right away */
+                    out.flush();
+                }
+
+                @Override
+                public void close() {
+                    exchange.close();
+                }
+            };
+        }
+
+        private void setHeaders(Map<String, String> headers) {
+            Headers responseHeaders = exchange.getResponseHeaders();
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    responseHeaders.set(header.getKey(), header.getValue());
+                }
+            }
+            if (engine.draining) {
+                responseHeaders.set("Connection", "close");
+            }
+        }
+
+        private void respondedNow(int status) {
+            responseStatus = status;
+            responded = true;
+            firstByteNanos = System.nanoTime();
+        }
+
+        @Override
+        public boolean isResponded() {
+            return responded;
+        }
+
+        @Override
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        @Override
+        public long getFirstByteNanos() {
+            return firstByteNanos;
+        }
+
+        @Override
+        public int getResponseStatus() {
+            return responseStatus;
+        }
+
+        @Override
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * State of one client connection of the {@link HashemNioEngine}, including the incremental
+ * HTTP/1.1 request parser.
+ * <p>
+ * Incoming bytes are read into a pooled direct buffer that the connection only holds while it has
+ * unprocessed bytes, so idle keep-alive connections hold no buffer. Once the end of the request
+ * head is found, the head is copied into a byte array owned by the connection and parsed in place:
+ * the parser only records offsets of the header names and values, and recognizes the headers the
+ * engine itself needs ({@code Content-Length}, {@code Connection}, {@code Transfer-Encoding})
+ * without creating strings. The method is mapped to constant strings and the request target string
+ * is reused as long as consecutive requests use the same target, so parsing a typical request does
+ * not allocate. Header strings are only created when the handler asks for them.
+ * <p>
+ * A connection handles one request at a time. Pipelined requests stay in the input buffer until
+ * the response of the current request has been written.
+ */
+final class HashemNioConnection {
+
+    enum State {
+        /** Waiting for the end of the request head. */
+        HEAD,
+        /** Head parsed, waiting for the body bytes in the input buffer. */
+        BODY,
+        /** Head parsed, the body is larger than the input buffer and read into its own array. */
+        LARGE_BODY,
+        /** A complete request is being handled, reading is suspended. */
+        HANDLING,
+        /** The response is being written. */
+        WRITING,
+        /**
+         * The response is a stream of server-sent events that are queued by other threads. Between
+         * events the connection is parked on the selector and only watched for being closed.
+         */
+        EVENTS
+    }
+
+    static final int MAX_HEADERS = 64;
+    static final long MAX_BODY = 16L * 1024 * 1024;
+
+    private static final byte[] GET = bytes("GET");
+    private static final byte[] POST = bytes("POST");
+    private static final byte[] PUT = bytes("PUT");
+    private static final byte[] DELETE = bytes("DELETE");
+    private static final byte[] HEAD = bytes("HEAD");
+    private static final byte[] OPTIONS = bytes("OPTIONS");
+    private static final byte[] PATCH = bytes("PATCH");
+    private static final byte[] HTTP_1_0 = bytes("HTTP/1.0");
+    private static final byte[] HTTP_1_1 = bytes("HTTP/1.1");
+    private static final byte[] CONTENT_LENGTH = bytes("content-length");
+    private static final byte[] CONNECTION = bytes("connection");
+    private static final byte[] TRANSFER_ENCODING = bytes("transfer-encoding");
+    private static final byte[] CLOSE = bytes("close");
+    private static final byte[] KEEP_ALIVE = bytes("keep-alive");
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final int[] NO_HEADERS = new int[0];
+
+    final SocketChannel channel;
+    SelectionKey key;
+    State state = State.HEAD;
+    /** When the connection started to wait for its current request head, in ms. */
+    long waitingSince;
+    /** When bytes were last read from the client, in ms. */
+    long lastRead;
+
+    /** Unprocessed input, in write mode; {@code null} while there is none. */
+    ByteBuffer in;
+    /** Position in {@link #in} up to which the head terminator was searched already. */
+    private int scanned;
+
+    /* The parsed request head. */
+    byte[] head = new byte[1024];
+    int headLength;
+    String method;
+    private byte[] targetBytes = new byte[0];
+    private String target;
+    private int pathEnd;
+    /** name start, name end, value start, value end for every header. */
+    int[] headers = new int[MAX_HEADERS * 4];
+    int headerCount;
+    long contentLength;
+    boolean keepAlive;
+    boolean http10;
+
+    /* The body, either the first contentLength bytes of in or largeBody. */
+    byte[] largeBody;
+    int largeBodyFilled;
+
+    /* The response being written. */
+    ByteBuffer[] out;
+    ByteBuffer pooledOut;
+    boolean closeAfterWrite;
+    /** Whether {@link #out} is a chunk of a streamed response that is followed by more. */
+    boolean streaming;
+    volatile boolean closed;
+
+    /* The server-sent events not written yet, guarded by the connection. */
+    ArrayDeque<ByteBuffer> events;
+    long queuedEventBytes;
+    /** Whether the selector thread is going to write the events, i.e. they need no wakeup. */
+    boolean eventsScheduled;
+    volatile boolean closeAfterEvents;
+    Runnable onClose;
+
+    HashemNioConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Advances the parser over the bytes in {@link #in}.
+     *
+     * @return {@code 0} if more input is needed, {@code 1} if a complete request is available, or
+     *         an HTTP error status if the request is malformed
+     */
+    int parse() {
+        if (state == State.HEAD) {
+            if (in == null) {
+                return 0;
+            }
+            int end = findHeadEnd();
+            if (end < 0) {
+                return in.hasRemaining() ? 0 : 431;
+            }
+            int status = parseHead(end);
+            if (status != 0) {
+                return status;
+            }
+            consume(end);
+            if (contentLength > in.capacity()) {
+                largeBody = new byte[(int) contentLength];
+                largeBodyFilled = 0;
+                if (in != null) {
+                    int available = Math.min(in.position(), (int) contentLength);
+                    copy(in, 0, largeBody, 0, available);
+                    largeBodyFilled = available;
+                    consume(available);
+                }
+                state = State.LARGE_BODY;
+            } else {
+                state = State.BODY;
+            }
+        }
+        if (state == State.BODY) {
+            int available = in == null ? 0 : in.position();
+            if (available < contentLength) {
+                return 0;
+            }
+            state = State.HANDLING;
+            return 1;
+        }
+        if (state == State.LARGE_BODY) {
+            if (largeBodyFilled < contentLength) {
+                return 0;
+            }
+            state = State.HANDLING;
+            return 1;
+        }
+        return 0;
+    }
+
+    /** The buffer the next read for the current state should go to. */
+    ByteBuffer readTarget(HashemByteBufferPool pool) {
+        if (state == State.LARGE_BODY) {
+            return ByteBuffer.wrap(largeBody, largeBodyFilled, largeBody.length - largeBodyFilled);
+        }
+        if (in == null) {
+            in = pool.acquire();
+            scanned = 0;
+        }
+        return in;
+    }
+
+    void afterRead(int bytes) {
+        if (state == State.LARGE_BODY && bytes > 0) {
+            largeBodyFilled += bytes;
+        }
+    }
+
+    /**
+     * Drops the request that was just answered and prepares the parser for the next, possibly
+     * already buffered, request.
+     */
+    void finishRequest(HashemByteBufferPool pool) {
+        if (largeBody == null && contentLength > 0) {
+            consume((int) contentLength);
+        }
+        largeBody = null;
+        largeBodyFilled = 0;
+        contentLength = 0;
+        headerCount = 0;
+        out = null;
+        state = State.HEAD;
+        releaseInputIfEmpty(pool);
+    }
+
+    void releaseInputIfEmpty(HashemByteBufferPool pool) {
+        if (in != null && in.position() == 0) {
+            pool.release(in);
+            in = null;
+        }
+    }
+
+    /**
+     * Turns the connection into a stream of server-sent events. The request will not be parsed
+     * again, so its head is dropped to keep parked connections small.
+     */
+    void startEvents(HashemByteBufferPool pool, Runnable closeCallback) {
+        events = new ArrayDeque<>(4);
+        onClose = closeCallback;
+        head = NO_BYTES;
+        headers = NO_HEADERS;
+        headerCount = 0;
+        targetBytes = NO_BYTES;
+        release(pool);
+        state = State.EVENTS;
+    }
+
+    /**
+     * Returns the queued events to write them in one go, at most {@code max}. Must be called while
+     * holding the lock of the connection.
+     */
+    ByteBuffer[] queuedEvents(int max) {
+        ByteBuffer[] buffers = new ByteBuffer[Math.min(events.size(), max)];
+        int i = 0;
+        for (ByteBuffer event : events) {
+            if (i == buffers.length) {
+                break;
+            }
+            buffers[i++] = event;
+        }
+        return buffers;
+    }
+
+    /** Drops the events that are written completely. Must be called while holding the lock. */
+    void eventsWritten(long written) {
+        queuedEventBytes -= written;
+        while (!events.isEmpty() && !events.peek().hasRemaining()) {
+            events.poll();
+        }
+    }
+
+    void release(HashemByteBufferPool pool) {
+        if (in != null) {
+            pool.release(in);
+            in = null;
+        }
+        if (pooledOut != null) {
+            pool.release(pooledOut);
+            pooledOut = null;
+        }
+    }
+
+    private int findHeadEnd() {
+        int limit = in.position();
+        for (int i = Math.max(scanned - 3, 0); i + 3 < limit; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                scanned = 0;
+                return i + 4;
+            }
+        }
+        scanned = limit;
+        return -1;
+    }
+
+    /** Removes the first {@code count} bytes of the input buffer. */
+    private void consume(int count) {
+        if (count == 0) {
+            return;
+        }
+        in.flip();
+        in.position(count);
+        in.compact();
+    }
+
+    private int parseHead(int end) {
+        if (head.length < end) {
+            head = new byte[Math.max(end, head.length * 2)];
+        }
+        copy(in, 0, head, 0, end);
+        headLength = end;
+        headerCount = 0;
+        contentLength = 0;
+        boolean hasContentLength = false;
+
+        /* request line: METHOD SP target SP version CRLF */
+        int lineEnd = indexOf(head, (byte) '\r', 0, end);
+        int space1 = indexOf(head, (byte) ' ', 0, lineEnd);
+        int space2 = space1 < 0 ? -1 : indexOf(head, (byte) ' ', space1 + 1, lineEnd);
+        if (space1 <= 0 || space2 < 0 || space2 == space1 + 1) {
+            return 400;
+        }
+        method = method(head, 0, space1);
+        setTarget(space1 + 1, space2);
+        if (equals(head, space2 + 1, lineEnd, HTTP_1_1)) {
+            http10 = false;
+            keepAlive = true;
+        } else if (equals(head, space2 + 1, lineEnd, HTTP_1_0)) {
+            http10 = true;
+            keepAlive = false;
+        } else {
+            return 505;
+        }
+
+        /* header lines: name ":" OWS value OWS CRLF */
+        int lineStart = lineEnd + 2;
+        while (lineStart < end - 2) {
+            lineEnd = indexOf(head, (byte) '\r', lineStart, end);
+            int colon = indexOf(head, (byte) ':', lineStart, lineEnd);
+            if (colon <= lineStart) {
+                return 400;
+            }
+            if (headerCount == MAX_HEADERS) {
+                return 431;
+            }
+            int valueStart = colon + 1;
+            while (valueStart < lineEnd && (head[valueStart] == ' ' || head[valueStart] == '\t')) {
+                valueStart++;
+            }
+            int valueEnd = lineEnd;
+            while (valueEnd > valueStart && (head[valueEnd - 1] == ' ' || head[valueEnd - 1] == '\t')) {
+                valueEnd--;
+            }
+            int index = headerCount * 4;
+            headers[index] = lineStart;
+            headers[index + 1] = colon;
+            headers[index + 2] = valueStart;
+            headers[index + 3] = valueEnd;
+            headerCount++;
+
+            if (equalsIgnoreCase(head, lineStart, colon, CONTENT_LENGTH)) {
+                long length = parseLength(valueStart, valueEnd);
+                if (length < 0 || hasContentLength && length != contentLength) {
+                    /* conflicting lengths leave the end of the body open to interpretation */
+                    return 400;
+                }
+                hasContentLength = true;
+                contentLength = length;
+                if (contentLength > MAX_BODY) {
+                    return 413;
+                }
+            } else if (equalsIgnoreCase(head, lineStart, colon, CONNECTION)) {
+                if (equalsIgnoreCase(head, valueStart, valueEnd, CLOSE)) {
+                    keepAlive = false;
+                } else if (equalsIgnoreCase(head, valueStart, valueEnd, KEEP_ALIVE)) {
+                    keepAlive = true;
+                }
+            } else if (equalsIgnoreCase(head, lineStart, colon, TRANSFER_ENCODING)) {
+                /* chunked request bodies are not supported */
+                return 501;
+            }
+            lineStart = lineEnd + 2;
+        }
+        return 0;
+    }
+
+    private void setTarget(int start, int end) {
+        int length = end - start;
+        if (!equals(head, start, end, targetBytes)) {
+            targetBytes = new byte[length];
+            System.arraycopy(head, start, targetBytes, 0, length);
+            target = new String(targetBytes, StandardCharsets.ISO_8859_1);
+        }
+        int query = target.indexOf('?');
+        pathEnd = query < 0 ? target.length() : query;
+    }
+
+    private long parseLength(int start, int end) {
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = head[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /* Accessors used by the exchange, on the worker thread. */
+
+    String getRawPath() {
+        return pathEnd == target.length() ? target : target.substring(0, pathEnd);
+    }
+
+    String getRawQuery() {
+        return pathEnd == target.length() ? null : target.substring(pathEnd + 1);
+    }
+
+    String getRequestHeader(String name) {
+        StringBuilder joined = null;
+        String first = null;
+        for (int i = 0; i < headerCount; i++) {
+            int index = i * 4;
+            if (equalsIgnoreCase(head, headers[index], headers[index + 1], name)) {
+                String value = string(headers[index + 2], headers[index + 3]);
+                if (first == null) {
+                    first = value;
+                } else {
+                    if (joined == null) {
+                        joined = new StringBuilder(first);
+                    }
+                    joined.append(", ").append(value);
+                }
+            }
+        }
+        return joined != null ? joined.toString() : first;
+    }
+
+    Map<String, String> getRequestHeaders() {
+        Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < headerCount; i++) {
+            int index = i * 4;
+            String name = string(headers[index], headers[index + 1]);
+            String value = string(headers[index + 2], headers[index + 3]);
+            values.merge(name, value, (a, b) -> a + ", " + b);
+        }
+        return values;
+    }
+
+    byte[] getRequestBody() {
+        if (largeBody != null) {
+            return largeBody;
+        }
+        byte[] body = new byte[(int) contentLength];
+        copy(in, 0, body, 0, body.length);
+        return body;
+    }
+
+    private String string(int start, int end) {
+        return new String(head, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /* Byte helpers. */
+
+    private static String method(byte[] bytes, int start, int end) {
+        if (equals(bytes, start, end, GET)) {
+            return "GET";
+        } else if (equals(bytes, start, end, POST)) {
+            return "POST";
+        } else if (equals(bytes, start, end, PUT)) {
+            return "PUT";
+        } else if (equals(bytes, start, end, DELETE)) {
+            return "DELETE";
+        } else if (equals(bytes, start, end, HEAD)) {
+            return "HEAD";
+        } else if (equals(bytes, start, end, OPTIONS)) {
+            return "OPTIONS";
+        } else if (equals(bytes, start, end, PATCH)) {
+            return "PATCH";
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void copy(ByteBuffer from, int offset, byte[] to, int toOffset, int length) {
+        ByteBuffer view = from.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        view.get(to, toOffset, length);
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(byte[] bytes, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compares with a lower case ASCII constant. */
+    private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, byte[] lowerCase) {
+        if (end - start != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            byte b = bytes[start + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) bytes[start + i]) != Character.toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
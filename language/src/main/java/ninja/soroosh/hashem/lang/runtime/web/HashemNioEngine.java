@@ -0,0 +1,893 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking {@link HashemWebEngine}. A single selector thread accepts connections, reads and
+ * parses requests (see {@link HashemNioConnection}) and writes responses; the worker threads only
+ * run the handlers. Unlike {@link HashemHttpServerEngine}, slow or idle clients never occupy a
+ * worker, and request and response buffers come from a {@link HashemByteBufferPool} instead of
+ * being allocated per exchange.
+ * <p>
+ * The worker that answers an exchange encodes the response head into a pooled direct buffer and
+ * queues the connection for the selector thread, which writes it and then continues with the next
+ * pipelined request of that connection, if any.
+ * <p>
+ * A connection that waits longer than the {@code idleTimeout} option for a complete request head,
+ * or stalls that long in its body, is closed, so clients that open connections and send nothing,
+ * or a head a byte at a time, can not hold connections and buffers forever.
+ * <p>
+ * A connection that streams server-sent events is parked on the selector between events, so an
+ * idle subscriber costs neither a thread nor a buffer. Events queued by any thread are written by
+ * the selector thread; a subscriber that falls more than {@value #MAX_QUEUED_EVENT_BYTES} bytes
+ * behind is disconnected.
+ */
+public final class HashemNioEngine implements HashemWebEngine {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /** Largest region of a file that is mapped into one buffer. */
+    private static final long MAX_MAPPING = 1 << 30;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    static final int MAX_QUEUED_EVENT_BYTES = 256 * 1024;
+    private static final int MAX_EVENTS_PER_WRITE = 64;
+
+    private static final byte[] CRLF = HashemNioConnection.bytes("\r\n");
+    private static final byte[] CONTENT_LENGTH = HashemNioConnection.bytes("Content-Length: ");
+    private static final byte[] CONNECTION_CLOSE = HashemNioConnection.bytes("Connection: close\r\n");
+    private static final byte[] CONNECTION_KEEP_ALIVE = HashemNioConnection.bytes("Connection: keep-alive\r\n");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = HashemNioConnection.bytes("Transfer-Encoding: chunked\r\n");
+    private static final byte[] LAST_CHUNK = HashemNioConnection.bytes("0\r\n\r\n");
+    private static final byte[] EMPTY = new byte[0];
+    private static final long CHUNKED = -2;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Consumer<HashemWebExchange> dispatcher;
+    private final Consumer<Throwable> errors;
+    private final HashemByteBufferPool pool = new HashemByteBufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final ConcurrentLinkedQueue<HashemNioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Set<HashemNioConnection> connections = new HashSet<>();
+    private final AtomicInteger handling = new AtomicInteger();
+    private final Thread selectorThread;
+    /** Set when the engine stops accepting, responses close their connection from then on. */
+    private volatile boolean draining;
+    private volatile boolean stopping;
+    private boolean started;
+    private volatile long stopDeadline;
+
+    /** {@code Date} header line, refreshed by the selector thread once per second. */
+    private volatile byte[] dateHeader;
+    private long dateSecond;
+    /** The time of the current round of the selector thread. */
+    private long now;
+    /** Milliseconds a connection may wait for a request or stall in its body, {@code 0} is forever. */
+    private final long idleTimeout;
+
+    /**
+     * @param reusePort whether to bind with {@code SO_REUSEPORT}, so that the kernel balances the
+     *            connections of the port over all processes bound to it
+     * @param idleTimeout milliseconds after which a connection that has not sent a complete request
+     *            head, or stalls while sending the body, is closed; {@code 0} never closes it
+     * @param errors called if the selector fails and the engine stops serving
+     */
+    public HashemNioEngine(int port, boolean reusePort, long idleTimeout, Consumer<HashemWebExchange> dispatcher, Consumer<Throwable> errors) throws IOException {
+        this.dispatcher = dispatcher;
+        this.idleTimeout = idleTimeout;
+        this.errors = errors;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort) {
+                setReusePort(serverChannel);
+            }
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        now = System.currentTimeMillis();
+        updateDate(now);
+        this.selectorThread = new Thread(this::run, "hashemi-web-selector-" + getPort());
+        selectorThread.setDaemon(true);
+    }
+
+    /** {@code SO_REUSEPORT} has no constant before Java 9, it is looked up by name. */
+    @SuppressWarnings("unchecked")
+    private static void setReusePort(ServerSocketChannel channel) throws IOException {
+        for (SocketOption<?> option : channel.supportedOptions()) {
+            if ("SO_REUSEPORT".equals(option.name())) {
+                channel.setOption((SocketOption<Boolean>) option, true);
+                return;
+            }
+        }
+        throw new IOException("SO_REUSEPORT is not supported on this platform");
+    }
+
+    @Override
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /** Responses are queued and written by the selector when the socket is ready. */
+    @Override
+    public boolean queuesWrites() {
+        return true;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            selectorThread.start();
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        draining = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public synchronized void stop(long timeoutMillis) {
+        if (!started) {
+            started = true;
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                /* closing is best effort, the engine never served anything */
+            }
+            return;
+        }
+        draining = true;
+        stopDeadline = System.currentTimeMillis() + timeoutMillis;
+        stopping = true;
+        selector.wakeup();
+        try {
+            selectorThread.join(timeoutMillis + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HashemNioEngine[port=" + getPort() + "]";
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (draining && serverChannel.isOpen()) {
+                    serverChannel.close();
+                    closeIdleConnections();
+                }
+                if (stopping) {
+                    if (handling.get() == 0 || System.currentTimeMillis() >= stopDeadline) {
+                        break;
+                    }
+                }
+                selector.select(stopping ? 10 : 1000);
+                now = System.currentTimeMillis();
+                if (updateDate(now) && idleTimeout > 0) {
+                    closeTimedOut();
+                }
+                HashemNioConnection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    write(pending);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        HashemNioConnection connection = (HashemNioConnection) key.attachment();
+                        if (key.isWritable()) {
+                            write(connection);
+                        } else if (key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            /* closed by stop() */
+        } catch (IOException e) {
+            errors.accept(e);
+        } finally {
+            for (HashemNioConnection connection : connections.toArray(new HashemNioConnection[0])) {
+                close(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                /* closing is best effort, the connections are closed already */
+            }
+        }
+    }
+
+    /**
+     * Closes the keep-alive connections waiting for their next request, which would only get a 503,
+     * and the event streams, which would never end by themselves.
+     */
+    private void closeIdleConnections() {
+        for (HashemNioConnection connection : connections.toArray(new HashemNioConnection[0])) {
+            if (connection.state == HashemNioConnection.State.HEAD && connection.in == null || connection.state == HashemNioConnection.State.EVENTS) {
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Closes the connections that have waited longer than the idle timeout for a complete request
+     * head, counted from the end of the previous request, or that have not sent a byte of their
+     * body for as long. Otherwise a client that keeps connections open, or sends a head a byte at
+     * a time, would hold them and their input buffers forever.
+     */
+    private void closeTimedOut() {
+        for (HashemNioConnection connection : connections.toArray(new HashemNioConnection[0])) {
+            HashemNioConnection.State state = connection.state;
+            if (state == HashemNioConnection.State.HEAD && now - connection.waitingSince > idleTimeout ||
+                            (state == HashemNioConnection.State.BODY || state == HashemNioConnection.State.LARGE_BODY) && now - connection.lastRead > idleTimeout) {
+                close(connection);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            HashemNioConnection connection = new HashemNioConnection(channel);
+            connection.waitingSince = now;
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void read(HashemNioConnection connection) {
+        if (connection.state == HashemNioConnection.State.EVENTS) {
+            readEvents(connection);
+            return;
+        }
+        int read;
+        try {
+            ByteBuffer target = connection.readTarget(pool);
+            read = connection.channel.read(target);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (read < 0) {
+            close(connection);
+            return;
+        }
+        connection.lastRead = now;
+        connection.afterRead(read);
+        process(connection);
+    }
+
+    /** Dispatches the next request of the connection if it is complete, or waits for more input. */
+    private void process(HashemNioConnection connection) {
+        int result = connection.parse();
+        if (result == 0) {
+            connection.releaseInputIfEmpty(pool);
+            connection.key.interestOps(SelectionKey.OP_READ);
+        } else if (result == 1) {
+            connection.key.interestOps(0);
+            handling.incrementAndGet();
+            dispatcher.accept(new Exchange(connection));
+        } else {
+            connection.key.interestOps(0);
+            connection.keepAlive = false;
+            handling.incrementAndGet();
+            new Exchange(connection).respond(result, null, EMPTY, null);
+        }
+    }
+
+    private void write(HashemNioConnection connection) {
+        if (connection.closed) {
+            return;
+        }
+        if (connection.state == HashemNioConnection.State.EVENTS) {
+            writeEvents(connection);
+            return;
+        }
+        try {
+            connection.channel.write(connection.out);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (connection.out[connection.out.length - 1].hasRemaining()) {
+            connection.key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        if (connection.streaming) {
+            /* a chunk of a streamed response, wake up the worker for the next one */
+            connection.key.interestOps(0);
+            synchronized (connection) {
+                connection.out = null;
+                connection.notifyAll();
+            }
+            return;
+        }
+        if (connection.pooledOut != null) {
+            pool.release(connection.pooledOut);
+            connection.pooledOut = null;
+        }
+        if (connection.closeAfterWrite || draining) {
+            /* closing a connection that is still writing ends its exchange */
+            close(connection);
+            return;
+        }
+        handling.decrementAndGet();
+        connection.finishRequest(pool);
+        connection.waitingSince = now;
+        process(connection);
+    }
+
+    /**
+     * Writes the queued events of a parked connection. When all are written, the connection is
+     * parked again and only read to notice when the client goes away.
+     */
+    private void writeEvents(HashemNioConnection connection) {
+        while (true) {
+            ByteBuffer[] buffers;
+            synchronized (connection) {
+                if (connection.events.isEmpty()) {
+                    connection.eventsScheduled = false;
+                    if (connection.closeAfterEvents || draining) {
+                        break;
+                    }
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                buffers = connection.queuedEvents(MAX_EVENTS_PER_WRITE);
+            }
+            long written;
+            try {
+                written = connection.channel.write(buffers);
+            } catch (IOException e) {
+                close(connection);
+                return;
+            }
+            synchronized (connection) {
+                connection.eventsWritten(written);
+            }
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                /* the client is slow, go on when it has read some */
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        close(connection);
+    }
+
+    /** A client does not send anything on an event stream, except for closing it. */
+    private void readEvents(HashemNioConnection connection) {
+        ByteBuffer discard = pool.acquire();
+        try {
+            while (true) {
+                int read = connection.channel.read(discard);
+                if (read < 0) {
+                    close(connection);
+                    return;
+                } else if (read == 0) {
+                    return;
+                }
+                discard.clear();
+            }
+        } catch (IOException e) {
+            close(connection);
+        } finally {
+            pool.release(discard);
+        }
+    }
+
+    /**
+     * Closes the connection. Reads are suspended while a request is handled, so a connection is
+     * only closed in the middle of an exchange when writing the response failed or the engine
+     * shuts down.
+     */
+    private void close(HashemNioConnection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connections.remove(connection);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            /* nothing left to do with the connection */
+        }
+        if (connection.state == HashemNioConnection.State.WRITING) {
+            handling.decrementAndGet();
+        }
+        synchronized (connection) {
+            /* a worker streaming a response may be waiting for its chunk */
+            connection.notifyAll();
+        }
+        if (connection.state != HashemNioConnection.State.HANDLING) {
+            /* a worker may still read the request from the input buffer */
+            connection.release(pool);
+        }
+        if (connection.onClose != null) {
+            connection.onClose.run();
+        }
+    }
+
+    /** Called from a worker thread with the encoded response. */
+    private void scheduleWrite(HashemNioConnection connection) {
+        boolean wasEmpty = pendingWrites.isEmpty();
+        pendingWrites.offer(connection);
+        if (wasEmpty || Thread.currentThread() != selectorThread) {
+            selector.wakeup();
+        }
+    }
+
+    /** @return whether a new second has begun */
+    private boolean updateDate(long time) {
+        long second = time / 1000;
+        if (second != dateSecond) {
+            dateSecond = second;
+            String date = DATE_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+            dateHeader = HashemNioConnection.bytes("Date: " + date + "\r\n");
+            return true;
+        }
+        return false;
+    }
+
+    private static ByteBuffer put(ByteBuffer buffer, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+        return buffer;
+    }
+
+    private static void putDecimal(ByteBuffer buffer, long value) {
+        if (value >= 10) {
+            putDecimal(buffer, value / 10);
+        }
+        buffer.put((byte) ('0' + value % 10));
+    }
+
+    private static int estimateHeadSize(Map<String, String> headers) {
+        int size = 160;
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                size += header.getKey().length() + header.getValue().length() + 4;
+            }
+        }
+        return size;
+    }
+
+    private final class Exchange implements HashemWebExchange {
+
+        private final HashemNioConnection connection;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean responded;
+        private long firstByteNanos;
+        private int responseStatus;
+        private long responseBytes;
+
+        Exchange(HashemNioConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public String getMethod() {
+            return connection.method;
+        }
+
+        @Override
+        public String getRawPath() {
+            return connection.getRawPath();
+        }
+
+        @Override
+        public String getRawQuery() {
+            return connection.getRawQuery();
+        }
+
+        @Override
+        public String getRequestHeader(String name) {
+            checkNotResponded();
+            return connection.getRequestHeader(name);
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaders() {
+            checkNotResponded();
+            return connection.getRequestHeaders();
+        }
+
+        @Override
+        public byte[] getRequestBody() {
+            checkNotResponded();
+            return connection.getRequestBody();
+        }
+
+        @Override
+        public void sendResponse(int status, Map<String, String> headers, byte[] body) throws IOException {
+            if (connection.closed) {
+                respondedNow(status);
+                throw new IOException("connection closed");
+            }
+            respond(status, headers, body, null);
+        }
+
+        @Override
+        public void sendResponse(HashemWebResponse response) throws IOException {
+            if (connection.closed) {
+                respondedNow(response.getStatus());
+                throw new IOException("connection closed");
+            }
+            respond(response.getStatus(), response.getHeaders(), response.getBody(), response.getDirectBody());
+        }
+
+        @Override
+        public HashemWebEventSink startEvents(Map<String, String> headers, Runnable onClose) throws IOException {
+            if (responded) {
+                throw new IllegalStateException("exchange already answered");
+            }
+            respondedNow(200);
+            if (connection.closed) {
+                throw new IOException("connection closed");
+            }
+            /* the stream has no length, it ends when the connection is closed */
+            ByteBuffer head = ByteBuffer.allocate(estimateHeadSize(headers));
+            encodeHead(head, 200, headers, -1, false);
+            head.flip();
+            EventSink sink = new EventSink(connection);
+            synchronized (connection) {
+                connection.startEvents(pool, onClose);
+            }
+            /* as far as stopping is concerned, the exchange is over */
+            handling.decrementAndGet();
+            sink.send(head);
+            return sink;
+        }
+
+        @Override
+        public boolean isResponded() {
+            return responded;
+        }
+
+        @Override
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        @Override
+        public long getFirstByteNanos() {
+            return firstByteNanos;
+        }
+
+        @Override
+        public int getResponseStatus() {
+            return responseStatus;
+        }
+
+        @Override
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        private void respondedNow(int status) {
+            responseStatus = status;
+            firstByteNanos = System.nanoTime();
+            responded = true;
+        }
+
+        private void checkNotResponded() {
+            if (responded) {
+                throw new IllegalStateException("exchange already answered");
+            }
+        }
+
+        /**
+         * Encodes the response head into a pooled buffer and queues the connection for writing.
+         * Small bodies are copied behind the head, larger ones are written from {@code direct} if
+         * given or from the array.
+         */
+        void respond(int status, Map<String, String> headers, byte[] body, ByteBuffer direct) {
+            if (responded) {
+                throw new IllegalStateException("exchange already answered");
+            }
+            respondedNow(status);
+            if (connection.closed) {
+                return;
+            }
+            boolean head = "HEAD".equals(connection.method);
+            responseBytes = head ? 0 : body.length;
+            boolean keepAlive = connection.keepAlive && !draining;
+            ByteBuffer out = encodeResponseHead(status, headers, body.length, keepAlive);
+            ByteBuffer[] buffers;
+            if (head || body.length == 0) {
+                buffers = new ByteBuffer[]{out};
+            } else if (body.length <= out.remaining()) {
+                out.put(body);
+                buffers = new ByteBuffer[]{out};
+            } else {
+                buffers = new ByteBuffer[]{out, direct != null ? direct : ByteBuffer.wrap(body)};
+            }
+            queueResponse(out, buffers, keepAlive);
+        }
+
+        /**
+         * Maps the file region into memory, so the selector thread writes it straight from the page
+         * cache. The mapping stays valid after the channel is closed.
+         */
+        @Override
+        public void sendFile(int status, Map<String, String> headers, FileChannel file, long position, long length) throws IOException {
+            if (responded) {
+                throw new IllegalStateException("exchange already answered");
+            }
+            if (connection.closed) {
+                respondedNow(status);
+                throw new IOException("connection closed");
+            }
+            boolean head = "HEAD".equals(connection.method);
+            int mappings = head ? 0 : (int) ((length + MAX_MAPPING - 1) / MAX_MAPPING);
+            ByteBuffer[] buffers = new ByteBuffer[1 + mappings];
+            for (int i = 0; i < mappings; i++) {
+                long offset = i * MAX_MAPPING;
+                buffers[1 + i] = file.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(MAX_MAPPING, length - offset));
+            }
+            respondedNow(status);
+            responseBytes = head ? 0 : length;
+            boolean keepAlive = connection.keepAlive && !draining;
+            buffers[0] = encodeResponseHead(status, headers, length, keepAlive);
+            queueResponse(buffers[0], buffers, keepAlive);
+        }
+
+        private ByteBuffer encodeResponseHead(int status, Map<String, String> headers, long contentLength, boolean keepAlive) {
+            int headSize = estimateHeadSize(headers);
+            ByteBuffer out = headSize <= BUFFER_SIZE ? pool.acquire() : ByteBuffer.allocate(headSize);
+            encodeHead(out, status, headers, contentLength, keepAlive);
+            return out;
+        }
+
+        private void queueResponse(ByteBuffer out, ByteBuffer[] buffers, boolean keepAlive) {
+            out.flip();
+            connection.pooledOut = out;
+            connection.out = buffers;
+            connection.closeAfterWrite = !keepAlive;
+            connection.state = HashemNioConnection.State.WRITING;
+            scheduleWrite(connection);
+        }
+
+        @Override
+        public OutputStream sendChunkedResponse(int status, Map<String, String> headers) throws IOException {
+            if (responded) {
+                throw new IllegalStateException("exchange already answered");
+            }
+            respondedNow(status);
+            /* HTTP/1.0 has no chunked encoding, the end of the body is marked by closing */
+            boolean chunked = !connection.http10;
+            boolean keepAlive = connection.keepAlive && !draining && chunked;
+            ByteBuffer out = ByteBuffer.allocate(estimateHeadSize(headers) + 32);
+            encodeHead(out, status, headers, chunked ? CHUNKED : -1, keepAlive);
+            out.flip();
+            connection.closeAfterWrite = !keepAlive;
+            connection.state = HashemNioConnection.State.WRITING;
+            if ("HEAD".equals(connection.method)) {
+                send(new ByteBuffer[]{out}, true);
+                return new ChunkStream(false, true);
+            }
+            send(new ByteBuffer[]{out}, false);
+            return new ChunkStream(chunked, false);
+        }
+
+        /**
+         * Hands buffers of a chunked response to the selector thread. Except for the last one, the
+         * worker waits until they are written, which bounds the memory a streaming handler holds
+         * to its own buffer and slows it down to the pace of the client.
+         */
+        private void send(ByteBuffer[] buffers, boolean last) throws IOException {
+            synchronized (connection) {
+                if (connection.closed) {
+                    throw new IOException("connection closed");
+                }
+                connection.out = buffers;
+                connection.streaming = !last;
+            }
+            scheduleWrite(connection);
+            if (last) {
+                return;
+            }
+            synchronized (connection) {
+                while (connection.out != null && !connection.closed) {
+                    try {
+                        connection.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (connection.closed) {
+                    throw new IOException("connection closed");
+                }
+            }
+        }
+
+        /** Body of a chunked response, every write is sent as one chunk. */
+        private final class ChunkStream extends OutputStream {
+
+            private final boolean chunked;
+            private final boolean discard;
+            private boolean closed;
+
+            ChunkStream(boolean chunked, boolean discard) {
+                this.chunked = chunked;
+                this.discard = discard;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (closed) {
+                    throw new IOException("stream closed");
+                }
+                if (discard || len == 0) {
+                    return;
+                }
+                ByteBuffer data = ByteBuffer.wrap(b, off, len);
+                responseBytes += len;
+                if (chunked) {
+                    ByteBuffer size = ByteBuffer.allocate(18);
+                    put(size, Integer.toHexString(len)).put(CRLF).flip();
+                    send(new ByteBuffer[]{size, data, ByteBuffer.wrap(CRLF)}, false);
+                } else {
+                    send(new ByteBuffer[]{data}, false);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed || discard) {
+                    closed = true;
+                    return;
+                }
+                closed = true;
+                send(new ByteBuffer[]{ByteBuffer.wrap(chunked ? LAST_CHUNK : EMPTY)}, true);
+            }
+        }
+
+        /**
+         * Writes the status line and headers.
+         *
+         * @param contentLength the body length, {@link #CHUNKED} for a chunked body or {@code -1}
+         *            for a body that ends when the connection is closed
+         */
+        private void encodeHead(ByteBuffer out, int status, Map<String, String> headers, long contentLength, boolean keepAlive) {
+            put(out, connection.http10 ? "HTTP/1.0 " : "HTTP/1.1 ");
+            putDecimal(out, status);
+            put(out, " ");
+            put(out, HashemWebStatus.reason(status)).put(CRLF);
+            out.put(dateHeader);
+            if (contentLength == CHUNKED) {
+                out.put(TRANSFER_ENCODING_CHUNKED);
+            } else if (contentLength >= 0) {
+                out.put(CONTENT_LENGTH);
+                putDecimal(out, contentLength);
+                out.put(CRLF);
+            }
+            if (!keepAlive) {
+                out.put(CONNECTION_CLOSE);
+            } else if (connection.http10) {
+                out.put(CONNECTION_KEEP_ALIVE);
+            }
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (!"Content-Length".equalsIgnoreCase(header.getKey()) && !"Transfer-Encoding".equalsIgnoreCase(header.getKey())) {
+                        out.put(header.getKey().getBytes(StandardCharsets.ISO_8859_1)).put((byte) ':').put((byte) ' ');
+                        out.put(header.getValue().getBytes(StandardCharsets.ISO_8859_1)).put(CRLF);
+                    }
+                }
+            }
+            out.put(CRLF);
+        }
+    }
+
+    /** Queues events for a connection in the {@code EVENTS} state. */
+    private final class EventSink implements HashemWebEventSink {
+
+        private final HashemNioConnection connection;
+
+        EventSink(HashemNioConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean send(ByteBuffer events) {
+            boolean schedule;
+            synchronized (connection) {
+                if (connection.closed || connection.closeAfterEvents) {
+                    return false;
+                }
+                if (connection.queuedEventBytes + events.remaining() > MAX_QUEUED_EVENT_BYTES) {
+                    /* the client does not keep up, drop it rather than buffering without limit */
+                    connection.events.clear();
+                    connection.closeAfterEvents = true;
+                    schedule = !connection.eventsScheduled;
+                    connection.eventsScheduled = true;
+                    events = null;
+                } else {
+                    connection.events.add(events.duplicate());
+                    connection.queuedEventBytes += events.remaining();
+                    schedule = !connection.eventsScheduled;
+                    connection.eventsScheduled = true;
+                }
+            }
+            if (schedule) {
+                scheduleWrite(connection);
+            }
+            return events != null;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !connection.closed && !connection.closeAfterEvents;
+        }
+
+        @Override
+        public void close() {
+            boolean schedule;
+            synchronized (connection) {
+                if (connection.closed || connection.closeAfterEvents) {
+                    return;
+                }
+                connection.closeAfterEvents = true;
+                schedule = !connection.eventsScheduled;
+                connection.eventsScheduled = true;
+            }
+            if (schedule) {
+                scheduleWrite(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The access log of a web server, enabled with the {@code accessLog} option. Every answered request
+ * is one line:
+ *
+ * <pre>
+ * 2026-10-18T09:12:44.051Z GET /users/42?full=1 200 512 184us
+ * </pre>
+ *
+ * i.e. the time the request was answered, the method, the request target, the status, the size of
+ * the body and the time until the response was handed to the engine.
+ * <p>
+ * Threads that answer requests never touch the file: {@link #log} copies the fields into a
+ * preallocated slot of a bounded lock-free ring buffer and returns. When the buffer is full the
+ * record is dropped and counted instead of waiting, so a slow disk never slows down requests. A
+ * background thread formats the records and writes them in batches; when the file grows beyond
+ * {@code accessLogSize} bytes it is rotated to {@code <file>.1}, {@code <file>.2} and so on, keeping
+ * {@code accessLogFiles} old files. A batch that cannot be written, e.g. because the disk is full or
+ * a rotation failed, is counted as failed and the file is reopened for the next one.
+ */
+public final class HashemWebAccessLog {
+
+    static final int CAPACITY = 8192;
+    /** How long the writer sleeps when the buffer is empty. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final long maxSize;
+    private final int maxFiles;
+
+    /*
+     * The ring buffer, a bounded queue in the style of Dmitry Vyukov's: the sequence of a slot
+     * tells whether it is free for the producer at a position or filled for the consumer.
+     */
+    private final int mask = CAPACITY - 1;
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final long[] times = new long[CAPACITY];
+    private final String[] methods = new String[CAPACITY];
+    private final String[] paths = new String[CAPACITY];
+    private final String[] queries = new String[CAPACITY];
+    private final int[] statuses = new int[CAPACITY];
+    private final long[] sizes = new long[CAPACITY];
+    private final long[] latencies = new long[CAPACITY];
+    private final AtomicLong tail = new AtomicLong();
+    /* only touched by the writer */
+    private long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean closing;
+    /* null after a failed write, until the next batch reopens the file */
+    private FileChannel channel;
+    private long size;
+
+    /**
+     * Opens the log file for appending and starts the writer.
+     *
+     * @param maxSize the size from which on the file is rotated, {@code 0} never rotates
+     * @param maxFiles the number of rotated files that are kept
+     */
+    public HashemWebAccessLog(Path file, long maxSize, int maxFiles, String threadName) throws IOException {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        open();
+        writer = new Thread(this::run, threadName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queues the record of an answered exchange, never blocks. */
+    public void log(HashemWebExchange exchange) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    times[slot] = System.currentTimeMillis();
+                    methods[slot] = exchange.getMethod();
+                    paths[slot] = exchange.getRawPath();
+                    queries[slot] = exchange.getRawQuery();
+                    statuses[slot] = exchange.getResponseStatus();
+                    sizes[slot] = exchange.getResponseBytes();
+                    latencies[slot] = exchange.getFirstByteNanos() - exchange.getStartNanos();
+                    sequences.lazySet(slot, position + 1);
+                    return;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                /* the writer is a whole buffer behind */
+                dropped.incrementAndGet();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** Number of records that were dropped because the buffer was full. */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Number of records that were written to the file. */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /** Number of records that were lost because writing them to the file failed. */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Writes the queued records and stops the writer, waiting at most {@code timeoutMillis}.
+     */
+    public void close(long timeoutMillis) {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(Math.max(1, timeoutMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        StringBuilder batch = new StringBuilder(BATCH_BYTES);
+        try {
+            while (true) {
+                boolean last = closing;
+                int count = drain(batch);
+                if (batch.length() > 0) {
+                    try {
+                        write(batch);
+                        written.addAndGet(count);
+                    } catch (IOException e) {
+                        failed.addAndGet(count);
+                        closeChannel();
+                    }
+                    batch.setLength(0);
+                }
+                if (last && count == 0) {
+                    break;
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /** Formats the queued records into the batch, until it is full. */
+    private int drain(StringBuilder batch) {
+        int count = 0;
+        while (batch.length() < BATCH_BYTES) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(times[slot]), batch);
+            batch.append(' ').append(methods[slot]).append(' ').append(paths[slot]);
+            if (queries[slot] != null) {
+                batch.append('?').append(queries[slot]);
+            }
+            batch.append(' ').append(statuses[slot]).append(' ').append(sizes[slot]).append(' ').append(TimeUnit.NANOSECONDS.toMicros(latencies[slot])).append("us\n");
+            methods[slot] = null;
+            paths[slot] = null;
+            queries[slot] = null;
+            sequences.lazySet(slot, head + CAPACITY);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    private void write(StringBuilder batch) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.toString());
+        if (maxSize > 0 && size > 0 && size + bytes.remaining() > maxSize) {
+            rotate();
+        }
+        while (bytes.hasRemaining()) {
+            size += channel.write(bytes);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                /* the next batch opens the file again */
+            }
+            channel = null;
+        }
+    }
+
+    /** Moves {@code file.n} to {@code file.n+1}, dropping the oldest, and starts a new file. */
+    private void rotate() throws IOException {
+        closeChannel();
+        if (maxFiles == 0) {
+            Files.delete(file);
+        } else {
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path from = rotated(i);
+                if (Files.exists(from)) {
+                    Files.move(from, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,226 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Admission control of a web server. The engines hand every parsed request to
+ * {@link #submit(HashemWebExchange)} on their own thread, which decides whether the request is
+ * queued for a worker or rejected right away with {@code 503 Service Unavailable}:
+ * <ul>
+ * <li>when {@code maxInFlight} requests are already queued or running,</li>
+ * <li>when the bounded worker queue ({@code queue}) is full, or</li>
+ * <li>when the request waited longer than {@code maxQueueTime} milliseconds for a worker, in
+ * which case the client most likely gave up already, or</li>
+ * <li>when the server is draining after {@link #drain()}.</li>
+ * </ul>
+ * Rejecting early keeps the latency of the admitted requests bounded under overload, instead of
+ * letting every request wait until it times out. The counters are exposed through
+ * {@link HashemWebMetrics}.
+ * <p>
+ * A handler that answers with a {@link HashemWebFuture} suspends its request: the worker is free
+ * again, but the request stays in flight until the server answers it and calls
+ * {@link #resume()}, so that a graceful stop waits for it as well.
+ */
+public final class HashemWebAdmission {
+
+    private static final Map<String, String> RETRY_AFTER = Collections.singletonMap("Retry-After", "1");
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ThreadPoolExecutor workers;
+    private final Predicate<HashemWebExchange> handler;
+    private final int maxInFlight;
+    private final long maxQueueNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger suspended = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder shedInFlight = new LongAdder();
+    private final LongAdder shedQueueFull = new LongAdder();
+    private final LongAdder shedQueueTime = new LongAdder();
+    private final LongAdder shedDraining = new LongAdder();
+    private final LongAdder futuresFailed = new LongAdder();
+    private final LongAdder handlersFailed = new LongAdder();
+    private volatile boolean draining;
+
+    /**
+     * @param handler answers a request on a worker, returns {@code false} if the request was
+     *            suspended and is answered later
+     */
+    public HashemWebAdmission(HashemWebServerOptions options, ThreadPoolExecutor workers, Predicate<HashemWebExchange> handler) {
+        this.workers = workers;
+        this.handler = handler;
+        this.maxInFlight = options.getMaxInFlight();
+        this.maxQueueNanos = options.getMaxQueueTime() * 1_000_000L;
+    }
+
+    /** Admits the request to the worker queue or rejects it, never blocks. */
+    public void submit(HashemWebExchange exchange) {
+        if (draining) {
+            shedDraining.increment();
+            reject(exchange);
+            return;
+        }
+        int current = inFlight.incrementAndGet();
+        if (maxInFlight > 0 && current > maxInFlight) {
+            inFlight.decrementAndGet();
+            shedInFlight.increment();
+            reject(exchange);
+            return;
+        }
+        long queued = System.nanoTime();
+        try {
+            workers.execute(() -> run(exchange, queued));
+        } catch (RejectedExecutionException e) {
+            finished();
+            shedQueueFull.increment();
+            reject(exchange);
+            return;
+        }
+        accepted.increment();
+    }
+
+    /**
+     * Rejects every request from now on. The requests admitted so far are still handled, see
+     * {@link #awaitIdle(long)}.
+     */
+    public void drain() {
+        draining = true;
+    }
+
+    /**
+     * Waits until the requests admitted before {@link #drain()} are handled, at most until
+     * {@code deadline} as given by {@link System#nanoTime()}.
+     *
+     * @return whether no request is in flight anymore
+     */
+    public boolean awaitIdle(long deadline) throws InterruptedException {
+        synchronized (inFlight) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+            }
+            return true;
+        }
+    }
+
+    private void finished() {
+        if (inFlight.decrementAndGet() == 0 && draining) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    private void run(HashemWebExchange exchange, long queued) {
+        boolean done = true;
+        try {
+            if (maxQueueNanos > 0 && System.nanoTime() - queued > maxQueueNanos) {
+                shedQueueTime.increment();
+                reject(exchange);
+            } else if (handler.test(exchange)) {
+                completed.increment();
+            } else {
+                suspended.incrementAndGet();
+                done = false;
+            }
+        } finally {
+            if (done) {
+                finished();
+            }
+        }
+    }
+
+    /** Called once a suspended request is answered, from any thread. */
+    public void resume() {
+        suspended.decrementAndGet();
+        completed.increment();
+        finished();
+    }
+
+    /**
+     * Counts a suspended request whose future failed or whose value could not be sent; it is
+     * answered with {@code 500}.
+     */
+    public void futureFailed() {
+        futuresFailed.increment();
+    }
+
+    /** Counts a request whose handler or response failed; it is answered with {@code 500}. */
+    public void handlerFailed() {
+        handlersFailed.increment();
+    }
+
+    private static void reject(HashemWebExchange exchange) {
+        try {
+            exchange.sendResponse(503, RETRY_AFTER, EMPTY);
+        } catch (IOException e) {
+            /* the client is gone */
+        }
+    }
+
+    /** Number of requests that are queued or running. */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** Number of requests whose handler answered with a future that is not complete yet. */
+    public int getSuspended() {
+        return suspended.get();
+    }
+
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getShedInFlight() {
+        return shedInFlight.sum();
+    }
+
+    public long getShedQueueFull() {
+        return shedQueueFull.sum();
+    }
+
+    public long getShedQueueTime() {
+        return shedQueueTime.sum();
+    }
+
+    public long getShedDraining() {
+        return shedDraining.sum();
+    }
+
+    public long getFuturesFailed() {
+        return futuresFailed.sum();
+    }
+
+    public long getHandlersFailed() {
+        return handlersFailed.sum();
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+}
@@ -0,0 +1,65 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response body encoded as UTF-8, together with the string it was encoded from. Bodies that are
+ * sent over and over again, like string literals, are encoded once and the same instance is reused
+ * for every response; large ones additionally keep a read-only direct copy that the
+ * {@link HashemNioEngine} can write to the socket without copying it first.
+ */
+public final class HashemWebBody {
+
+    /** Bodies from this size on get a direct copy when they are cached. */
+    static final int DIRECT_THRESHOLD = 1024;
+
+    public static final HashemWebBody EMPTY = new HashemWebBody("", new byte[0], null);
+
+    private final String text;
+    private final byte[] bytes;
+    private final ByteBuffer direct;
+
+    private HashemWebBody(String text, byte[] bytes, ByteBuffer direct) {
+        this.text = text;
+        this.bytes = bytes;
+        this.direct = direct;
+    }
+
+    /** Encodes a body that is only sent once. */
+    public static HashemWebBody encode(String text) {
+        return new HashemWebBody(text, text.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    /** Wraps bytes that are already encoded, e.g. compressed. */
+    public static HashemWebBody of(byte[] bytes) {
+        return new HashemWebBody(null, bytes, null);
+    }
+
+    /** Encodes a body that is going to be cached and sent many times. */
+    public static HashemWebBody encodeShared(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = null;
+        if (bytes.length >= DIRECT_THRESHOLD) {
+            direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            direct = direct.asReadOnlyBuffer();
+        }
+        return new HashemWebBody(text, bytes, direct);
+    }
+
+    /** The string the body was encoded from, compared by identity to find cached bodies. */
+    public String getText() {
+        return text;
+    }
+
+    /** The encoded bytes, which must not be modified. */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /** A fresh view of the direct copy, or {@code null} if the body has none. */
+    public ByteBuffer getDirect() {
+        return direct == null ? null : direct.duplicate();
+    }
+}
@@ -0,0 +1,227 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies for clients that accept it, enabled with the {@code compression}
+ * option of a web server. The encoding is negotiated on {@code Accept-Encoding}, {@code gzip} is
+ * preferred over {@code deflate}. Bodies smaller than the threshold are sent as they are, since
+ * compressing them costs more than it saves.
+ * <p>
+ * Creating a {@link Deflater} allocates native memory, so every worker thread keeps one deflater
+ * per encoding and resets it between responses. Handlers often answer with the same body, so the
+ * compressed bytes of the most recently used bodies are kept in a small LRU cache keyed by the
+ * content of the body.
+ */
+public final class HashemWebCompressor {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    /** Bodies larger than this are compressed but not cached. */
+    private static final int MAX_CACHED_BODY = 64 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int threshold;
+    private final Map<CacheKey, byte[]> cache;
+    private final List<Deflater> deflaters = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Deflater> gzipDeflaters = ThreadLocal.withInitial(() -> newDeflater(true));
+    private final ThreadLocal<Deflater> zlibDeflaters = ThreadLocal.withInitial(() -> newDeflater(false));
+
+    public HashemWebCompressor(int threshold, int cacheSize) {
+        this.threshold = threshold;
+        this.cache = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the response compressed with an encoding the client accepts, or the response itself
+     * if it is too small, already encoded or the client accepts no compression.
+     */
+    public HashemWebResponse compress(HashemWebExchange exchange, HashemWebResponse response) {
+        String encoding = encodingFor(exchange, response);
+        if (encoding == null) {
+            return response;
+        }
+        byte[] compressed = compress(encoding, response.getBody());
+        Map<String, String> headers = response.getHeaders();
+        Map<String, String> encodedHeaders = headers == null ? new LinkedHashMap<>() : new LinkedHashMap<>(headers);
+        encodedHeaders.put("Content-Encoding", encoding);
+        encodedHeaders.put("Vary", "Accept-Encoding");
+        return new HashemWebResponse(response.getStatus(), encodedHeaders, HashemWebBody.of(compressed));
+    }
+
+    /**
+     * Returns the encoding the response is to be compressed with for the client, or {@code null}
+     * if it is sent as it is.
+     */
+    public String encodingFor(HashemWebExchange exchange, HashemWebResponse response) {
+        if (response.getBody().length < threshold) {
+            return null;
+        }
+        Map<String, String> headers = response.getHeaders();
+        if (headers != null && containsIgnoreCase(headers, "Content-Encoding")) {
+            return null;
+        }
+        return negotiate(exchange.getRequestHeader("Accept-Encoding"));
+    }
+
+    /** Frees the native memory of all deflaters. */
+    public void close() {
+        for (Deflater deflater : deflaters) {
+            deflater.end();
+        }
+        deflaters.clear();
+    }
+
+    /** Compresses a body with {@code "gzip"} or {@code "deflate"}. */
+    public byte[] compress(String encoding, byte[] body) {
+        if (body.length > MAX_CACHED_BODY) {
+            return deflate(encoding, body);
+        }
+        CacheKey key = new CacheKey(encoding, body);
+        byte[] compressed;
+        synchronized (cache) {
+            compressed = cache.get(key);
+        }
+        if (compressed == null) {
+            compressed = deflate(encoding, body);
+            synchronized (cache) {
+                cache.put(key, compressed);
+            }
+        }
+        return compressed;
+    }
+
+    private byte[] deflate(String encoding, byte[] body) {
+        boolean gzip = GZIP.equals(encoding);
+        Deflater deflater = gzip ? gzipDeflaters.get() : zlibDeflaters.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        if (gzip) {
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        }
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        byte[] buffer = new byte[Math.min(body.length + 64, 16 * 1024)];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        if (gzip) {
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            writeInt(out, (int) crc.getValue());
+            writeInt(out, body.length);
+        }
+        return out.toByteArray();
+    }
+
+    private Deflater newDeflater(boolean gzip) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+        deflaters.add(deflater);
+        return deflater;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * Picks the encoding for an {@code Accept-Encoding} header, e.g.
+     * {@code "deflate, gzip;q=1.0, *;q=0.5"}. Encodings with {@code q=0} are refused. As in RFC 9110,
+     * {@code *} only stands for the encodings that the header does not name, so
+     * {@code "gzip;q=0, *"} gets {@code deflate}.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        /* null if not named, otherwise whether it is accepted */
+        Boolean gzip = null;
+        Boolean deflate = null;
+        Boolean any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] parameters = part.split(";");
+            String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            boolean refused = false;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = !refused;
+            } else if (DEFLATE.equals(coding)) {
+                deflate = !refused;
+            } else if ("*".equals(coding)) {
+                any = !refused;
+            }
+        }
+        if (gzip == null ? Boolean.TRUE.equals(any) : gzip) {
+            return GZIP;
+        } else if (deflate == null ? Boolean.TRUE.equals(any) : deflate) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    private static boolean containsIgnoreCase(Map<String, String> headers, String name) {
+        for (String header : headers.keySet()) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Cache key comparing the content of the body. */
+    private static final class CacheKey {
+        private final String encoding;
+        private final byte[] body;
+        private final int hash;
+
+        CacheKey(String encoding, byte[] body) {
+            this.encoding = encoding;
+            this.body = body;
+            this.hash = 31 * encoding.hashCode() + Arrays.hashCode(body);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return hash == other.hash && encoding.equals(other.encoding) && Arrays.equals(body, other.body);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The HTTP implementation behind a web server. An engine owns the listening socket, turns incoming
+ * requests into {@link HashemWebExchange exchanges} and hands them to the server's dispatcher on
+ * its own thread; the dispatcher must not block, see {@link HashemWebAdmission}. The engine is
+ * chosen with the {@code engine} option:
+ * <ul>
+ * <li>{@code "httpserver"} (default) uses {@code com.sun.net.httpserver}, see
+ * {@link HashemHttpServerEngine}</li>
+ * <li>{@code "nio"} uses a selector based engine with pooled direct buffers, see
+ * {@link HashemNioEngine}</li>
+ * </ul>
+ */
+public interface HashemWebEngine {
+
+    String HTTP_SERVER = "httpserver";
+    String NIO = "nio";
+
+    /** The port the engine is bound to. */
+    int getPort();
+
+    void start();
+
+    /**
+     * Whether sending a response only queues it for the engine's own I/O, so that the dispatcher
+     * may answer a request right away without waiting for a client that reads slowly. If not, the
+     * server leaves all writes to its workers.
+     */
+    boolean queuesWrites();
+
+    /**
+     * Starts draining: the engine stops accepting connections where it can, and every response
+     * sent from now on closes its connection. Exchanges in progress are not affected.
+     */
+    void stopAccepting();
+
+    /**
+     * Closes the listening socket and all connections. Responses that are still being written get
+     * up to {@code timeoutMillis} to finish.
+     */
+    void stop(long timeoutMillis);
+
+    /**
+     * Creates and binds the engine selected by the options.
+     *
+     * @param dispatcher called on the engine's thread for every request
+     * @param errors called with a failure that stops the engine, there is no request to answer
+     *            with it
+     */
+    static HashemWebEngine create(int port, HashemWebServerOptions options, Consumer<HashemWebExchange> dispatcher,
+                    Consumer<Throwable> errors) throws IOException {
+        if (NIO.equals(options.getEngine())) {
+            return new HashemNioEngine(port, options.isReusePort(), options.getIdleTimeout(), dispatcher, errors);
+        }
+        return new HashemHttpServerEngine(port, dispatcher);
+    }
+}
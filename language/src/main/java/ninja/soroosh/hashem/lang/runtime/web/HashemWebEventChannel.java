@@ -0,0 +1,188 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.ArityException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.interop.UnsupportedMessageException;
+import com.oracle.truffle.api.interop.UnsupportedTypeException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One subscriber of an event stream, the second argument of the handler that
+ * {@code addEvents(server, path, handler)} installs. The handler may keep the channel and push
+ * events to it long after it returned:
+ *
+ * <pre>
+ * bebin moshtarak(request, kanal) {
+ *   kanal.send("khosh amadi");
+ *   kanal.send("{\"x\": 1}", "taghir");
+ * }
+ * </pre>
+ *
+ * {@code send(data)} and {@code send(data, event)} queue an event and never block, they answer
+ * whether the subscriber is still connected. {@code close()} ends the stream after the queued
+ * events, and {@code open} tells whether the stream is still open. See {@link HashemWebEventHub}
+ * for sending to all subscribers at once.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebEventChannel implements TruffleObject {
+
+    public static final String SEND = "send";
+    public static final String CLOSE = "close";
+    public static final String OPEN = "open";
+
+    private static final String[] MEMBERS = {SEND, CLOSE, OPEN};
+
+    private HashemWebEventSink sink;
+
+    HashemWebEventChannel() {
+    }
+
+    void attach(HashemWebEventSink eventSink) {
+        this.sink = eventSink;
+    }
+
+    public boolean send(ByteBuffer events) {
+        return sink.send(events);
+    }
+
+    public boolean isOpen() {
+        return sink.isOpen();
+    }
+
+    public void close() {
+        sink.close();
+    }
+
+    /**
+     * Encodes an event in the {@code text/event-stream} format, every line of the data becomes a
+     * {@code data:} field.
+     *
+     * @param event the event type, or {@code null} for the default type {@code message}
+     */
+    @TruffleBoundary
+    public static byte[] encode(String data, String event) {
+        StringBuilder text = new StringBuilder(data.length() + 16);
+        if (event != null) {
+            if (event.indexOf('\n') >= 0 || event.indexOf('\r') >= 0) {
+                throw new HashemException("event type must be a single line, got \"" + event + "\"", null);
+            }
+            text.append("event: ").append(event).append('\n');
+        }
+        for (String line : data.split("\r\n|\r|\n", -1)) {
+            text.append("data: ").append(line).append('\n');
+        }
+        return text.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case OPEN:
+                return isOpen();
+            case SEND:
+            case CLOSE:
+                return new ChannelMethod(this, member);
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        switch (member) {
+            case SEND:
+            case CLOSE:
+            case OPEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @ExportMessage
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(MEMBERS);
+    }
+
+    @Override
+    public String toString() {
+        return "kanal";
+    }
+
+    /**
+     * Reads the arguments of {@code send(data)} or {@code send(data, event)} and encodes the
+     * event.
+     */
+    static byte[] encodeArguments(Object[] arguments) throws ArityException, UnsupportedTypeException {
+        if (arguments.length != 1 && arguments.length != 2) {
+            throw ArityException.create(1, arguments.length);
+        }
+        return encode(toText(arguments[0]), arguments.length == 2 ? toText(arguments[1]) : null);
+    }
+
+    static String toText(Object value) throws UnsupportedTypeException {
+        InteropLibrary values = InteropLibrary.getFactory().getUncached(value);
+        try {
+            if (values.isString(value)) {
+                return values.asString(value);
+            } else if (values.fitsInLong(value)) {
+                return Long.toString(values.asLong(value));
+            }
+        } catch (UnsupportedMessageException e) {
+            /* reported below */
+        }
+        throw UnsupportedTypeException.create(new Object[]{value});
+    }
+
+    /** The {@code send} and {@code close} members, bound to their channel. */
+    @ExportLibrary(InteropLibrary.class)
+    static final class ChannelMethod implements TruffleObject {
+
+        private final HashemWebEventChannel channel;
+        private final String name;
+
+        ChannelMethod(HashemWebEventChannel channel, String name) {
+            this.channel = channel;
+            this.name = name;
+        }
+
+        @ExportMessage
+        boolean isExecutable() {
+            return true;
+        }
+
+        @ExportMessage
+        @TruffleBoundary
+        Object execute(Object[] arguments) throws ArityException, UnsupportedTypeException {
+            if (SEND.equals(name)) {
+                return channel.send(ByteBuffer.wrap(encodeArguments(arguments)));
+            }
+            if (arguments.length != 0) {
+                throw ArityException.create(0, arguments.length);
+            }
+            channel.close();
+            return HashemPooch.SINGLETON;
+        }
+
+        @Override
+        public String toString() {
+            return "kanal." + name;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.ArityException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.interop.UnsupportedTypeException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All subscribers of an event stream endpoint, returned by {@code addEvents(server, path)}:
+ *
+ * <pre>
+ * akhbar = addEvents(server, "/akhbar");
+ * akhbar.send("khabar e jadid");
+ * bechap(akhbar.subscribers);
+ * </pre>
+ *
+ * {@code send(data)} and {@code send(data, event)} encode the event once and queue the same bytes
+ * for every subscriber, so a broadcast costs one small buffer view per subscriber; they answer the
+ * number of subscribers the event was queued for. Subscribers leave the hub when their connection
+ * is closed.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebEventHub implements TruffleObject {
+
+    public static final String SEND = "send";
+    public static final String SUBSCRIBERS = "subscribers";
+
+    private static final String[] MEMBERS = {SEND, SUBSCRIBERS};
+
+    /** Events from this size on are copied to a direct buffer before they are broadcast. */
+    private static final int DIRECT_THRESHOLD = 1024;
+
+    static final Map<String, String> HEADERS;
+
+    static {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "text/event-stream; charset=utf-8");
+        headers.put("Cache-Control", "no-cache");
+        HEADERS = Collections.unmodifiableMap(headers);
+    }
+
+    private final Set<HashemWebEventChannel> channels = ConcurrentHashMap.newKeySet();
+
+    /** Answers the exchange with an event stream and adds it to the hub. */
+    public HashemWebEventChannel subscribe(HashemWebExchange exchange) throws IOException {
+        HashemWebEventChannel channel = new HashemWebEventChannel();
+        channel.attach(exchange.startEvents(HEADERS, () -> channels.remove(channel)));
+        channels.add(channel);
+        if (!channel.isOpen()) {
+            /* closed before it was added */
+            channels.remove(channel);
+        }
+        return channel;
+    }
+
+    /** Queues the encoded event for every subscriber, returns for how many. */
+    @TruffleBoundary
+    public int broadcast(byte[] event) {
+        ByteBuffer shared;
+        if (event.length >= DIRECT_THRESHOLD && channels.size() > 1) {
+            shared = ByteBuffer.allocateDirect(event.length);
+            shared.put(event).flip();
+        } else {
+            shared = ByteBuffer.wrap(event);
+        }
+        shared = shared.asReadOnlyBuffer();
+        int sent = 0;
+        for (HashemWebEventChannel channel : channels) {
+            if (channel.send(shared)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    public int getSubscribers() {
+        return channels.size();
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case SUBSCRIBERS:
+                return (long) getSubscribers();
+            case SEND:
+                return new Send(this);
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return SEND.equals(member) || SUBSCRIBERS.equals(member);
+    }
+
+    @ExportMessage
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(MEMBERS);
+    }
+
+    @Override
+    public String toString() {
+        return "HashemWebEventHub[subscribers=" + channels.size() + "]";
+    }
+
+    /** The {@code send} member, bound to its hub. */
+    @ExportLibrary(InteropLibrary.class)
+    static final class Send implements TruffleObject {
+
+        private final HashemWebEventHub hub;
+
+        Send(HashemWebEventHub hub) {
+            this.hub = hub;
+        }
+
+        @ExportMessage
+        boolean isExecutable() {
+            return true;
+        }
+
+        @ExportMessage
+        @TruffleBoundary
+        Object execute(Object[] arguments) throws ArityException, UnsupportedTypeException {
+            return (long) hub.broadcast(HashemWebEventChannel.encodeArguments(arguments));
+        }
+
+        @Override
+        public String toString() {
+            return "send";
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sending side of a stream of server-sent events, see
+ * {@link HashemWebExchange#startEvents}. All methods may be called from any thread and never
+ * block: events are queued and written by the engine as the client reads them.
+ */
+public interface HashemWebEventSink {
+
+    /**
+     * Queues encoded events. The buffer is not modified, so the same buffer can be sent to many
+     * sinks.
+     *
+     * @return {@code false} if the stream is closed, or if the client fell so far behind that the
+     *         stream was closed now
+     */
+    boolean send(ByteBuffer events);
+
+    boolean isOpen();
+
+    /** Closes the stream once the queued events are written. */
+    void close();
+}
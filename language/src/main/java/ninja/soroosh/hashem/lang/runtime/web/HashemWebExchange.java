@@ -0,0 +1,93 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * One request/response pair as seen by a {@link HashemWebEngine}. The web server and the
+ * {@link HashemWebRequest} only talk to this interface, so they work the same on every engine.
+ * <p>
+ * All request accessors may be called from the worker thread that handles the exchange. An
+ * exchange is answered exactly once with {@link #sendResponse}.
+ */
+public interface HashemWebExchange {
+
+    String getMethod();
+
+    /** The path of the request target, still percent-encoded. */
+    String getRawPath();
+
+    /** The query of the request target without {@code ?}, still percent-encoded, or {@code null}. */
+    String getRawQuery();
+
+    /**
+     * Returns the value of a request header, or {@code null} if the request does not have it.
+     * Header names are compared ignoring case.
+     */
+    String getRequestHeader(String name);
+
+    /**
+     * Decodes all request headers into a map with case-insensitive keys. Repeated headers are
+     * joined with {@code ", "}.
+     */
+    Map<String, String> getRequestHeaders();
+
+    byte[] getRequestBody();
+
+    /**
+     * Sends the complete response.
+     *
+     * @param headers additional response headers, may be {@code null}; {@code Content-Length} is
+     *            always set by the engine
+     */
+    void sendResponse(int status, Map<String, String> headers, byte[] body) throws IOException;
+
+    /** Sends the response a handler produced. */
+    default void sendResponse(HashemWebResponse response) throws IOException {
+        sendResponse(response.getStatus(), response.getHeaders(), response.getBody());
+    }
+
+    /**
+     * Sends a response whose body is {@code length} bytes of a file, starting at {@code position}.
+     * The engine writes the file without copying it through the Java heap where it can; the
+     * caller may close the channel as soon as this method returns.
+     */
+    void sendFile(int status, Map<String, String> headers, FileChannel file, long position, long length) throws IOException;
+
+    /**
+     * Starts a response whose body is not known in advance. Every write to the returned stream is
+     * sent to the client right away as one chunk of a {@code Transfer-Encoding: chunked} body and
+     * may block until the client has caught up; closing the stream ends the response.
+     */
+    OutputStream sendChunkedResponse(int status, Map<String, String> headers) throws IOException;
+
+    /**
+     * Answers the request with a {@code 200} response that is a stream of server-sent events. The
+     * stream outlives the exchange: the worker returns right away and the events are sent through
+     * the returned sink. Request accessors must not be called anymore.
+     *
+     * @param onClose called once when the stream is closed, by either side
+     * @throws UnsupportedOperationException if the engine can not keep connections open without
+     *             occupying a thread
+     */
+    default HashemWebEventSink startEvents(Map<String, String> headers, Runnable onClose) throws IOException {
+        throw new UnsupportedOperationException("server-sent events need the " + HashemWebEngine.NIO + " engine");
+    }
+
+    /** Whether the exchange was already answered. */
+    boolean isResponded();
+
+    /** When the request was read, as given by {@link System#nanoTime()}. */
+    long getStartNanos();
+
+    /** When the response was handed to the engine, only valid once {@link #isResponded()}. */
+    long getFirstByteNanos();
+
+    /** The status of the response, only valid once {@link #isResponded()}. */
+    int getResponseStatus();
+
+    /** Number of body bytes of the response so far, without the head. */
+    long getResponseBytes();
+}
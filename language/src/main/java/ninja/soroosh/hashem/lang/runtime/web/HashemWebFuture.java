@@ -0,0 +1,219 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.interop.ArityException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.nodes.HashemUndefinedBebinRootNode;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.HashemContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A value that is only known later, e.g. the content of a file that is still being read. A web
+ * handler may answer with a future instead of a response; the server then frees the worker right
+ * away and sends the response once the future has a value:
+ *
+ * <pre>
+ * bebin safhe(request) {
+ *   bede then(readFileAsync("safhe.html"), sakht);
+ * }
+ * bebin sakht(matn) {
+ *   javab = jadid();
+ *   javab.body = matn;
+ *   bede javab;
+ * }
+ * </pre>
+ *
+ * A future is created by {@code future()} and completed by its {@code complete(value)} member, by
+ * builtins like {@code readFileAsync(path)}, or, for {@code then(future, bebin)}, by calling the
+ * bebin with the value of another future. The bebin of {@code then} is called on a worker of the
+ * server once the value is there, with the code it had when {@code then} was called, even if it is
+ * redefined in the meantime. If that worker runs in a context of its own, i.e. with isolated
+ * workers, the bebin is looked up by name in that context instead, and the code of the original
+ * is only used if that context does not define it. It may answer with a future again.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebFuture implements TruffleObject {
+
+    public static final String COMPLETE = "complete";
+    public static final String DONE = "done";
+
+    private static final String[] MEMBERS = {COMPLETE, DONE};
+
+    private final CompletableFuture<Object> value = new CompletableFuture<>();
+    private final HashemWebFuture source;
+    /* the bebin of then, its code at that time and the context it was passed in */
+    private final String continuation;
+    private final RootCallTarget continuationTarget;
+    private final HashemContext continuationContext;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public HashemWebFuture() {
+        this(null, null, null, null);
+    }
+
+    private HashemWebFuture(HashemWebFuture source, String continuation, RootCallTarget continuationTarget, HashemContext continuationContext) {
+        this.source = source;
+        this.continuation = continuation;
+        this.continuationTarget = continuationTarget;
+        this.continuationContext = continuationContext;
+    }
+
+    /**
+     * A future for the answer of {@code continuation} called with the value of this future. Must
+     * be called in the context the bebin belongs to.
+     */
+    public HashemWebFuture then(HashemBebin continuation) {
+        return new HashemWebFuture(this, continuation.getName(), continuation.getCallTarget(), HashemLanguage.getCurrentContext());
+    }
+
+    /**
+     * Completes the future, unless it already has a value or is the result of {@code then}.
+     *
+     * @return whether the value was set
+     */
+    public boolean complete(Object result) {
+        return source == null && value.complete(result);
+    }
+
+    /** Fails the future, the request waiting for it is answered with {@code 500}. */
+    public boolean fail(Throwable error) {
+        return source == null && value.completeExceptionally(error);
+    }
+
+    public boolean isDone() {
+        return value.isDone();
+    }
+
+    /**
+     * Returns the eventual value of the future. The first call of a future created by
+     * {@code then} starts the chain: the bebin is called on {@code executor} once the source has its
+     * value, and if it answers with a future again, that one is resolved as well.
+     */
+    public CompletableFuture<Object> resolve(Executor executor) {
+        if (source != null && started.compareAndSet(false, true)) {
+            source.resolve(executor)
+                            .thenApplyAsync(this::callContinuation, executor)
+                            .thenCompose(answer -> answer instanceof HashemWebFuture ? ((HashemWebFuture) answer).resolve(executor) : CompletableFuture.completedFuture(answer))
+                            .whenComplete((answer, error) -> {
+                                if (error == null) {
+                                    value.complete(answer);
+                                } else {
+                                    value.completeExceptionally(error);
+                                }
+                            });
+        }
+        return value;
+    }
+
+    @TruffleBoundary
+    private Object callContinuation(Object argument) {
+        HashemContext context = HashemLanguage.getCurrentContext();
+        if (context != continuationContext) {
+            HashemBebin function = context.getFunctionRegistry().getFunction(continuation);
+            if (function != null && !(function.getCallTarget().getRootNode() instanceof HashemUndefinedBebinRootNode)) {
+                return function.getCallTarget().call(argument);
+            }
+        }
+        return continuationTarget.call(argument);
+    }
+
+    /**
+     * Runs {@code task} after the delay on a timer shared by all servers. The timer thread never
+     * executes Hashemi code.
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return Timer.INSTANCE.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Timer {
+        static final ScheduledExecutorService INSTANCE;
+
+        static {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "hashemi-web-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            INSTANCE = timer;
+        }
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case DONE:
+                return isDone();
+            case COMPLETE:
+                return new Complete(this);
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return COMPLETE.equals(member) || DONE.equals(member);
+    }
+
+    @ExportMessage
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(MEMBERS);
+    }
+
+    @Override
+    public String toString() {
+        return continuation == null ? "future" : "future then " + continuation;
+    }
+
+    /** The {@code complete} member, bound to its future. */
+    @ExportLibrary(InteropLibrary.class)
+    static final class Complete implements TruffleObject {
+
+        private final HashemWebFuture future;
+
+        Complete(HashemWebFuture future) {
+            this.future = future;
+        }
+
+        @ExportMessage
+        boolean isExecutable() {
+            return true;
+        }
+
+        @ExportMessage
+        @TruffleBoundary
+        Object execute(Object[] arguments) throws ArityException {
+            if (arguments.length != 1) {
+                throw ArityException.create(1, arguments.length);
+            }
+            return future.complete(arguments[0]);
+        }
+
+        @Override
+        public String toString() {
+            return "future.complete";
+        }
+    }
+}
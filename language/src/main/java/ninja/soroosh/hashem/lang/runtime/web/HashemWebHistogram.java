@@ -0,0 +1,93 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values with log-linear buckets, in the style of
+ * HdrHistogram: every power of two is split into {@value #SUB_BUCKETS} buckets of equal width, so
+ * a recorded value is known to within about 6% over the whole range of {@code long}. Values below
+ * {@value #SUB_BUCKETS} get exact buckets.
+ * <p>
+ * {@link #record(long)} only does atomic increments on preallocated counters, so it neither locks
+ * nor allocates and may be called on every request. Readers see a consistent enough view for
+ * monitoring: counters recorded concurrently with a read may or may not be included.
+ */
+public final class HashemWebHistogram {
+
+    private static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Buckets for the values below {@link #SUB_BUCKETS}, and then for every exponent up to 62. */
+    static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /** Records a value, negative values are recorded as {@code 0}. */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        sum.addAndGet(v);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** The smallest value of a bucket. */
+    static long lowestOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /** The largest value of a bucket. */
+    static long highestOf(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestOf(index + 1) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Counts the values that are at most each of the ascending {@code limits}, as needed for the
+     * cumulative buckets of Prometheus. A bucket only counts for a limit if all its values are
+     * below or at the limit, so the counts err on the low side by at most one bucket width.
+     *
+     * @return one count for every limit, and the count of all values as the last element
+     */
+    public long[] cumulativeCounts(long[] limits) {
+        long[] result = new long[limits.length + 1];
+        long count = 0;
+        int limit = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long highest = highestOf(i);
+            while (limit < limits.length && highest > limits[limit]) {
+                result[limit++] = count;
+            }
+            count += counts.get(i);
+        }
+        while (limit < limits.length) {
+            result[limit++] = count;
+        }
+        result[limits.length] = count;
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only snapshot of the numbers of a web server, returned by {@code serverStats(server)}:
+ *
+ * <pre>
+ * amar = serverStats(server);
+ * bechap(amar.queueDepth + " dar saf, " + amar.shedQueueTime + " rad shode");
+ * </pre>
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebMetrics implements TruffleObject {
+
+    public static final String IN_FLIGHT = "inFlight";
+    public static final String SUSPENDED = "suspended";
+    public static final String QUEUE_DEPTH = "queueDepth";
+    public static final String ACTIVE_WORKERS = "activeWorkers";
+    public static final String ACCEPTED = "accepted";
+    public static final String COMPLETED = "completed";
+    public static final String SHED_IN_FLIGHT = "shedInFlight";
+    public static final String SHED_QUEUE_FULL = "shedQueueFull";
+    public static final String SHED_QUEUE_TIME = "shedQueueTime";
+    public static final String SHED_DRAINING = "shedDraining";
+    public static final String FUTURES_FAILED = "futuresFailed";
+    public static final String HANDLERS_FAILED = "handlersFailed";
+    public static final String CACHE_HITS = "cacheHits";
+    public static final String CACHE_MISSES = "cacheMisses";
+    public static final String NOT_MODIFIED = "notModified";
+    public static final String ACCESS_LOG_DROPPED = "accessLogDropped";
+    public static final String ACCESS_LOG_FAILED = "accessLogFailed";
+
+    private final Map<String, Long> values;
+
+    private HashemWebMetrics(Map<String, Long> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param accessLog the access log of the server, or {@code null}
+     */
+    @TruffleBoundary
+    public static HashemWebMetrics snapshot(HashemWebAdmission admission, HashemWebResponseCache.Stats cacheStats, HashemWebAccessLog accessLog) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put(IN_FLIGHT, (long) admission.getInFlight());
+        values.put(SUSPENDED, (long) admission.getSuspended());
+        values.put(QUEUE_DEPTH, (long) admission.getQueueDepth());
+        values.put(ACTIVE_WORKERS, (long) admission.getActiveWorkers());
+        values.put(ACCEPTED, admission.getAccepted());
+        values.put(COMPLETED, admission.getCompleted());
+        values.put(SHED_IN_FLIGHT, admission.getShedInFlight());
+        values.put(SHED_QUEUE_FULL, admission.getShedQueueFull());
+        values.put(SHED_QUEUE_TIME, admission.getShedQueueTime());
+        values.put(SHED_DRAINING, admission.getShedDraining());
+        values.put(FUTURES_FAILED, admission.getFuturesFailed());
+        values.put(HANDLERS_FAILED, admission.getHandlersFailed());
+        values.put(CACHE_HITS, cacheStats.getHits());
+        values.put(CACHE_MISSES, cacheStats.getMisses());
+        values.put(NOT_MODIFIED, cacheStats.getNotModified());
+        values.put(ACCESS_LOG_DROPPED, accessLog == null ? 0 : accessLog.getDropped());
+        values.put(ACCESS_LOG_FAILED, accessLog == null ? 0 : accessLog.getFailed());
+        return new HashemWebMetrics(values);
+    }
+
+    /** The numbers by name, in a stable order. */
+    public Map<String, Long> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+    @TruffleBoundary
+    public long get(String name) {
+        return values.get(name);
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        Long value = values.get(member);
+        if (value == null) {
+            throw UnknownIdentifierException.create(member);
+        }
+        return value;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return values.containsKey(member);
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(values.keySet().toArray());
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        return values.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Writes the numbers of a web server in the Prometheus text format, as served by the
+ * {@code metrics} route of {@link HashemWebServerOptions}: the counters of
+ * {@link HashemWebMetrics} and, for every route, the histograms of {@link HashemWebRouteStats}.
+ * <p>
+ * The histograms are kept with fine log-linear buckets and only reduced to the fixed {@code le}
+ * buckets of Prometheus here, so the bucket layout can change without touching the recording.
+ */
+public final class HashemWebPrometheus {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "hashemi_web_";
+
+    /** The values of {@link HashemWebMetrics} that go up and down, all others only grow. */
+    private static final Set<String> GAUGES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    HashemWebMetrics.IN_FLIGHT, HashemWebMetrics.SUSPENDED, HashemWebMetrics.QUEUE_DEPTH, HashemWebMetrics.ACTIVE_WORKERS)));
+
+    private static final double[] SECONDS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] SECONDS_IN_NANOS = new long[SECONDS.length];
+    private static final String[] SECONDS_LABELS = new String[SECONDS.length];
+    private static final long[] BYTES = {128, 512, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216};
+
+    static {
+        for (int i = 0; i < SECONDS.length; i++) {
+            SECONDS_IN_NANOS[i] = Math.round(SECONDS[i] * 1e9);
+            SECONDS_LABELS[i] = BigDecimal.valueOf(SECONDS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private HashemWebPrometheus() {
+    }
+
+    public static String format(HashemWebMetrics metrics, List<HashemWebRouteStats> routes) {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Long> value : metrics.getValues().entrySet()) {
+            boolean gauge = GAUGES.contains(value.getKey());
+            String name = PREFIX + snakeCase(value.getKey()) + (gauge ? "" : "_total");
+            out.append("# TYPE ").append(name).append(gauge ? " gauge\n" : " counter\n");
+            out.append(name).append(' ').append(value.getValue()).append('\n');
+        }
+        histogram(out, "first_byte_seconds", "Time from reading the request until the response is handed to the engine.", routes, HashemWebRouteStats::getFirstByte, true);
+        histogram(out, "handler_seconds", "Time the handler of the route ran.", routes, HashemWebRouteStats::getHandler, true);
+        histogram(out, "response_bytes", "Size of the response body.", routes, HashemWebRouteStats::getBytes, false);
+        return out.toString();
+    }
+
+    /**
+     * @param seconds whether the histogram holds nanoseconds, which are exported as seconds, or
+     *            a size in bytes
+     */
+    private static void histogram(StringBuilder out, String suffix, String help, List<HashemWebRouteStats> routes,
+                    Function<HashemWebRouteStats, HashemWebHistogram> histograms, boolean seconds) {
+        String name = PREFIX + suffix;
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        for (HashemWebRouteStats route : routes) {
+            HashemWebHistogram histogram = histograms.apply(route);
+            long[] counts = histogram.cumulativeCounts(seconds ? SECONDS_IN_NANOS : BYTES);
+            String label = "route=\"" + escape(route.getName()) + "\"";
+            for (int i = 0; i < counts.length; i++) {
+                out.append(name).append("_bucket{").append(label).append(",le=\"");
+                if (i == counts.length - 1) {
+                    out.append("+Inf");
+                } else if (seconds) {
+                    out.append(SECONDS_LABELS[i]);
+                } else {
+                    out.append(BYTES[i]);
+                }
+                out.append("\"} ").append(counts[i]).append('\n');
+            }
+            out.append(name).append("_sum{").append(label).append("} ");
+            if (seconds) {
+                out.append(histogram.getSum() / 1e9);
+            } else {
+                out.append(histogram.getSum());
+            }
+            out.append('\n');
+            out.append(name).append("_count{").append(label).append("} ").append(counts[counts.length - 1]).append('\n');
+        }
+    }
+
+    static String snakeCase(String name) {
+        StringBuilder result = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                result.append('_').append(Character.toLowerCase(c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,227 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The request a web handler receives as its first argument. It is a thin view of the underlying
+ * {@link HashemWebExchange}: the query parameters, the headers and the body are only decoded when the
+ * script reads them for the first time, so a handler that only looks at {@code request.path} does
+ * not pay for parsing anything else.
+ *
+ * <pre>
+ * bebin salam(request) {
+ *   javab = jadid();
+ *   javab.body = "salam " + request.query.esm;
+ *   bede javab;
+ * }
+ * </pre>
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebRequest implements TruffleObject {
+
+    public static final String METHOD = "method";
+    public static final String PATH = "path";
+    public static final String QUERY = "query";
+    public static final String HEADERS = "headers";
+    public static final String BODY = "body";
+    public static final String PARAMS = "params";
+
+    private static final String[] MEMBERS = {METHOD, PATH, QUERY, HEADERS, BODY, PARAMS};
+    private static final String[] NO_PARAMS = new String[0];
+
+    private final HashemWebExchange exchange;
+
+    private String path;
+    private HashemWebStringMap query;
+    private HashemWebStringMap headers;
+    private String body;
+
+    private String[] paramNames = NO_PARAMS;
+    private String[] paramValues = NO_PARAMS;
+    private HashemWebStringMap params;
+
+    public HashemWebRequest(HashemWebExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * Sets the path parameters captured by the router, e.g. {@code id} for the route
+     * {@code /users/:id}.
+     */
+    public void setParams(String[] names, String[] values) {
+        this.paramNames = names;
+        this.paramValues = values;
+    }
+
+    /**
+     * Decodes all parts of the request right away, for handlers that run after the exchange gave
+     * up the request, like the handlers of event streams.
+     */
+    @TruffleBoundary
+    public void decodeAll() {
+        getPath();
+        getQuery();
+        getHeaders();
+        getParams();
+        getBody();
+    }
+
+    public HashemWebExchange getExchange() {
+        return exchange;
+    }
+
+    @TruffleBoundary
+    public String getMethod() {
+        return exchange.getMethod();
+    }
+
+    @TruffleBoundary
+    public String getPath() {
+        if (path == null) {
+            path = urlDecode(exchange.getRawPath().replace("+", "%2B"));
+        }
+        return path;
+    }
+
+    @TruffleBoundary
+    public HashemWebStringMap getQuery() {
+        if (query == null) {
+            query = new HashemWebStringMap(decodeQuery(exchange.getRawQuery()));
+        }
+        return query;
+    }
+
+    @TruffleBoundary
+    public HashemWebStringMap getHeaders() {
+        if (headers == null) {
+            headers = new HashemWebStringMap(exchange.getRequestHeaders());
+        }
+        return headers;
+    }
+
+    @TruffleBoundary
+    public HashemWebStringMap getParams() {
+        if (params == null) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < paramNames.length; i++) {
+                values.put(paramNames[i], urlDecode(paramValues[i]));
+            }
+            params = new HashemWebStringMap(values);
+        }
+        return params;
+    }
+
+    @TruffleBoundary
+    public String getBody() {
+        if (body == null) {
+            body = new String(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case METHOD:
+                return getMethod();
+            case PATH:
+                return getPath();
+            case QUERY:
+                return getQuery();
+            case HEADERS:
+                return getHeaders();
+            case BODY:
+                return getBody();
+            case PARAMS:
+                return getParams();
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @ExportMessage
+    boolean isMemberReadable(String member) {
+        switch (member) {
+            case METHOD:
+            case PATH:
+            case QUERY:
+            case HEADERS:
+            case BODY:
+            case PARAMS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @ExportMessage
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(MEMBERS);
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        String rawQuery = exchange.getRawQuery();
+        return getMethod() + " " + exchange.getRawPath() + (rawQuery == null ? "" : "?" + rawQuery);
+    }
+
+    static Map<String, String> decodeQuery(String rawQuery) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return values;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            /* the first occurrence of a repeated parameter wins */
+            values.putIfAbsent(urlDecode(name), urlDecode(value));
+        }
+        return values;
+    }
+
+    private static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    static byte[] readFully(InputStream in) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try {
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            /* a broken body reads as far as the client sent it */
+        }
+        return out.toByteArray();
+    }
+}
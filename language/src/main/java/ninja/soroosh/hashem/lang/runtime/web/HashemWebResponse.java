@@ -0,0 +1,49 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * The response a web handler produced, extracted from the object the handler bebin returned and
+ * ready to be sent by a {@link HashemWebEngine}.
+ */
+public final class HashemWebResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final HashemWebBody body;
+
+    public HashemWebResponse(int status, Map<String, String> headers, HashemWebBody body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public static HashemWebResponse empty(int status) {
+        return new HashemWebResponse(status, null, HashemWebBody.EMPTY);
+    }
+
+    /** The same response with other headers. */
+    public HashemWebResponse withHeaders(Map<String, String> newHeaders) {
+        return new HashemWebResponse(status, newHeaders, body);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /** Additional response headers, or {@code null}. */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /** The encoded body, which must not be modified. */
+    public byte[] getBody() {
+        return body.getBytes();
+    }
+
+    /** A direct buffer with the body, or {@code null}, see {@link HashemWebBody#getDirect()}. */
+    public ByteBuffer getDirectBody() {
+        return body.getDirect();
+    }
+}
@@ -0,0 +1,356 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the responses of one route, enabled with the {@code cacheTtl} route option, see
+ * {@link HashemWebRouteOptions}. Responses are keyed by the raw path and query of {@code GET}
+ * requests, so a cached route must answer the same path and query with the same response. A
+ * response is kept for at most the TTL and only {@code 200} responses without
+ * {@code Set-Cookie} or {@code Cache-Control: no-store} are cached.
+ * <p>
+ * The cache holds at most {@code cacheSize} bytes and evicts with a segmented LRU: new entries go
+ * to the probation segment and are promoted to the protected segment on their second hit. The
+ * protected segment is limited to {@value #PROTECTED_PERCENT}% of the budget, its least recently
+ * used entries fall back to probation. A burst of one-off paths therefore only evicts other
+ * one-off paths, never the entries that are hit again and again.
+ * <p>
+ * Every entry has a precomputed strong {@code ETag}, so a conditional request with a matching
+ * {@code If-None-Match} is answered with {@code 304 Not Modified}. The compressed variants of an
+ * entry are added on demand and have ETags of their own.
+ */
+public final class HashemWebResponseCache {
+
+    /** Share of the budget that the protected segment may use. */
+    static final int PROTECTED_PERCENT = 80;
+
+    /** Rough size of the key, the headers and the bookkeeping of one entry. */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /** Counters shared by all caches of a server, exposed through {@link HashemWebMetrics}. */
+    public static final class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        public void notModified() {
+            notModified.increment();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getNotModified() {
+            return notModified.sum();
+        }
+    }
+
+    /** One encoding of a cached response. */
+    public static final class Variant {
+        private final HashemWebResponse response;
+        private final String etag;
+
+        Variant(HashemWebResponse response, String etag) {
+            this.response = response;
+            this.etag = etag;
+        }
+
+        public HashemWebResponse getResponse() {
+            return response;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+    }
+
+    /** A cached response with the variants created for it so far. */
+    public static final class Entry {
+        private final String key;
+        private final long expires;
+        private final Variant identity;
+        private volatile Variant gzip;
+        private volatile Variant deflate;
+        private long weight;
+        private boolean protectedSegment;
+
+        Entry(String key, long expires, Variant identity) {
+            this.key = key;
+            this.expires = expires;
+            this.identity = identity;
+            this.weight = ENTRY_OVERHEAD + key.length() + identity.response.getBody().length;
+        }
+
+        /** The body as the handler produced it. */
+        public HashemWebResponse getResponse() {
+            return identity.response;
+        }
+
+        /**
+         * The variant for a content encoding, {@code null} meaning none, or {@code null} if the
+         * variant was not created yet.
+         */
+        public Variant getVariant(String encoding) {
+            if (encoding == null) {
+                return identity;
+            } else if (HashemWebCompressor.GZIP.equals(encoding)) {
+                return gzip;
+            } else {
+                return deflate;
+            }
+        }
+    }
+
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+
+    /* both segments in insertion order, the eldest entry is the least recently used */
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Entry> protectedEntries = new LinkedHashMap<>();
+    private long probationBytes;
+    private long protectedBytes;
+
+    public HashemWebResponseCache(long ttlMillis, long maxBytes) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = maxBytes * PROTECTED_PERCENT / 100;
+    }
+
+    /** The cache key of a request, or {@code null} if its response must not be cached. */
+    public static String keyOf(HashemWebExchange exchange) {
+        if (!"GET".equals(exchange.getMethod())) {
+            return null;
+        }
+        String query = exchange.getRawQuery();
+        return query == null ? exchange.getRawPath() : exchange.getRawPath() + '?' + query;
+    }
+
+    /** Returns the entry if it is cached and not expired, and marks it as used. */
+    public synchronized Entry get(String key) {
+        Entry entry = protectedEntries.get(key);
+        if (entry != null) {
+            if (expired(entry)) {
+                remove(entry);
+                return null;
+            }
+            /* move to the most recently used end */
+            protectedEntries.remove(key);
+            protectedEntries.put(key, entry);
+            return entry;
+        }
+        entry = probation.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        probationBytes -= entry.weight;
+        if (expired(entry)) {
+            return null;
+        }
+        entry.protectedSegment = true;
+        protectedEntries.put(key, entry);
+        protectedBytes += entry.weight;
+        while (protectedBytes > maxProtectedBytes && protectedEntries.size() > 1) {
+            Entry demoted = removeEldest(protectedEntries);
+            protectedBytes -= demoted.weight;
+            demoted.protectedSegment = false;
+            probation.put(demoted.key, demoted);
+            probationBytes += demoted.weight;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the response a handler produced for the key. Returns the new entry, which is not kept
+     * if it is larger than the whole budget, or {@code null} if the response can not be cached.
+     */
+    public Entry put(String key, HashemWebResponse response) {
+        if (!isCacheable(response)) {
+            return null;
+        }
+        String etag = header(response.getHeaders(), "ETag");
+        if (etag == null) {
+            etag = etagOf(response.getBody());
+            response = withHeader(response, "ETag", etag);
+        }
+        Entry entry = new Entry(key, System.nanoTime() + ttlNanos, new Variant(response, etag));
+        if (entry.weight > maxBytes) {
+            return entry;
+        }
+        synchronized (this) {
+            Entry previous = protectedEntries.get(key);
+            if (previous == null) {
+                previous = probation.get(key);
+            }
+            if (previous != null) {
+                remove(previous);
+            }
+            probation.put(key, entry);
+            probationBytes += entry.weight;
+            evict();
+        }
+        return entry;
+    }
+
+    /**
+     * Adds the variant of an entry for a content encoding, e.g. {@code "gzip"}. The ETag of the
+     * variant is derived from the ETag of the entry.
+     */
+    public Variant addVariant(Entry entry, String encoding, byte[] encoded) {
+        HashemWebResponse identity = entry.identity.response;
+        Map<String, String> headers = identity.getHeaders() == null ? new LinkedHashMap<>() : new LinkedHashMap<>(identity.getHeaders());
+        String etag = etagOf(entry.identity.etag, encoding);
+        headers.put("ETag", etag);
+        headers.put("Content-Encoding", encoding);
+        headers.put("Vary", "Accept-Encoding");
+        Variant variant = new Variant(new HashemWebResponse(identity.getStatus(), headers, HashemWebBody.of(encoded)), etag);
+        synchronized (this) {
+            if (HashemWebCompressor.GZIP.equals(encoding)) {
+                entry.gzip = variant;
+            } else {
+                entry.deflate = variant;
+            }
+            if (contains(entry)) {
+                entry.weight += encoded.length;
+                if (entry.protectedSegment) {
+                    protectedBytes += encoded.length;
+                } else {
+                    probationBytes += encoded.length;
+                }
+                evict();
+            }
+        }
+        return variant;
+    }
+
+    /** Number of bytes the cached entries take, roughly. */
+    public synchronized long getBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    public synchronized int size() {
+        return probation.size() + protectedEntries.size();
+    }
+
+    private boolean expired(Entry entry) {
+        return System.nanoTime() - entry.expires > 0;
+    }
+
+    private boolean contains(Entry entry) {
+        return (entry.protectedSegment ? protectedEntries : probation).get(entry.key) == entry;
+    }
+
+    private void remove(Entry entry) {
+        if (entry.protectedSegment) {
+            protectedEntries.remove(entry.key);
+            protectedBytes -= entry.weight;
+        } else {
+            probation.remove(entry.key);
+            probationBytes -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        while (probationBytes + protectedBytes > maxBytes) {
+            if (!probation.isEmpty()) {
+                probationBytes -= removeEldest(probation).weight;
+            } else {
+                protectedBytes -= removeEldest(protectedEntries).weight;
+            }
+        }
+    }
+
+    private static Entry removeEldest(LinkedHashMap<String, Entry> segment) {
+        Iterator<Entry> eldest = segment.values().iterator();
+        Entry entry = eldest.next();
+        eldest.remove();
+        return entry;
+    }
+
+    private static boolean isCacheable(HashemWebResponse response) {
+        if (response.getStatus() != 200) {
+            return false;
+        }
+        Map<String, String> headers = response.getHeaders();
+        if (headers == null) {
+            return true;
+        }
+        String cacheControl = header(headers, "Cache-Control");
+        return header(headers, "Set-Cookie") == null && (cacheControl == null || !cacheControl.toLowerCase(Locale.ROOT).contains("no-store"));
+    }
+
+    private static HashemWebResponse withHeader(HashemWebResponse response, String name, String value) {
+        Map<String, String> headers = response.getHeaders() == null ? new LinkedHashMap<>() : new LinkedHashMap<>(response.getHeaders());
+        headers.put(name, value);
+        return response.withHeaders(headers);
+    }
+
+    static String header(Map<String, String> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /** A strong ETag from the length and the CRC-32 of the body. */
+    static String etagOf(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return "\"" + Integer.toHexString(body.length) + '-' + Long.toHexString(crc.getValue()) + '"';
+    }
+
+    /** The ETag of an encoded variant, e.g. {@code "\"1a-2b-gzip\""} for {@code "\"1a-2b\""}. */
+    static String etagOf(String etag, String encoding) {
+        if (etag.endsWith("\"")) {
+            return etag.substring(0, etag.length() - 1) + '-' + encoding + '"';
+        }
+        return etag + '-' + encoding;
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header, e.g. {@code "\"a\", W/\"b\""}, matches the ETag.
+     * As required for {@code If-None-Match}, weak tags are compared by their opaque part.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
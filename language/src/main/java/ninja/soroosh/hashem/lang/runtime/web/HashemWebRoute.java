@@ -0,0 +1,110 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.Truffle;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.nodes.web.HashemWebHandlerRootNode;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+
+import java.util.List;
+
+/**
+ * One registered handler of a web server, e.g. {@code GET /users/:id}. Every route owns the call
+ * target of a {@link HashemWebHandlerRootNode} that calls the handler bebin directly, so a request
+ * is dispatched without looking up the bebin again and every route is profiled and compiled on its
+ * own. A route may have a {@link HashemWebResponseCache} that answers repeated requests without
+ * calling the handler.
+ * <p>
+ * The route of an event stream has a {@link HashemWebEventHub} instead: its requests subscribe to
+ * the hub, and the optional handler is called with the request and the new
+ * {@link HashemWebEventChannel}.
+ */
+public final class HashemWebRoute {
+
+    /** Matches every request method. */
+    public static final String ANY_METHOD = "*";
+
+    private final String method;
+    private final String pattern;
+    private final String[] paramNames;
+    private final HashemBebin handler;
+    private final HashemWebResponseCache cache;
+    private final HashemWebEventHub events;
+    private final HashemWebRouteStats stats;
+
+    private final RootCallTarget callTarget;
+
+    /**
+     * @param handler the handler, may only be {@code null} for an event stream
+     * @param cache the cache of the responses, or {@code null}
+     * @param events the hub of the event stream, or {@code null} if the route is not one
+     */
+    public HashemWebRoute(HashemLanguage language, String method, String pattern, List<String> paramNames, HashemBebin handler, HashemWebResponseCache cache,
+                    HashemWebEventHub events) {
+        this.method = method;
+        this.pattern = pattern;
+        this.paramNames = paramNames.toArray(new String[0]);
+        this.handler = handler;
+        this.cache = cache;
+        this.events = events;
+        this.stats = new HashemWebRouteStats(method + " " + pattern);
+        this.callTarget = handler == null ? null
+                        : Truffle.getRuntime().createCallTarget(new HashemWebHandlerRootNode(language, handler, method + " " + pattern, events != null));
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String[] getParamNames() {
+        return paramNames;
+    }
+
+    public HashemBebin getHandler() {
+        return handler;
+    }
+
+    /** The cache of the responses, or {@code null} if the route has none. */
+    public HashemWebResponseCache getCache() {
+        return cache;
+    }
+
+    /** The hub of the event stream, or {@code null} if the route is not one. */
+    public HashemWebEventHub getEvents() {
+        return events;
+    }
+
+    /** The latency histograms of the route. */
+    public HashemWebRouteStats getStats() {
+        return stats;
+    }
+
+    public RootCallTarget getCallTarget() {
+        return callTarget;
+    }
+
+    /**
+     * Runs the handler and extracts its response. Returns {@code null} if the handler wrote its
+     * response to the stream instead, and the {@link HashemWebFuture} if the handler answered with
+     * one.
+     */
+    public Object call(HashemWebRequest request, HashemWebStream stream) {
+        return callTarget.call(request, stream);
+    }
+
+    /** Runs the handler of an event stream for a new subscriber, if the route has one. */
+    public void callEvents(HashemWebRequest request, HashemWebEventChannel channel) {
+        if (callTarget != null) {
+            callTarget.call(request, channel);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + pattern + " -> " + (handler != null ? handler.getName() : "events");
+    }
+}
@@ -0,0 +1,74 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.nodes.Node;
+
+/**
+ * Per route settings, passed as the optional last argument of
+ * {@code addHandler(server, method, path, handler, options)}:
+ *
+ * <pre>
+ * tanzimat = jadid();
+ * tanzimat.cacheTtl = 2000;
+ * tanzimat.cacheSize = 1048576;
+ * addHandler(server, "GET", "/gozaresh", gozaresh, tanzimat);
+ * </pre>
+ *
+ * Members that are not set keep their default value.
+ */
+public final class HashemWebRouteOptions {
+
+    public static final String CACHE_TTL = "cacheTtl";
+    public static final String CACHE_SIZE = "cacheSize";
+
+    /**
+     * Milliseconds a response is served from the {@link HashemWebResponseCache}, {@code 0} turns
+     * the cache off.
+     */
+    private int cacheTtl = 0;
+
+    /** Maximum number of bytes the cached responses of the route take. */
+    private int cacheSize = 1024 * 1024;
+
+    public int getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public HashemWebRouteOptions setCacheTtl(int cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        return this;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public HashemWebRouteOptions setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /** Creates the response cache of the route, or returns {@code null} if it has none. */
+    public HashemWebResponseCache createCache() {
+        return cacheTtl > 0 ? new HashemWebResponseCache(cacheTtl, cacheSize) : null;
+    }
+
+    public static HashemWebRouteOptions defaults() {
+        return new HashemWebRouteOptions();
+    }
+
+    /** Reads the options from a Hashemi object, unknown members are ignored. */
+    @TruffleBoundary
+    public static HashemWebRouteOptions fromObject(Object options, Node location) {
+        InteropLibrary objects = InteropLibrary.getFactory().getUncached(options);
+        HashemWebRouteOptions result = new HashemWebRouteOptions();
+        if (objects.isMemberReadable(options, CACHE_TTL)) {
+            result.setCacheTtl(HashemWebServerOptions.checkNotNegative(CACHE_TTL, HashemWebServerOptions.readLong(objects, options, CACHE_TTL, location), location));
+        }
+        if (objects.isMemberReadable(options, CACHE_SIZE)) {
+            result.setCacheSize(HashemWebServerOptions.checkPositive(CACHE_SIZE, HashemWebServerOptions.readLong(objects, options, CACHE_SIZE, location), location));
+        }
+        return result;
+    }
+}
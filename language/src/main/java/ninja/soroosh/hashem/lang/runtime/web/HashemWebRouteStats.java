@@ -0,0 +1,58 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+/**
+ * The latency histograms of one route, or of the static files below one prefix:
+ * <ul>
+ * <li>{@code firstByte}: nanoseconds from reading the request until its response was handed to
+ * the engine, including the wait for a worker,</li>
+ * <li>{@code handler}: nanoseconds the handler ran, for requests that called one, and</li>
+ * <li>{@code bytes}: size of the response body.</li>
+ * </ul>
+ * Recording is allocation-free, see {@link HashemWebHistogram}. The histograms are exported by
+ * {@link HashemWebPrometheus}.
+ */
+public final class HashemWebRouteStats {
+
+    private final String name;
+    private final HashemWebHistogram firstByte = new HashemWebHistogram();
+    private final HashemWebHistogram handler = new HashemWebHistogram();
+    private final HashemWebHistogram bytes = new HashemWebHistogram();
+
+    /**
+     * @param name the value of the {@code route} label, e.g. {@code GET /users/:id}
+     */
+    public HashemWebRouteStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records an answered exchange.
+     *
+     * @param handlerNanos how long the handler ran, or a negative number if no handler was called
+     */
+    public void record(HashemWebExchange exchange, long handlerNanos) {
+        if (exchange.isResponded()) {
+            firstByte.record(exchange.getFirstByteNanos() - exchange.getStartNanos());
+            bytes.record(exchange.getResponseBytes());
+        }
+        if (handlerNanos >= 0) {
+            handler.record(handlerNanos);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HashemWebHistogram getFirstByte() {
+        return firstByte;
+    }
+
+    public HashemWebHistogram getHandler() {
+        return handler;
+    }
+
+    public HashemWebHistogram getBytes() {
+        return bytes;
+    }
+}
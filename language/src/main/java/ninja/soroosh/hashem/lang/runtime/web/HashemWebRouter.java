@@ -0,0 +1,200 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routing trie of a web server. Every node stands for one path segment; a node has static children
+ * by segment text and at most one parameter child ({@code :name}) that captures any segment. The
+ * routes of a node are keyed by request method. Looking up a request therefore costs one step per
+ * path segment, independent of the number of registered routes.
+ * <p>
+ * Static segments win over parameters, so {@code /users/me} is preferred to {@code /users/:id}
+ * for the path {@code /users/me}, as long as {@code /users/me} has a route for the method of the
+ * request. A request that matches no route at all goes to the fallback route, which is what
+ * {@code addHandler(server, handler)} installs.
+ */
+public final class HashemWebRouter {
+
+    /** Result of a lookup: the route (or {@code null} if only the method did not match). */
+    public static final class Match {
+        private final HashemWebRoute route;
+        private final String[] values;
+
+        Match(HashemWebRoute route, String[] values) {
+            this.route = route;
+            this.values = values;
+        }
+
+        public HashemWebRoute getRoute() {
+            return route;
+        }
+
+        /** The captured path parameters, in the order of {@link HashemWebRoute#getParamNames()}. */
+        public String[] getValues() {
+            return values;
+        }
+    }
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private static final class TrieNode {
+        final Map<String, TrieNode> children = new ConcurrentHashMap<>();
+        final Map<String, HashemWebRoute> routes = new ConcurrentHashMap<>();
+        volatile TrieNode param;
+        volatile String paramName;
+
+        HashemWebRoute route(String method) {
+            HashemWebRoute route = routes.get(method);
+            return route != null ? route : routes.get(HashemWebRoute.ANY_METHOD);
+        }
+    }
+
+    private final HashemLanguage language;
+    private final TrieNode root = new TrieNode();
+    private volatile HashemWebRoute fallback;
+
+    public HashemWebRouter(HashemLanguage language) {
+        this.language = language;
+    }
+
+    /**
+     * Registers a handler for the given method and path pattern. Registering the same method and
+     * pattern again replaces the previous handler.
+     *
+     * @param cache the response cache of the route, or {@code null}
+     * @param events the hub if the route is an event stream, or {@code null}
+     * @throws IllegalArgumentException if the pattern is malformed or uses a different parameter
+     *             name at a position where another route already declared one
+     */
+    public synchronized HashemWebRoute add(String method, String pattern, HashemBebin handler, HashemWebResponseCache cache, HashemWebEventHub events) {
+        TrieNode node = root;
+        List<String> paramNames = new ArrayList<>();
+        for (String segment : split(pattern)) {
+            if (segment.startsWith(":")) {
+                String name = segment.substring(1);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("empty parameter name in " + pattern);
+                }
+                if (node.param == null) {
+                    TrieNode param = new TrieNode();
+                    node.paramName = name;
+                    node.param = param;
+                } else if (!node.paramName.equals(name)) {
+                    throw new IllegalArgumentException("parameter :" + name + " in " + pattern + " conflicts with :" + node.paramName);
+                }
+                paramNames.add(name);
+                node = node.param;
+            } else {
+                node = node.children.computeIfAbsent(segment, s -> new TrieNode());
+            }
+        }
+        HashemWebRoute route = new HashemWebRoute(language, method, pattern, paramNames, handler, cache, events);
+        node.routes.put(method, route);
+        return route;
+    }
+
+    public HashemWebRoute setFallback(HashemBebin handler) {
+        HashemWebRoute route = new HashemWebRoute(language, HashemWebRoute.ANY_METHOD, "/", Collections.emptyList(), handler, null, null);
+        this.fallback = route;
+        return route;
+    }
+
+    /** All registered routes, the fallback route last. */
+    public synchronized List<HashemWebRoute> getRoutes() {
+        List<HashemWebRoute> routes = new ArrayList<>();
+        collect(root, routes);
+        if (fallback != null) {
+            routes.add(fallback);
+        }
+        return routes;
+    }
+
+    private static void collect(TrieNode node, List<HashemWebRoute> routes) {
+        routes.addAll(node.routes.values());
+        for (TrieNode child : node.children.values()) {
+            collect(child, routes);
+        }
+        if (node.param != null) {
+            collect(node.param, routes);
+        }
+    }
+
+    /**
+     * Looks up the route for a request. Returns {@code null} if no route matches the path, and a
+     * {@link Match} without route if the path matches but the method does not.
+     */
+    public Match match(String method, String path) {
+        String[] segments = split(path);
+        String[] values = new String[segments.length];
+        TrieNode node = find(root, method, segments, 0, values, 0);
+        if (node != null) {
+            HashemWebRoute route = node.route(method);
+            return new Match(route, trim(values, route.getParamNames().length));
+        }
+        if (fallback != null) {
+            return new Match(fallback, NO_VALUES);
+        }
+        /* a second walk, only for misses, tells a wrong method (405) from an unknown path (404) */
+        return find(root, null, segments, 0, values, 0) == null ? null : new Match(null, NO_VALUES);
+    }
+
+    /**
+     * Finds the node with a route for the method, or with any route if the method is
+     * {@code null}. A static child that has no route for the method does not hide a parameter
+     * child that has one.
+     */
+    private static TrieNode find(TrieNode node, String method, String[] segments, int index, String[] values, int captured) {
+        if (index == segments.length) {
+            if (method == null) {
+                return node.routes.isEmpty() ? null : node;
+            }
+            return node.route(method) == null ? null : node;
+        }
+        TrieNode child = node.children.get(segments[index]);
+        if (child != null) {
+            TrieNode found = find(child, method, segments, index + 1, values, captured);
+            if (found != null) {
+                return found;
+            }
+        }
+        TrieNode param = node.param;
+        if (param != null) {
+            values[captured] = segments[index];
+            return find(param, method, segments, index + 1, values, captured + 1);
+        }
+        return null;
+    }
+
+    private static String[] trim(String[] values, int length) {
+        if (length == 0) {
+            return NO_VALUES;
+        }
+        String[] result = new String[length];
+        System.arraycopy(values, 0, result, 0, length);
+        return result;
+    }
+
+    static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(NO_VALUES);
+    }
+}
@@ -0,0 +1,402 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.interop.UnsupportedMessageException;
+import com.oracle.truffle.api.nodes.Node;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+
+/**
+ * Per server settings of a {@link HashemWebServer}. A script passes them as the optional second
+ * argument of {@code webserver(port, options)}, either as a plain number of workers or as an object
+ * created with {@code jadid()}:
+ *
+ * <pre>
+ * tanzimat = jadid();
+ * tanzimat.workers = 4;
+ * tanzimat.queue = 1000;
+ * tanzimat.maxInFlight = 2000;
+ * tanzimat.maxQueueTime = 500;
+ * tanzimat.engine = "nio";
+ * tanzimat.compression = 1024;
+ * tanzimat.contexts = 4;
+ * tanzimat.reusePort = 1;
+ * tanzimat.asyncTimeout = 10000;
+ * tanzimat.idleTimeout = 30000;
+ * tanzimat.metrics = "/metrics";
+ * tanzimat.accessLog = "access.log";
+ * server = webserver(8080, tanzimat);
+ * </pre>
+ *
+ * Members that are not set keep their default value.
+ */
+public final class HashemWebServerOptions {
+
+    public static final String WORKERS = "workers";
+    public static final String QUEUE = "queue";
+    public static final String THREAD_NAME = "threadName";
+    public static final String ENGINE = "engine";
+    public static final String STREAM_BUFFER = "streamBuffer";
+    public static final String MAX_IN_FLIGHT = "maxInFlight";
+    public static final String MAX_QUEUE_TIME = "maxQueueTime";
+    public static final String COMPRESSION = "compression";
+    public static final String COMPRESSION_CACHE = "compressionCache";
+    public static final String CONTEXTS = "contexts";
+    public static final String REUSE_PORT = "reusePort";
+    public static final String ASYNC_TIMEOUT = "asyncTimeout";
+    public static final String IDLE_TIMEOUT = "idleTimeout";
+    public static final String METRICS = "metrics";
+    public static final String ACCESS_LOG = "accessLog";
+    public static final String ACCESS_LOG_SIZE = "accessLogSize";
+    public static final String ACCESS_LOG_FILES = "accessLogFiles";
+
+    /** Number of polyglot threads that execute handlers. */
+    private int workers = 1;
+
+    /** Maximum number of requests waiting for a worker, {@code 0} means unbounded. */
+    private int queue = 0;
+
+    /** Maximum number of requests queued or running at once, {@code 0} means unlimited. */
+    private int maxInFlight = 0;
+
+    /** Requests that waited longer for a worker are rejected, in ms; {@code 0} means never. */
+    private int maxQueueTime = 0;
+
+    /** Prefix of the worker thread names, the port is used if not set. */
+    private String threadName;
+
+    /** The {@link HashemWebEngine} that serves the requests. */
+    private String engine = HashemWebEngine.HTTP_SERVER;
+
+    /** Size of the buffer of a {@link HashemWebStream}, i.e. the largest chunk it sends. */
+    private int streamBuffer = 8192;
+
+    /**
+     * Bodies from this many bytes on are compressed for clients that accept it, {@code 0} turns
+     * compression off. See {@link HashemWebCompressor}.
+     */
+    private int compression = 0;
+
+    /** Number of compressed bodies kept for reuse. */
+    private int compressionCache = 128;
+
+    /**
+     * Number of contexts the handlers run in, each with a worker of its own, see
+     * {@link HashemWebWorkerFactory}. {@code 0} runs all workers in the context of the script.
+     */
+    private int contexts = 0;
+
+    /**
+     * Whether the {@link HashemNioEngine} binds with {@code SO_REUSEPORT}, so that several
+     * processes can serve the same port.
+     */
+    private boolean reusePort;
+
+    /**
+     * Requests whose handler answered with a {@link HashemWebFuture} that has no value after this
+     * many ms are answered with {@code 504}; {@code 0} means they wait forever.
+     */
+    private int asyncTimeout = 30000;
+
+    /**
+     * Connections of the {@link HashemNioEngine} that wait this many ms for a complete request
+     * head, or stall that long in a request body, are closed; {@code 0} keeps them open forever.
+     */
+    private int idleTimeout = 30000;
+
+    /**
+     * Path at which the server answers {@code GET} with its numbers in the Prometheus text format,
+     * see {@link HashemWebPrometheus}; {@code null} serves no metrics.
+     */
+    private String metrics;
+
+    /** File the {@link HashemWebAccessLog} appends to, {@code null} logs nothing. */
+    private String accessLog;
+
+    /** Size in bytes from which on the access log is rotated, {@code 0} never rotates. */
+    private int accessLogSize = 64 * 1024 * 1024;
+
+    /** Number of rotated access logs that are kept. */
+    private int accessLogFiles = 5;
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public HashemWebServerOptions setWorkers(int workers) {
+        this.workers = workers;
+        return this;
+    }
+
+    public int getQueue() {
+        return queue;
+    }
+
+    public HashemWebServerOptions setQueue(int queue) {
+        this.queue = queue;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public HashemWebServerOptions setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    public HashemWebServerOptions setMaxQueueTime(int maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+        return this;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public HashemWebServerOptions setThreadName(String threadName) {
+        this.threadName = threadName;
+        return this;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public HashemWebServerOptions setEngine(String engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    public int getStreamBuffer() {
+        return streamBuffer;
+    }
+
+    public HashemWebServerOptions setStreamBuffer(int streamBuffer) {
+        this.streamBuffer = streamBuffer;
+        return this;
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    public HashemWebServerOptions setCompression(int compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public int getCompressionCache() {
+        return compressionCache;
+    }
+
+    public HashemWebServerOptions setCompressionCache(int compressionCache) {
+        this.compressionCache = compressionCache;
+        return this;
+    }
+
+    public int getContexts() {
+        return contexts;
+    }
+
+    public HashemWebServerOptions setContexts(int contexts) {
+        this.contexts = contexts;
+        return this;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public HashemWebServerOptions setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    public int getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public HashemWebServerOptions setAsyncTimeout(int asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+        return this;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public HashemWebServerOptions setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public String getMetrics() {
+        return metrics;
+    }
+
+    public HashemWebServerOptions setMetrics(String metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public String getAccessLog() {
+        return accessLog;
+    }
+
+    public HashemWebServerOptions setAccessLog(String accessLog) {
+        this.accessLog = accessLog;
+        return this;
+    }
+
+    public int getAccessLogSize() {
+        return accessLogSize;
+    }
+
+    public HashemWebServerOptions setAccessLogSize(int accessLogSize) {
+        this.accessLogSize = accessLogSize;
+        return this;
+    }
+
+    public int getAccessLogFiles() {
+        return accessLogFiles;
+    }
+
+    public HashemWebServerOptions setAccessLogFiles(int accessLogFiles) {
+        this.accessLogFiles = accessLogFiles;
+        return this;
+    }
+
+    /** Number of worker threads, one per context if the handlers run in contexts of their own. */
+    public int getWorkerCount() {
+        return contexts > 0 ? contexts : workers;
+    }
+
+    public static HashemWebServerOptions defaults() {
+        return new HashemWebServerOptions();
+    }
+
+    public static HashemWebServerOptions ofWorkers(long workers, Node location) {
+        return new HashemWebServerOptions().setWorkers(checkPositive(WORKERS, workers, location));
+    }
+
+    /**
+     * Reads the options from a Hashemi object (or any other object with members). Unknown members
+     * are ignored, so that the same object can carry settings of later server features.
+     */
+    @TruffleBoundary
+    public static HashemWebServerOptions fromObject(Object options, Node location) {
+        InteropLibrary objects = InteropLibrary.getFactory().getUncached(options);
+        HashemWebServerOptions result = new HashemWebServerOptions();
+        if (objects.isMemberReadable(options, WORKERS)) {
+            result.setWorkers(checkPositive(WORKERS, readLong(objects, options, WORKERS, location), location));
+        }
+        if (objects.isMemberReadable(options, QUEUE)) {
+            result.setQueue(checkNotNegative(QUEUE, readLong(objects, options, QUEUE, location), location));
+        }
+        if (objects.isMemberReadable(options, MAX_IN_FLIGHT)) {
+            result.setMaxInFlight(checkNotNegative(MAX_IN_FLIGHT, readLong(objects, options, MAX_IN_FLIGHT, location), location));
+        }
+        if (objects.isMemberReadable(options, MAX_QUEUE_TIME)) {
+            result.setMaxQueueTime(checkNotNegative(MAX_QUEUE_TIME, readLong(objects, options, MAX_QUEUE_TIME, location), location));
+        }
+        if (objects.isMemberReadable(options, THREAD_NAME)) {
+            result.setThreadName(readString(objects, options, THREAD_NAME, location));
+        }
+        if (objects.isMemberReadable(options, ENGINE)) {
+            String engine = readString(objects, options, ENGINE, location);
+            if (!HashemWebEngine.HTTP_SERVER.equals(engine) && !HashemWebEngine.NIO.equals(engine)) {
+                throw new HashemException("webserver option \"" + ENGINE + "\" must be \"" + HashemWebEngine.HTTP_SERVER + "\" or \"" + HashemWebEngine.NIO + "\", got \"" + engine + "\"", location);
+            }
+            result.setEngine(engine);
+        }
+        if (objects.isMemberReadable(options, STREAM_BUFFER)) {
+            result.setStreamBuffer(checkPositive(STREAM_BUFFER, readLong(objects, options, STREAM_BUFFER, location), location));
+        }
+        if (objects.isMemberReadable(options, COMPRESSION)) {
+            result.setCompression(checkNotNegative(COMPRESSION, readLong(objects, options, COMPRESSION, location), location));
+        }
+        if (objects.isMemberReadable(options, COMPRESSION_CACHE)) {
+            result.setCompressionCache(checkNotNegative(COMPRESSION_CACHE, readLong(objects, options, COMPRESSION_CACHE, location), location));
+        }
+        if (objects.isMemberReadable(options, CONTEXTS)) {
+            result.setContexts(checkNotNegative(CONTEXTS, readLong(objects, options, CONTEXTS, location), location));
+        }
+        if (objects.isMemberReadable(options, REUSE_PORT)) {
+            result.setReusePort(readLong(objects, options, REUSE_PORT, location) != 0);
+            if (result.isReusePort() && !HashemWebEngine.NIO.equals(result.getEngine())) {
+                throw new HashemException("webserver option \"" + REUSE_PORT + "\" needs the \"" + HashemWebEngine.NIO + "\" engine", location);
+            }
+        }
+        if (objects.isMemberReadable(options, ASYNC_TIMEOUT)) {
+            result.setAsyncTimeout(checkNotNegative(ASYNC_TIMEOUT, readLong(objects, options, ASYNC_TIMEOUT, location), location));
+        }
+        if (objects.isMemberReadable(options, IDLE_TIMEOUT)) {
+            result.setIdleTimeout(checkNotNegative(IDLE_TIMEOUT, readLong(objects, options, IDLE_TIMEOUT, location), location));
+        }
+        if (objects.isMemberReadable(options, METRICS)) {
+            String metrics = readString(objects, options, METRICS, location);
+            if (!metrics.startsWith("/")) {
+                throw new HashemException("webserver option \"" + METRICS + "\" must start with /, got \"" + metrics + "\"", location);
+            }
+            result.setMetrics(metrics);
+        }
+        if (objects.isMemberReadable(options, ACCESS_LOG)) {
+            result.setAccessLog(readString(objects, options, ACCESS_LOG, location));
+        }
+        if (objects.isMemberReadable(options, ACCESS_LOG_SIZE)) {
+            result.setAccessLogSize(checkNotNegative(ACCESS_LOG_SIZE, readLong(objects, options, ACCESS_LOG_SIZE, location), location));
+        }
+        if (objects.isMemberReadable(options, ACCESS_LOG_FILES)) {
+            result.setAccessLogFiles(checkNotNegative(ACCESS_LOG_FILES, readLong(objects, options, ACCESS_LOG_FILES, location), location));
+        }
+        return result;
+    }
+
+    static long readLong(InteropLibrary objects, Object options, String member, Node location) {
+        try {
+            Object value = objects.readMember(options, member);
+            InteropLibrary numbers = InteropLibrary.getFactory().getUncached(value);
+            if (numbers.fitsInLong(value)) {
+                return numbers.asLong(value);
+            }
+        } catch (UnsupportedMessageException | UnknownIdentifierException e) {
+            // reported below
+        }
+        throw new HashemException("webserver option \"" + member + "\" must be a number", location);
+    }
+
+    static String readString(InteropLibrary objects, Object options, String member, Node location) {
+        try {
+            Object value = objects.readMember(options, member);
+            InteropLibrary strings = InteropLibrary.getFactory().getUncached(value);
+            if (strings.isString(value)) {
+                return strings.asString(value);
+            }
+        } catch (UnsupportedMessageException | UnknownIdentifierException e) {
+            // reported below
+        }
+        throw new HashemException("webserver option \"" + member + "\" must be a string", location);
+    }
+
+    static int checkPositive(String member, long value, Node location) {
+        if (value < 1 || value > Integer.MAX_VALUE) {
+            throw new HashemException("webserver option \"" + member + "\" must be positive, got " + value, location);
+        }
+        return (int) value;
+    }
+
+    static int checkNotNegative(String member, long value, Node location) {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new HashemException("webserver option \"" + member + "\" must not be negative, got " + value, location);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,145 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The web servers of one context by port. {@code webserver(port)} returns the server that already
+ * listens on the port instead of binding a new one, and a stopped server is removed, so the port
+ * can be bound again. Scripts get the registry from {@code webservers()} and read the servers like
+ * properties of an object:
+ *
+ * <pre>
+ * server = webservers()[8080];
+ * </pre>
+ *
+ * Handlers may create servers on their worker threads, so the registry is thread-safe.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebServerRegistry implements TruffleObject {
+
+    /** Binds a new server, called at most once per port. */
+    public interface Factory {
+        HashemWebServer create() throws IOException;
+    }
+
+    private final Map<Integer, HashemWebServer> servers = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the server listening on the port, or creates and registers one. Port {@code 0}
+     * always creates a new server, which is registered by the port the system picked.
+     */
+    @TruffleBoundary
+    public HashemWebServer lookupOrCreate(int port, Factory factory) throws IOException {
+        if (port != 0) {
+            HashemWebServer server = servers.get(port);
+            if (server != null) {
+                return server;
+            }
+        }
+        /* binding twice would fail, the lock makes concurrent callers wait for the first one */
+        synchronized (this) {
+            HashemWebServer server = port == 0 ? null : servers.get(port);
+            if (server == null) {
+                server = factory.create();
+                servers.put(server.getPort(), server);
+            }
+            return server;
+        }
+    }
+
+    @TruffleBoundary
+    public HashemWebServer lookup(int port) {
+        return servers.get(port);
+    }
+
+    /** A snapshot of the servers, ordered by port. */
+    @TruffleBoundary
+    public List<HashemWebServer> getServers() {
+        return new ArrayList<>(servers.values());
+    }
+
+    /** Stops the server and removes it. */
+    @TruffleBoundary
+    public void stop(HashemWebServer server, long timeoutMillis) {
+        /* a stopped engine no longer knows its port */
+        int port = server.getPort();
+        server.stop(timeoutMillis);
+        /* HashemWebServer.equals is never true, so Map.remove(key, value) can not be used */
+        synchronized (this) {
+            if (servers.get(port) == server) {
+                servers.remove(port);
+            }
+        }
+    }
+
+    /**
+     * Stops all servers, each with the given timeout.
+     *
+     * @return the number of stopped servers
+     */
+    @TruffleBoundary
+    public int stopAll(long timeoutMillis) {
+        List<HashemWebServer> running = getServers();
+        for (HashemWebServer server : running) {
+            stop(server, timeoutMillis);
+        }
+        return running.size();
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        HashemWebServer server = lookup(member);
+        if (server == null) {
+            throw UnknownIdentifierException.create(member);
+        }
+        return server;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return lookup(member) != null;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        List<String> ports = new ArrayList<>();
+        for (Integer port : servers.keySet()) {
+            ports.add(port.toString());
+        }
+        return new HashemWebStringMap.Names(ports.toArray());
+    }
+
+    private HashemWebServer lookup(String member) {
+        try {
+            return servers.get(Integer.parseInt(member));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        return servers.keySet().toString();
+    }
+}
@@ -0,0 +1,391 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the files of a directory below a path prefix, installed with
+ * {@code serveStatic(server, "/assets", dir)}. Requests are answered by the web server itself and
+ * never reach the interpreter.
+ * <p>
+ * The metadata of every requested file is cached and checked against the file system at most
+ * once per second. Files up to {@value #SMALL_FILE} bytes are kept in memory together with their
+ * response headers, as long as all of them fit into {@value #MAX_CACHED_BYTES} bytes; if the engine
+ * {@link HashemWebEngine#queuesWrites() queues writes}, its thread answers them right away. Larger
+ * files are sent by a worker with {@link HashemWebExchange#sendFile}, i.e. memory-mapped by the
+ * {@link HashemNioEngine}.
+ * <p>
+ * Responses carry {@code Last-Modified} and an {@code ETag}, so conditional requests are
+ * answered with {@code 304 Not Modified}. A single byte range ({@code Range: bytes=0-99},
+ * {@code bytes=100-} or {@code bytes=-100}) is answered with {@code 206 Partial Content}; requests
+ * for several ranges get the whole file.
+ */
+public final class HashemWebStaticFiles {
+
+    /** Files up to this size are kept in memory. */
+    static final int SMALL_FILE = 64 * 1024;
+
+    /** Maximum number of bytes of all files kept in memory. */
+    static final long MAX_CACHED_BYTES = 16 * 1024 * 1024;
+
+    private static final long REVALIDATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final byte[] EMPTY = new byte[0];
+    private static final Map<String, String> ALLOW = Collections.singletonMap("Allow", "GET, HEAD");
+    private static final String INDEX = "index.html";
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("mjs", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("xml", "application/xml");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("wasm", "application/wasm");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+    }
+
+    /** A file as it was found at the last check. */
+    private static final class StaticFile {
+        final Path path;
+        final long length;
+        final long lastModified;
+        final String etag;
+        /** The content, or {@code null} if the file is not kept in memory. */
+        final byte[] bytes;
+        /** The headers of a {@code 200} response. */
+        final Map<String, String> headers;
+        volatile long checked;
+
+        StaticFile(Path path, long length, long lastModified, byte[] bytes, long checked) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(length) + '-' + Long.toHexString(lastModified) + '"';
+            this.bytes = bytes;
+            this.checked = checked;
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("Content-Type", contentType(path));
+            values.put("Last-Modified", HTTP_DATE.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC)));
+            values.put("ETag", etag);
+            values.put("Accept-Ranges", "bytes");
+            this.headers = Collections.unmodifiableMap(values);
+        }
+    }
+
+    private final String prefix;
+    private final Path root;
+    private final Map<String, StaticFile> files = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final HashemWebRouteStats stats;
+
+    /**
+     * @param prefix the path the files are served below, e.g. {@code "/assets"}
+     * @param root the real path of the directory
+     */
+    public HashemWebStaticFiles(String prefix, Path root) {
+        this.prefix = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        this.root = root;
+        this.stats = new HashemWebRouteStats("static " + (this.prefix.isEmpty() ? "/" : this.prefix));
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public HashemWebRouteStats getStats() {
+        return stats;
+    }
+
+    /** Whether the request path is below the prefix. */
+    public boolean matches(String rawPath) {
+        return rawPath.startsWith(prefix) && (rawPath.length() == prefix.length() || rawPath.charAt(prefix.length()) == '/');
+    }
+
+    /**
+     * Answers a request for a file below the directory.
+     *
+     * @param mayBlock whether the file system may be accessed; if not, only files kept in memory
+     *            are sent
+     * @return {@code false} if the request needs the file system but {@code mayBlock} is not set,
+     *         nothing is sent then
+     */
+    public boolean serve(HashemWebExchange exchange, boolean mayBlock) throws IOException {
+        String method = exchange.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            exchange.sendResponse(405, ALLOW, EMPTY);
+            return true;
+        }
+        String relative = relativePath(exchange.getRawPath().substring(prefix.length()));
+        if (relative == null) {
+            exchange.sendResponse(404, null, EMPTY);
+            return true;
+        }
+        StaticFile file = files.get(relative);
+        long now = System.nanoTime();
+        if (file == null || now - file.checked > REVALIDATE_NANOS) {
+            if (!mayBlock) {
+                return false;
+            }
+            file = load(relative, file, now);
+            if (file == null) {
+                exchange.sendResponse(404, null, EMPTY);
+                return true;
+            }
+        }
+        if (file.bytes == null && !mayBlock) {
+            return false;
+        }
+        send(exchange, file);
+        return true;
+    }
+
+    private void send(HashemWebExchange exchange, StaticFile file) throws IOException {
+        if (isNotModified(exchange, file)) {
+            exchange.sendResponse(304, file.headers, EMPTY);
+            return;
+        }
+        long start = 0;
+        long length = file.length;
+        int status = 200;
+        Map<String, String> headers = file.headers;
+        String range = exchange.getRequestHeader("Range");
+        if (range != null && isCurrent(exchange.getRequestHeader("If-Range"), file)) {
+            long[] bounds = parseRange(range, file.length);
+            if (bounds != null) {
+                headers = new LinkedHashMap<>(file.headers);
+                if (bounds.length == 0) {
+                    headers.put("Content-Range", "bytes */" + file.length);
+                    exchange.sendResponse(416, headers, EMPTY);
+                    return;
+                }
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                status = 206;
+                headers.put("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + file.length);
+            }
+        }
+        if (file.bytes != null) {
+            byte[] body = status == 200 ? file.bytes : Arrays.copyOfRange(file.bytes, (int) start, (int) (start + length));
+            exchange.sendResponse(status, headers, body);
+        } else {
+            try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+                exchange.sendFile(status, headers, channel, start, length);
+            }
+        }
+    }
+
+    /**
+     * Checks the file system for the file, reusing the previous entry if the file did not change.
+     * Returns {@code null} if there is no such file.
+     */
+    private StaticFile load(String relative, StaticFile previous, long now) throws IOException {
+        Path path = root.resolve(relative);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.isDirectory()) {
+                path = path.resolve(INDEX);
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            }
+        } catch (NoSuchFileException e) {
+            forget(relative);
+            return null;
+        }
+        /* symbolic links must not lead out of the directory */
+        if (!attributes.isRegularFile() || !path.toRealPath().startsWith(root)) {
+            forget(relative);
+            return null;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (previous != null && previous.path.equals(path) && previous.length == attributes.size() && previous.lastModified == lastModified) {
+            previous.checked = now;
+            return previous;
+        }
+        byte[] bytes = null;
+        long length = attributes.size();
+        if (length <= SMALL_FILE && cachedBytes.get() + length <= MAX_CACHED_BYTES) {
+            bytes = Files.readAllBytes(path);
+            length = bytes.length;
+            cachedBytes.addAndGet(length);
+        }
+        StaticFile file = new StaticFile(path, length, lastModified, bytes, now);
+        StaticFile replaced = files.put(relative, file);
+        if (replaced != null && replaced.bytes != null) {
+            cachedBytes.addAndGet(-replaced.bytes.length);
+        }
+        return file;
+    }
+
+    private void forget(String relative) {
+        StaticFile removed = files.remove(relative);
+        if (removed != null && removed.bytes != null) {
+            cachedBytes.addAndGet(-removed.bytes.length);
+        }
+    }
+
+    private static boolean isNotModified(HashemWebExchange exchange, StaticFile file) {
+        String ifNoneMatch = exchange.getRequestHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return HashemWebResponseCache.matches(ifNoneMatch, file.etag);
+        }
+        long since = parseDate(exchange.getRequestHeader("If-Modified-Since"));
+        return since >= 0 && file.lastModified / 1000 <= since / 1000;
+    }
+
+    /** Whether an {@code If-Range} header, if any, still describes the file. */
+    private static boolean isCurrent(String ifRange, StaticFile file) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(file.etag);
+        }
+        long date = parseDate(ifRange);
+        return date >= 0 && date / 1000 == file.lastModified / 1000;
+    }
+
+    /** Parses an HTTP date into epoch milliseconds, or returns {@code -1}. */
+    private static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a {@code Range} header into the first and last byte. Returns {@code null} if the
+     * header is to be ignored, i.e. malformed or asking for several ranges, and an empty array if
+     * the range lies outside the file.
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long first = Long.parseLong(spec.substring(0, dash));
+            long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+            if (last < first) {
+                return null;
+            }
+            if (first >= length) {
+                return new long[0];
+            }
+            return new long[]{first, Math.min(last, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the part of the request path below the prefix into a path relative to the
+     * directory. Returns {@code null} for paths that try to leave the directory.
+     */
+    static String relativePath(String rawPath) {
+        String path = percentDecode(rawPath);
+        if (path == null) {
+            return null;
+        }
+        StringBuilder relative = new StringBuilder();
+        for (String segment : HashemWebRouter.split(path)) {
+            if (segment.equals("..") || segment.equals(".") || segment.indexOf('\\') >= 0 || segment.indexOf('\0') >= 0) {
+                return null;
+            }
+            if (relative.length() > 0) {
+                relative.append('/');
+            }
+            relative.append(segment);
+        }
+        return relative.toString();
+    }
+
+    /** Decodes {@code %XX} escapes as UTF-8, unlike a query {@code +} stays a plus. */
+    private static String percentDecode(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= value.length()) {
+                    return null;
+                }
+                int high = Character.digit(value.charAt(i + 1), 16);
+                int low = Character.digit(value.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                bytes.write(high << 4 | low);
+                i += 2;
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String contentType(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String type = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        return type != null ? type : "application/octet-stream";
+    }
+
+    @Override
+    public String toString() {
+        return prefix + " -> " + root;
+    }
+}
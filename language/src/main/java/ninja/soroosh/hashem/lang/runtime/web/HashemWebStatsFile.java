@@ -0,0 +1,87 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import ninja.soroosh.hashem.lang.runtime.HashemWebServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Writes the summed {@link HashemWebMetrics} of all web servers of a context to a properties file
+ * once per second. The worker processes of the launcher are started with the language option
+ * {@code --hashemi.WebStatsFile}, and their supervisor adds up the files of all workers. The file
+ * is replaced atomically, so a reader never sees a partial one.
+ */
+public final class HashemWebStatsFile implements Runnable {
+
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private final Path file;
+    private final Supplier<Iterable<HashemWebServer>> servers;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public HashemWebStatsFile(Path file, Supplier<Iterable<HashemWebServer>> servers) {
+        this.file = file;
+        this.servers = servers;
+        /* the writer only reads counters, it does not need to be a polyglot thread */
+        this.thread = new Thread(this, "hashemi-web-stats");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                write();
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                /* the supervisor may have removed the directory, try again later */
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        Map<String, Long> sums = new LinkedHashMap<>();
+        for (HashemWebServer server : servers.get()) {
+            for (Map.Entry<String, Long> value : server.getMetrics().getValues().entrySet()) {
+                sums.merge(value.getKey(), value.getValue(), Long::sum);
+            }
+        }
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> sum : sums.entrySet()) {
+            properties.setProperty(sum.getKey(), Long.toString(sum.getValue()));
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            properties.store(out, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes the file a last time and stops the writer. */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(INTERVAL_MILLIS);
+            write();
+        } catch (IOException e) {
+            /* nobody reads the numbers anymore */
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.ArityException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.interop.UnsupportedMessageException;
+import com.oracle.truffle.api.interop.UnsupportedTypeException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import ninja.soroosh.hashem.lang.HashemException;
+import ninja.soroosh.hashem.lang.runtime.HashemPooch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The streaming response a web handler receives as its second argument. Instead of answering with
+ * a complete body, a handler can write the body piece by piece:
+ *
+ * <pre>
+ * bebin gozaresh(request, javab) {
+ *   javab.status = 200;
+ *   javab.header("Content-Type", "text/csv");
+ *   i = 0;
+ *   ta (i < 100000) bood {
+ *     javab.write("satr " + i + ";");
+ *     i = i + 1;
+ *   }
+ * }
+ * </pre>
+ *
+ * The status and headers are sent with the first flush, after that they can not be changed. Writes
+ * are collected in a buffer of {@link HashemWebServerOptions#getStreamBuffer()} bytes that is sent
+ * as one chunk when it is full, and the engine blocks the handler until the chunk is on its way.
+ * So neither the time to the first byte nor the memory of the handler grow with the size of the
+ * response. When the handler returns, the rest of the buffer is sent and the response ends; the
+ * value the handler returned is ignored.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebStream implements TruffleObject {
+
+    public static final String STATUS = "status";
+    public static final String WRITE = "write";
+    public static final String HEADER = "header";
+
+    private static final String[] MEMBERS = {STATUS, WRITE, HEADER};
+
+    private final HashemWebExchange exchange;
+    private final int bufferSize;
+
+    private int status = 200;
+    private Map<String, String> headers;
+    private byte[] buffer;
+    private int count;
+    private boolean started;
+    private OutputStream out;
+
+    public HashemWebStream(HashemWebExchange exchange, int bufferSize) {
+        this.exchange = exchange;
+        this.bufferSize = bufferSize;
+    }
+
+    /** Whether the handler wrote to the stream, i.e. the stream is the response. */
+    public boolean isStarted() {
+        return started;
+    }
+
+    @TruffleBoundary
+    public void write(String text) throws IOException {
+        started = true;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+        }
+        if (count + bytes.length > buffer.length) {
+            flush();
+        }
+        if (bytes.length >= buffer.length) {
+            /* too large for the buffer, send it as a chunk of its own */
+            commit().write(bytes, 0, bytes.length);
+        } else {
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+    }
+
+    @TruffleBoundary
+    public void setHeader(String name, String value) {
+        checkNotCommitted(name);
+        if (headers == null) {
+            headers = new LinkedHashMap<>();
+        }
+        headers.put(name, value);
+    }
+
+    public void setStatus(int status) {
+        checkNotCommitted(STATUS);
+        this.status = status;
+    }
+
+    /** Sends the buffered rest and ends the response. */
+    @TruffleBoundary
+    public void finish() throws IOException {
+        flush();
+        commit().close();
+    }
+
+    private void flush() throws IOException {
+        if (count > 0) {
+            commit().write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private OutputStream commit() throws IOException {
+        if (out == null) {
+            out = exchange.sendChunkedResponse(status, headers);
+        }
+        return out;
+    }
+
+    private void checkNotCommitted(String member) {
+        if (out != null) {
+            throw new HashemException("javab." + member + " can not be changed after the response was sent", null);
+        }
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case STATUS:
+                return (long) status;
+            case WRITE:
+            case HEADER:
+                return new Method(this, member);
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
+    }
+
+    @ExportMessage
+    boolean isMemberReadable(String member) {
+        switch (member) {
+            case STATUS:
+            case WRITE:
+            case HEADER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @ExportMessage
+    boolean isMemberModifiable(String member) {
+        return STATUS.equals(member);
+    }
+
+    @ExportMessage
+    boolean isMemberInsertable(@SuppressWarnings("unused") String member) {
+        return false;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    void writeMember(String member, Object value) throws UnknownIdentifierException, UnsupportedTypeException {
+        if (!STATUS.equals(member)) {
+            throw UnknownIdentifierException.create(member);
+        }
+        InteropLibrary numbers = InteropLibrary.getFactory().getUncached(value);
+        if (!numbers.fitsInInt(value)) {
+            throw UnsupportedTypeException.create(new Object[]{value});
+        }
+        try {
+            setStatus(numbers.asInt(value));
+        } catch (UnsupportedMessageException e) {
+            throw UnsupportedTypeException.create(new Object[]{value});
+        }
+    }
+
+    @ExportMessage
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new HashemWebStringMap.Names(MEMBERS);
+    }
+
+    @Override
+    public String toString() {
+        return "javab";
+    }
+
+    /** The {@code write} and {@code header} members, bound to their stream. */
+    @ExportLibrary(InteropLibrary.class)
+    static final class Method implements TruffleObject {
+
+        private final HashemWebStream stream;
+        private final String name;
+
+        Method(HashemWebStream stream, String name) {
+            this.stream = stream;
+            this.name = name;
+        }
+
+        @ExportMessage
+        boolean isExecutable() {
+            return true;
+        }
+
+        @ExportMessage
+        @TruffleBoundary
+        Object execute(Object[] arguments) throws ArityException, UnsupportedTypeException {
+            if (WRITE.equals(name)) {
+                if (arguments.length != 1) {
+                    throw ArityException.create(1, arguments.length);
+                }
+                try {
+                    stream.write(toText(arguments[0]));
+                } catch (IOException e) {
+                    throw new HashemException("javab.write: " + e.getMessage(), null);
+                }
+            } else {
+                if (arguments.length != 2) {
+                    throw ArityException.create(2, arguments.length);
+                }
+                stream.setHeader(toText(arguments[0]), toText(arguments[1]));
+            }
+            return HashemPooch.SINGLETON;
+        }
+
+        private static String toText(Object value) throws UnsupportedTypeException {
+            InteropLibrary values = InteropLibrary.getFactory().getUncached(value);
+            try {
+                if (values.isString(value)) {
+                    return values.asString(value);
+                } else if (values.fitsInLong(value)) {
+                    return Long.toString(values.asLong(value));
+                }
+            } catch (UnsupportedMessageException e) {
+                /* reported below */
+            }
+            throw UnsupportedTypeException.create(new Object[]{value});
+        }
+
+        @Override
+        public String toString() {
+            return "javab." + name;
+        }
+    }
+}
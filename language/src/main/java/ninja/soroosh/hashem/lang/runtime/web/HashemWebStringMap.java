@@ -0,0 +1,99 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.InvalidArrayIndexException;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+
+import java.util.Map;
+
+/**
+ * Read-only view of decoded name/value pairs of a request, e.g. the headers or the query
+ * parameters. Scripts read the values like properties of an object:
+ * {@code request.query.name} or {@code request.headers["User-Agent"]}.
+ */
+@ExportLibrary(InteropLibrary.class)
+public final class HashemWebStringMap implements TruffleObject {
+
+    private final Map<String, String> values;
+
+    public HashemWebStringMap(Map<String, String> values) {
+        this.values = values;
+    }
+
+    @TruffleBoundary
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        String value = values.get(member);
+        if (value == null) {
+            throw UnknownIdentifierException.create(member);
+        }
+        return value;
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    boolean isMemberReadable(String member) {
+        return values.containsKey(member);
+    }
+
+    @ExportMessage
+    @TruffleBoundary
+    Object getMembers(@SuppressWarnings("unused") boolean includeInternal) {
+        return new Names(values.keySet().toArray());
+    }
+
+    @Override
+    @TruffleBoundary
+    public String toString() {
+        return values.toString();
+    }
+
+    @ExportLibrary(InteropLibrary.class)
+    static final class Names implements TruffleObject {
+
+        private final Object[] names;
+
+        Names(Object[] names) {
+            this.names = names;
+        }
+
+        @ExportMessage
+        boolean hasArrayElements() {
+            return true;
+        }
+
+        @ExportMessage
+        boolean isArrayElementReadable(long index) {
+            return index >= 0 && index < names.length;
+        }
+
+        @ExportMessage
+        long getArraySize() {
+            return names.length;
+        }
+
+        @ExportMessage
+        Object readArrayElement(long index) throws InvalidArrayIndexException {
+            if (!isArrayElementReadable(index)) {
+                CompilerDirectives.transferToInterpreter();
+                throw InvalidArrayIndexException.create(index);
+            }
+            return names[(int) index];
+        }
+    }
+}
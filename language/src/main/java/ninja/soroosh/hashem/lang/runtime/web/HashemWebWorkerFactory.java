@@ -0,0 +1,104 @@
+package ninja.soroosh.hashem.lang.runtime.web;
+
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.TruffleContext;
+import com.oracle.truffle.api.TruffleLanguage.Env;
+import ninja.soroosh.hashem.lang.HashemLanguage;
+import ninja.soroosh.hashem.lang.nodes.HashemUndefinedBebinRootNode;
+import ninja.soroosh.hashem.lang.runtime.HashemBebin;
+import ninja.soroosh.hashem.lang.runtime.HashemBebinRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the worker threads of a web server. All workers are created through
+ * {@link Env#createThread(Runnable)}, so they are polyglot threads that are entered into the
+ * context of the script that created the server and may execute Hashemi code.
+ * <p>
+ * With {@code isolated} workers, every worker gets an inner context of its own instead. The
+ * inner contexts share the engine, and with it the parsed and compiled code, but no mutable state:
+ * every one has its own function registry and objects, so handlers on different workers never
+ * touch the same Hashemi state. The functions of the script are copied into the registry of each
+ * inner context when its worker starts, functions defined later are not seen by the workers.
+ */
+public final class HashemWebWorkerFactory implements ThreadFactory {
+
+    private final Env env;
+    private final String namePrefix;
+    private final HashemBebinRegistry functions;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final List<TruffleContext> contexts = new CopyOnWriteArrayList<>();
+
+    public HashemWebWorkerFactory(Env env, String namePrefix) {
+        this(env, namePrefix, null);
+    }
+
+    /**
+     * @param functions the registry the functions of isolated workers are copied from, or
+     *            {@code null} to run the workers in the context of the script
+     */
+    public HashemWebWorkerFactory(Env env, String namePrefix, HashemBebinRegistry functions) {
+        this.env = env;
+        this.namePrefix = namePrefix;
+        this.functions = functions;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread;
+        if (functions == null) {
+            thread = env.createThread(runnable);
+        } else {
+            Map<String, RootCallTarget> defined = definedFunctions();
+            TruffleContext context = env.newContextBuilder().build();
+            contexts.add(context);
+            thread = env.createThread(() -> {
+                HashemLanguage.getCurrentContext().getFunctionRegistry().register(defined);
+                runnable.run();
+            }, context);
+        }
+        thread.setName(namePrefix + "-" + counter.incrementAndGet());
+        threads.add(thread);
+        return thread;
+    }
+
+    private Map<String, RootCallTarget> definedFunctions() {
+        Map<String, RootCallTarget> defined = new HashMap<>();
+        for (HashemBebin function : functions.getFunctions()) {
+            RootCallTarget callTarget = function.getCallTarget();
+            if (!(callTarget.getRootNode() instanceof HashemUndefinedBebinRootNode)) {
+                defined.put(function.getName(), callTarget);
+            }
+        }
+        return defined;
+    }
+
+    /**
+     * Waits until all created workers have died. The context can only be closed after all its
+     * polyglot threads completed, a terminated executor alone does not guarantee that. The inner
+     * contexts of isolated workers are closed once their worker is gone.
+     */
+    public void join(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread thread : threads) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            thread.join(remaining);
+            if (thread.isAlive()) {
+                return;
+            }
+        }
+        for (TruffleContext context : contexts) {
+            context.close();
+        }
+        contexts.clear();
+    }
+}
@@ -0,0 +1,92 @@
+package ninja.soroosh.hashem.lang.test;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashemArrayTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = Context.create("hashemi");
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private Value eval(String source) {
+        return context.eval("hashemi", source + " bebin azinja() {bede test;}");
+    }
+
+    @Test
+    public void testLongs() {
+        Value test = eval("bebin test(n) {\n" +
+                        "  a = araye(n);\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { a[i] = a[i] + i; i = i + 1; }\n" +
+                        "  jam = 0;\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { jam = jam + a[i]; i = i + 1; }\n" +
+                        "  bede jam;\n" +
+                        "}");
+        Assert.assertEquals(4950, test.execute(100L).asLong());
+        Assert.assertEquals(0, test.execute(0L).asLong());
+    }
+
+    @Test
+    public void testStrategies() {
+        Value array = eval("bebin test() {\n" +
+                        "  a = araye(3, 1 == 1);\n" +
+                        "  a[1] = 1 == 2;\n" +
+                        "  b = araye(2);\n" +
+                        "  b[0] = 7;\n" +
+                        "  b[1] = \"salam\";\n" +
+                        "  a[2] = b;\n" +
+                        "  bede a;\n" +
+                        "}").execute();
+        Assert.assertTrue(array.hasArrayElements());
+        Assert.assertEquals(3, array.getArraySize());
+        Assert.assertTrue(array.getArrayElement(0).asBoolean());
+        Assert.assertFalse(array.getArrayElement(1).asBoolean());
+        Value inner = array.getArrayElement(2);
+        Assert.assertEquals(7, inner.getArrayElement(0).asLong());
+        Assert.assertEquals("salam", inner.getArrayElement(1).asString());
+
+        inner.setArrayElement(0, 42);
+        Assert.assertEquals(42, inner.getArrayElement(0).asLong());
+    }
+
+    @Test
+    public void testSize() {
+        Value test = eval("bebin test(n) { bede getSize(araye(n, \"x\")); }");
+        Assert.assertEquals(5, test.execute(5L).asLong());
+        try {
+            test.execute(-1L);
+            Assert.fail();
+        } catch (PolyglotException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("araye: size -1"));
+        }
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        Value test = eval("bebin test(i) { a = araye(2); a[i] = 1; bede a[i]; }");
+        Assert.assertEquals(1, test.execute(1L).asLong());
+        for (long index : new long[]{2, -1}) {
+            try {
+                test.execute(index);
+                Assert.fail();
+            } catch (PolyglotException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Undefined property: " + index));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ninja.soroosh.hashem.lang.test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ninja.soroosh.hashem.lang.runtime.HashemBigNumber;
+
+public class HashemBigNumberTest {
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /** Numbers around the edges of the {@code long} and the 128-bit range. */
+    private static BigInteger[] samples() {
+        Random random = new Random(313);
+        BigInteger[] samples = new BigInteger[120];
+        int count = 0;
+        for (int bits : new int[]{0, 1, 31, 62, 63, 64, 65, 100, 126, 127, 128, 129, 200}) {
+            BigInteger power = BigInteger.ONE.shiftLeft(bits);
+            samples[count++] = power;
+            samples[count++] = power.subtract(BigInteger.ONE);
+            samples[count++] = power.negate();
+            samples[count++] = power.negate().subtract(BigInteger.ONE);
+        }
+        while (count < samples.length) {
+            BigInteger value = new BigInteger(1 + random.nextInt(130), random);
+            samples[count++] = random.nextBoolean() ? value : value.negate();
+        }
+        return samples;
+    }
+
+    private static Object number(BigInteger value) {
+        return HashemBigNumber.valueOf(value);
+    }
+
+    private static void assertNumber(BigInteger expected, Object actual) {
+        if (expected.compareTo(LONG_MIN) >= 0 && expected.compareTo(LONG_MAX) <= 0) {
+            Assert.assertEquals(expected.longValue(), actual);
+        } else {
+            Assert.assertTrue(actual instanceof HashemBigNumber);
+            Assert.assertEquals(expected, ((HashemBigNumber) actual).getValue());
+            Assert.assertEquals(new HashemBigNumber(expected), actual);
+            Assert.assertEquals(new HashemBigNumber(expected).hashCode(), actual.hashCode());
+        }
+    }
+
+    private static HashemBigNumber big(BigInteger value) {
+        return new HashemBigNumber(value);
+    }
+
+    @Test
+    public void testArithmetic() {
+        BigInteger[] samples = samples();
+        for (BigInteger a : samples) {
+            for (BigInteger b : samples) {
+                assertNumber(a.add(b), HashemBigNumber.add(big(a), big(b)));
+                assertNumber(a.subtract(b), HashemBigNumber.subtract(big(a), big(b)));
+                assertNumber(a.multiply(b), HashemBigNumber.multiply(big(a), big(b)));
+                Assert.assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(HashemBigNumber.compare(big(a), big(b))));
+                if (number(b) instanceof Long) {
+                    long right = b.longValue();
+                    assertNumber(a.add(b), HashemBigNumber.add(big(a), right));
+                    assertNumber(a.subtract(b), HashemBigNumber.subtract(big(a), right));
+                    assertNumber(b.subtract(a), HashemBigNumber.subtract(right, big(a)));
+                    assertNumber(a.multiply(b), HashemBigNumber.multiply(big(a), right));
+                    Assert.assertEquals(Integer.signum(b.compareTo(a)), Integer.signum(HashemBigNumber.compare(right, big(a))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBackToLong() {
+        try (Context context = Context.create("hashemi")) {
+            Value test = context.eval("hashemi", "bebin test(n) {\n" +
+                            "  big = n * n * n;\n" +
+                            "  bede big / n - n * n + (big - 1) - big * 1;\n" +
+                            "} bebin azinja() {bede test;}");
+            Value result = test.execute(3037000500L);
+            Assert.assertTrue(result.fitsInLong());
+            Assert.assertEquals(-1, result.asLong());
+        }
+    }
+}
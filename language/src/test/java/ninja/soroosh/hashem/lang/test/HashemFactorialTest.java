@@ -52,4 +52,14 @@ public class HashemFactorialTest {
         Number ret = factorial.execute(1).as(Number.class);
         assertEquals(1, ret.intValue());
     }
+
+    @Test
+    public void factorialOf30() throws Exception {
+        assertEquals("265252859812191058636308480000000", factorial.execute(30L).toString());
+    }
+
+    @Test
+    public void factorialOf40() throws Exception {
+        assertEquals("815915283247897734345611269596115894272000000000", factorial.execute(40L).toString());
+    }
 }
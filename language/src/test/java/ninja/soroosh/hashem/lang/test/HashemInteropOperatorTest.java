@@ -40,4 +40,55 @@ public class HashemInteropOperatorTest {
         Assert.assertTrue(res.isNumber());
         Assert.assertEquals(-1, res.asInt());
     }
+
+    @Test
+    public void testConcatLoop() {
+        final Source src = Source.newBuilder("hashemi", "bebin testConcat(n) {matn = \"\"; i = 0; ta (i < n) bood {matn = matn + \"*\"; i = i + 1;} bede matn;} bebin azinja() {bede testConcat;}",
+                        "testConcat.hashem").buildLiteral();
+        final Value fnc = context.eval(src);
+        final Value res = fnc.execute(200000);
+        Assert.assertTrue(res.isString());
+        Assert.assertEquals(200000, res.asString().length());
+        Assert.assertEquals("", fnc.execute(0).asString());
+    }
+
+    @Test
+    public void testConcatConsumers() {
+        final Source src = Source.newBuilder("hashemi", "bebin testConcat(a, b) {" +
+                        "x = (a + \" \") + (b + 1);" +
+                        "o = jadid();" +
+                        "o[x] = 313;" +
+                        "bede x == \"salam donya1\" && x == (a + \" \" + b + 1) && x != a && o[\"salam donya1\"] == 313;" +
+                        "} bebin azinja() {bede testConcat;}", "testConcat.hashem").buildLiteral();
+        final Value fnc = context.eval(src);
+        Assert.assertTrue(fnc.execute("salam", "donya").asBoolean());
+        Assert.assertFalse(fnc.execute("salam", "hashem").asBoolean());
+    }
+
+    @Test
+    public void testDoubleArithmetic() {
+        final Source src = Source.newBuilder("hashemi", "bebin testDouble(a) {" +
+                        "x = 1.5 + a;" +
+                        "y = x * 2 - 0.5;" +
+                        "age (y / 4 < 2 && 7 / 2 == 3 && 7 / 2.0 == 3.5 && 1 == 1.0 && 2.5 <= 2.5 && 5.5 % 2 == 1.5) bood { bede y; }" +
+                        "bede 0;" +
+                        "} bebin azinja() {bede testDouble;}", "testDouble.hashem").buildLiteral();
+        final Value fnc = context.eval(src);
+        final Value res = fnc.execute(2L);
+        Assert.assertTrue(res.fitsInDouble());
+        Assert.assertEquals(6.5, res.asDouble(), 0);
+    }
+
+    @Test
+    public void testDoubleLocals() {
+        final Source src = Source.newBuilder("hashemi", "bebin testDouble(n) {" +
+                        "jam = 0.0;" +
+                        "i = 0;" +
+                        "ta (i < n) bood { jam = jam + 0.25; i = i + 1; }" +
+                        "jam = i;" +
+                        "bede jam / 3 + \" \" + (jam + 0.0) / 4;" +
+                        "} bebin azinja() {bede testDouble;}", "testDouble.hashem").buildLiteral();
+        final Value fnc = context.eval(src);
+        Assert.assertEquals("3 2.5", fnc.execute(10L).asString());
+    }
 }
@@ -0,0 +1,83 @@
+package ninja.soroosh.hashem.lang.test;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.api.frame.FrameSlotKind;
+
+import ninja.soroosh.hashem.lang.HashemLanguage;
+
+/**
+ * Checks which local variables stay unboxed, by the kind of their frame slot.
+ */
+public class HashemLocalVariableTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = Context.create("hashemi");
+        context.enter();
+    }
+
+    @After
+    public void tearDown() {
+        context.leave();
+        context.close();
+    }
+
+    private Value eval(String source) {
+        return context.eval("hashemi", source + " bebin azinja() {bede test;}");
+    }
+
+    private static FrameSlotKind kind(String function, String variable) {
+        FrameDescriptor frame = HashemLanguage.getCurrentContext().getFunctionRegistry().lookup(function, false).getCallTarget().getRootNode().getFrameDescriptor();
+        return frame.getFrameSlotKind(frame.findFrameSlot(variable));
+    }
+
+    @Test
+    public void testAccumulator() {
+        Value test = eval("bebin test(n) {\n" +
+                        "  jam = 0;\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { jam = jam + 0.5; i = i + 1; }\n" +
+                        "  bede jam;\n" +
+                        "}");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(2.0, test.execute(4L).asDouble(), 0);
+            /* the variable holds a long again when the next call starts */
+            Assert.assertEquals(0, test.execute(0L).asLong());
+            Assert.assertTrue(test.execute(0L).fitsInLong());
+        }
+        Assert.assertEquals(FrameSlotKind.Double, kind("test", "jam"));
+        Assert.assertEquals(FrameSlotKind.Long, kind("test", "i"));
+    }
+
+    @Test
+    public void testIntegersKeepTheirType() {
+        Value test = eval("bebin test(x) {\n" +
+                        "  y = 0.5;\n" +
+                        "  y = x;\n" +
+                        "  bede y / 2;\n" +
+                        "}");
+        Assert.assertEquals(3, test.execute(7L).asLong());
+        Assert.assertEquals(3.5, test.execute(7.0).asDouble(), 0);
+        Assert.assertEquals(FrameSlotKind.Double, kind("test", "y"));
+    }
+
+    @Test
+    public void testOtherTypesAreBoxed() {
+        Value test = eval("bebin test() {\n" +
+                        "  z = 1.5;\n" +
+                        "  z = \"salam\";\n" +
+                        "  bede z;\n" +
+                        "}");
+        Assert.assertEquals("salam", test.execute().asString());
+        Assert.assertEquals(FrameSlotKind.Object, kind("test", "z"));
+    }
+}
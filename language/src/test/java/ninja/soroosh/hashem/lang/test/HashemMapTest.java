@@ -0,0 +1,74 @@
+package ninja.soroosh.hashem.lang.test;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashemMapTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = Context.create("hashemi");
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private Value eval(String source) {
+        return context.eval("hashemi", source + " bebin azinja() {bede test;}");
+    }
+
+    @Test
+    public void testManyKeys() {
+        Value test = eval("bebin test(n) {\n" +
+                        "  m = naghshe();\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { m[i] = i * 2; m[\"k\" + i] = i; i = i + 1; }\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { age (i % 2 == 0) bood { hazf(m, \"k\" + i); } i = i + 1; }\n" +
+                        "  jam = 0;\n" +
+                        "  i = 0;\n" +
+                        "  ta (i < n) bood { jam = jam + m[i]; age (isPooch(m[\"k\" + i]) == (i % 2 == 0)) bood { jam = jam + 1; } i = i + 1; }\n" +
+                        "  bede jam - getSize(m);\n" +
+                        "}");
+        /* 2 * (0 + ... + 9999) + 10000 - (10000 + 5000) */
+        Assert.assertEquals(99990000 - 5000, test.execute(10000L).asLong());
+    }
+
+    @Test
+    public void testKeys() {
+        Value keys = eval("bebin test() {\n" +
+                        "  m = naghshe();\n" +
+                        "  m.yek = 1;\n" +
+                        "  m[2] = \"do\";\n" +
+                        "  m[\"se\"] = 3;\n" +
+                        "  m[\"y\" + \"ek\"] = 11;\n" +
+                        "  hazf(m, 2);\n" +
+                        "  m[2] = 22;\n" +
+                        "  bede kelidha(m);\n" +
+                        "}").execute();
+        Assert.assertEquals(3, keys.getArraySize());
+        Assert.assertEquals("yek", keys.getArrayElement(0).asString());
+        Assert.assertEquals("se", keys.getArrayElement(1).asString());
+        Assert.assertEquals(2, keys.getArrayElement(2).asLong());
+    }
+
+    @Test
+    public void testInterop() {
+        Value map = eval("bebin test() { m = naghshe(); m.salam = \"donya\"; m[313] = 1; bede m; }").execute();
+        Assert.assertTrue(map.hasMember("salam"));
+        Assert.assertEquals("donya", map.getMember("salam").asString());
+        Assert.assertEquals(1, map.getMemberKeys().size());
+        map.putMember("hashem", 42);
+        Assert.assertEquals(42, map.getMember("hashem").asLong());
+        Assert.assertTrue(map.removeMember("salam"));
+        Assert.assertFalse(map.hasMember("salam"));
+    }
+}
@@ -0,0 +1,1254 @@
+package ninja.soroosh.hashem.lang.test;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Starts real web servers on free loopback ports and talks to them over HTTP.
+ */
+public class HashemWebHandlerTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private Value server;
+
+    @Before
+    public void initEngine() throws Exception {
+        context = Context.newBuilder().allowCreateThread(true).allowAllAccess(true).build();
+    }
+
+    @After
+    public void dispose() {
+        if (server != null) {
+            context.eval("hashemi", "bebin tamoom(s) { stop(s); }");
+            context.getBindings("hashemi").getMember("tamoom").execute(server);
+        }
+        context.close();
+    }
+
+    @Test
+    public void singleWorker() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam() {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 202;\n" +
+                "  javab.body = \"Dorood Jahan\";\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/");
+        assertEquals(202, connection.getResponseCode());
+        assertEquals("Dorood Jahan", read(connection));
+    }
+
+    @Test
+    public void unfinishedHeadDoesNotBlockOthers() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam() {\n" +
+                "  bede \"salam\";\n" +
+                "}\n", port);
+        // @formatter:on
+        try (Socket slow = new Socket("localhost", port)) {
+            OutputStream out = slow.getOutputStream();
+            out.write("GET / HTTP/1.1\r\nHost: x\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            for (int i = 0; i < 3; i++) {
+                HttpURLConnection connection = get(port, "/");
+                connection.setReadTimeout(2000);
+                assertEquals(200, connection.getResponseCode());
+                assertEquals("salam", read(connection));
+            }
+        }
+    }
+
+    @Test
+    public void workersFromOptions() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.workers = 3;\n" +
+                "  tanzimat.queue = 16;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam() {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 200;\n" +
+                "  javab.body = \"salam\";\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        for (int i = 0; i < 10; i++) {
+            HttpURLConnection connection = get(port, "/");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("salam", read(connection));
+        }
+    }
+
+    @Test
+    public void requestIsPassedToHandler() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, echo);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin echo(request) {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 200;\n" +
+                "  javab.body = request.method + \" \" + request.path + \" \" + request.query.esm + \" \" +\n" +
+                "      request.headers[\"x-salam\"] + \" \" + request.body;\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/echo/?esm=mamad%20hashemi&esm=x");
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("X-Salam", "dorood");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("badane".getBytes(StandardCharsets.UTF_8));
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("POST /echo/ mamad hashemi dorood badane", read(connection));
+    }
+
+    @Test
+    public void routesByMethodAndPath() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/users/:id\", karbar);\n" +
+                "  addHandler(s, \"GET\", \"/users/man\", man);\n" +
+                "  addHandler(s, \"post\", \"/users\", jadidKarbar);\n" +
+                "  addHandler(s, \"POST\", \"/users/khodam\", jadidKarbar);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin javab(status, body) {\n" +
+                "  j = jadid();\n" +
+                "  j.status = status;\n" +
+                "  j.body = body;\n" +
+                "  bede j;\n" +
+                "}\n" +
+                "bebin karbar(request) { bede javab(200, \"karbar \" + request.params.id); }\n" +
+                "bebin man(request) { bede javab(200, \"man\"); }\n" +
+                "bebin jadidKarbar(request) { bede javab(201, \"sakhte shod\"); }\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/users/313");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("karbar 313", read(connection));
+
+        connection = get(port, "/users/man");
+        assertEquals("man", read(connection));
+
+        /* a static segment with a route for another method does not hide the parameter */
+        connection = get(port, "/users/khodam");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("karbar khodam", read(connection));
+
+        connection = get(port, "/users");
+        connection.setRequestMethod("POST");
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("sakhte shod", read(connection));
+
+        assertEquals(405, get(port, "/users").getResponseCode());
+        assertEquals(404, get(port, "/nist").getResponseCode());
+    }
+
+    @Test
+    public void responseObject() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/sarAyand\", sarAyand);\n" +
+                "  addHandler(s, \"GET\", \"/matn\", matn);\n" +
+                "  addHandler(s, \"GET\", \"/ghalat\", ghalat);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin sarAyand() {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 201;\n" +
+                "  javab.body = \"{}\";\n" +
+                "  javab.headers = jadid();\n" +
+                "  javab.headers[\"Content-Type\"] = \"application/json\";\n" +
+                "  javab.headers[\"X-Tedad\"] = 3;\n" +
+                "  bede javab;\n" +
+                "}\n" +
+                "bebin matn() {\n" +
+                "  bede \"faghat matn\";\n" +
+                "}\n" +
+                "bebin ghalat() {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = \"khoob\";\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/sarAyand");
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("application/json", connection.getHeaderField("Content-Type"));
+        assertEquals("3", connection.getHeaderField("X-Tedad"));
+        assertEquals("{}", read(connection));
+
+        connection = get(port, "/matn");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("faghat matn", read(connection));
+
+        assertEquals(500, get(port, "/ghalat").getResponseCode());
+    }
+
+    @Test
+    public void goodAnswerAfterBadAnswer() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/:hal\", javab);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin javab(request) {\n" +
+                "  age (request.params.hal == \"ok\") bood {\n" +
+                "    bede \"khoob\";\n" +
+                "  }\n" +
+                "  bede 313;\n" +
+                "}\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        assertEquals(200, get(port, "/ok").getResponseCode());
+        assertEquals(500, get(port, "/bad").getResponseCode());
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = get(port, "/ok");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("khoob", read(connection));
+        }
+        assertEquals(1, stat("handlersFailed"));
+    }
+
+    @Test
+    public void literalBodies() throws Exception {
+        int port = freePort();
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            large.append("درود ");
+        }
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"nio\";\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/kootah\", kootah);\n" +
+                "  addHandler(s, \"GET\", \"/boland\", boland);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin kootah() { bede \"سلام\"; }\n" +
+                "bebin boland() { bede \"" + large + "\"; }\n", port);
+        // @formatter:on
+        for (int i = 0; i < 3; i++) {
+            assertEquals("سلام", read(get(port, "/kootah")));
+            assertEquals(large.toString(), read(get(port, "/boland")));
+        }
+    }
+
+    @Test
+    public void streamedResponse() throws Exception {
+        streamedResponse("httpserver");
+    }
+
+    @Test
+    public void streamedResponseNio() throws Exception {
+        streamedResponse("nio");
+    }
+
+    private void streamedResponse(String engine) throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"" + engine + "\";\n" +
+                "  tanzimat.streamBuffer = 1000;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/gozaresh\", gozaresh);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin gozaresh(request, javab) {\n" +
+                "  javab.status = 203;\n" +
+                "  javab.header(\"X-Gozaresh\", \"bale\");\n" +
+                "  i = 0;\n" +
+                "  ta (i < 2000) bood {\n" +
+                "    javab.write(\"satr \" + i + \";\");\n" +
+                "    i = i + 1;\n" +
+                "  }\n" +
+                "}\n", port);
+        // @formatter:on
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            expected.append("satr ").append(i).append(';');
+        }
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = get(port, "/gozaresh");
+            assertEquals(203, connection.getResponseCode());
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            assertEquals("bale", connection.getHeaderField("X-Gozaresh"));
+            assertEquals(expected.toString(), read(connection));
+        }
+    }
+
+    @Test
+    public void compression() throws Exception {
+        int port = freePort();
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            large.append("salam donya ");
+        }
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.compression = 1000;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/boland\", boland);\n" +
+                "  addHandler(s, \"GET\", \"/kootah\", kootah);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin boland() { bede \"" + large + "\"; }\n" +
+                "bebin kootah() { bede \"salam\"; }\n", port);
+        // @formatter:on
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = get(port, "/boland");
+            connection.setRequestProperty("Accept-Encoding", "deflate, gzip;q=0.8");
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertTrue(connection.getContentLength() < large.length() / 4);
+            assertEquals(large.toString(), readAll(new GZIPInputStream(connection.getInputStream())));
+        }
+
+        HttpURLConnection connection = get(port, "/boland");
+        connection.setRequestProperty("Accept-Encoding", "gzip;q=0, deflate");
+        assertEquals("deflate", connection.getHeaderField("Content-Encoding"));
+        assertEquals(large.toString(), readAll(new InflaterInputStream(connection.getInputStream())));
+
+        connection = get(port, "/boland");
+        connection.setRequestProperty("Accept-Encoding", "gzip;q=0, *");
+        assertEquals("deflate", connection.getHeaderField("Content-Encoding"));
+        assertEquals(large.toString(), readAll(new InflaterInputStream(connection.getInputStream())));
+
+        connection = get(port, "/boland");
+        connection.setRequestProperty("Accept-Encoding", "*;q=0");
+        assertEquals(null, connection.getHeaderField("Content-Encoding"));
+        assertEquals(large.toString(), read(connection));
+
+        connection = get(port, "/boland");
+        connection.setRequestProperty("Accept-Encoding", "gzip;q=0, deflate;q=0, *");
+        assertEquals(null, connection.getHeaderField("Content-Encoding"));
+        assertEquals(large.toString(), read(connection));
+
+        connection = get(port, "/boland");
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        assertEquals(null, connection.getHeaderField("Content-Encoding"));
+        assertEquals(large.toString(), read(connection));
+
+        connection = get(port, "/kootah");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(null, connection.getHeaderField("Content-Encoding"));
+        assertEquals("salam", read(connection));
+    }
+
+    @Test
+    public void responseCache() throws Exception {
+        responseCache("httpserver");
+    }
+
+    @Test
+    public void responseCacheNio() throws Exception {
+        responseCache("nio");
+    }
+
+    private void responseCache(String engine) throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"" + engine + "\";\n" +
+                "  tanzimat.compression = 100;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  cache = jadid();\n" +
+                "  cache.cacheTtl = 60000;\n" +
+                "  addHandler(s, \"GET\", \"/zaman\", zaman, cache);\n" +
+                "  addHandler(s, \"GET\", \"/taze\", zaman);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin zaman(request) { bede \"zaman \" + request.query.esm + \" \" + nanoTime() + \" ..................................................................................................\"; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/zaman?esm=ali");
+        String first = read(connection);
+        String etag = connection.getHeaderField("ETag");
+        assertTrue(first, first.startsWith("zaman ali "));
+        assertTrue(etag, etag.startsWith("\""));
+        assertEquals(first, read(get(port, "/zaman?esm=ali")));
+        assertEquals(first, read(get(port, "/zaman?esm=ali")));
+        assertTrue(!first.equals(read(get(port, "/zaman?esm=reza"))));
+        assertTrue(!read(get(port, "/taze?esm=ali")).equals(read(get(port, "/taze?esm=ali"))));
+
+        connection = get(port, "/zaman?esm=ali");
+        connection.setRequestProperty("If-None-Match", "\"digari\", " + etag);
+        assertEquals(304, connection.getResponseCode());
+        assertEquals(etag, connection.getHeaderField("ETag"));
+
+        /* the compressed variant has an ETag of its own */
+        for (int i = 0; i < 2; i++) {
+            connection = get(port, "/zaman?esm=ali");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertEquals(first, readAll(new GZIPInputStream(connection.getInputStream())));
+            assertTrue(!etag.equals(connection.getHeaderField("ETag")));
+        }
+        String gzipEtag = connection.getHeaderField("ETag");
+        connection = get(port, "/zaman?esm=ali");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        connection.setRequestProperty("If-None-Match", gzipEtag);
+        assertEquals(304, connection.getResponseCode());
+
+        assertEquals(4, stat("cacheHits"));
+        assertEquals(2, stat("cacheMisses"));
+        assertEquals(2, stat("notModified"));
+    }
+
+    @Test
+    public void staticFiles() throws Exception {
+        staticFiles("httpserver");
+    }
+
+    @Test
+    public void staticFilesNio() throws Exception {
+        staticFiles("nio");
+    }
+
+    private void staticFiles(String engine) throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.write(root.resolve("salam.txt"), "salam donya".getBytes(StandardCharsets.UTF_8));
+        byte[] large = new byte[200 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31 + i / 7);
+        }
+        Files.write(root.resolve("bozorg.bin"), large);
+        Files.createDirectory(root.resolve("safhe"));
+        Files.write(root.resolve("safhe/index.html"), "<p>safhe</p>".getBytes(StandardCharsets.UTF_8));
+
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port, dir) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"" + engine + "\";\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  serveStatic(s, \"/assets\", dir);\n" +
+                "  addHandler(s, \"GET\", \"/salam\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam() { bede \"salam\"; }\n", port, root.toString());
+        // @formatter:on
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection connection = get(port, "/assets/salam.txt");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("text/plain; charset=utf-8", connection.getContentType());
+            assertEquals("salam donya", read(connection));
+        }
+        HttpURLConnection connection = get(port, "/assets/salam.txt");
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        read(connection);
+        connection = get(port, "/assets/salam.txt");
+        connection.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, connection.getResponseCode());
+        connection = get(port, "/assets/salam.txt");
+        connection.setRequestProperty("If-Modified-Since", lastModified);
+        assertEquals(304, connection.getResponseCode());
+
+        assertArrayEquals(large, readBytes(get(port, "/assets/bozorg.bin")));
+        connection = get(port, "/assets/bozorg.bin");
+        connection.setRequestProperty("Range", "bytes=1000-1999");
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes 1000-1999/" + large.length, connection.getHeaderField("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(large, 1000, 2000), readBytes(connection));
+        connection = get(port, "/assets/bozorg.bin");
+        connection.setRequestProperty("Range", "bytes=-10");
+        assertArrayEquals(Arrays.copyOfRange(large, large.length - 10, large.length), readBytes(connection));
+        connection = get(port, "/assets/bozorg.bin");
+        connection.setRequestProperty("Range", "bytes=" + large.length + "-");
+        assertEquals(416, connection.getResponseCode());
+        connection = get(port, "/assets/salam.txt");
+        connection.setRequestProperty("Range", "bytes=6-");
+        connection.setRequestProperty("If-Range", etag);
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("donya", read(connection));
+
+        assertEquals("<p>safhe</p>", read(get(port, "/assets/safhe/")));
+        assertEquals(404, get(port, "/assets/nist.txt").getResponseCode());
+        assertEquals(404, get(port, "/assets/safhe/%2e%2e/%2e%2e/" + root.getFileName() + "/salam.txt").getResponseCode());
+        connection = get(port, "/assets/salam.txt");
+        connection.setRequestMethod("POST");
+        assertEquals(405, connection.getResponseCode());
+        assertEquals("salam", read(get(port, "/salam")));
+    }
+
+    @Test
+    public void admissionControl() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.workers = 1;\n" +
+                "  tanzimat.maxInFlight = 2;\n" +
+                "  tanzimat.maxQueueTime = 200;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"POST\", \"/\", echo);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin echo(request) { bede request.body; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        /* the handler blocks the only worker until the body of the first request arrives */
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            first.getOutputStream().write("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            waitFor(() -> stat("activeWorkers") == 1);
+
+            second.getOutputStream().write("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\ndovom".getBytes(StandardCharsets.US_ASCII));
+            waitFor(() -> stat("queueDepth") == 1);
+
+            HttpURLConnection rejected = get(port, "/");
+            rejected.setRequestMethod("POST");
+            rejected.setDoOutput(true);
+            rejected.getOutputStream().write("sevom".getBytes(StandardCharsets.UTF_8));
+            assertEquals(503, rejected.getResponseCode());
+
+            Thread.sleep(400);
+            first.getOutputStream().write("avval".getBytes(StandardCharsets.US_ASCII));
+            String response = new String(readResponse(first.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("avval"));
+            response = new String(readResponse(second.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.startsWith("HTTP/1.1 503"));
+        }
+        waitFor(() -> stat("inFlight") == 0);
+        assertEquals(2, stat("accepted"));
+        assertEquals(1, stat("completed"));
+        assertEquals(1, stat("shedInFlight"));
+        assertEquals(1, stat("shedQueueTime"));
+    }
+
+    @Test
+    public void gracefulStop() throws Exception {
+        gracefulStop("httpserver");
+    }
+
+    @Test
+    public void gracefulStopNio() throws Exception {
+        gracefulStop("nio");
+    }
+
+    private void gracefulStop(String engine) throws Exception {
+        int port = freePort();
+        CountDownLatch gate = new CountDownLatch(1);
+        context.getPolyglotBindings().putMember("gate", gate);
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"" + engine + "\";\n" +
+                "  tanzimat.workers = 2;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/\", salam);\n" +
+                "  addHandler(s, \"GET\", \"/zood\", zood);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) {\n" +
+                "  import(\"gate\").await();\n" +
+                "  bede \"salam\";\n" +
+                "}\n" +
+                "bebin zood(request) { bede \"zood\"; }\n" +
+                "bebin bas(s, ms) { stop(s, ms); }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        Value stopped = server;
+        long[] stopMillis = new long[1];
+        Thread stopper = new Thread(() -> {
+            long begin = System.currentTimeMillis();
+            context.getBindings("hashemi").getMember("bas").execute(stopped, 10000L);
+            stopMillis[0] = System.currentTimeMillis() - begin;
+        });
+        try (Socket inFlight = new Socket("localhost", port)) {
+            inFlight.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            waitFor(() -> stat("activeWorkers") == 1);
+            stopper.start();
+
+            waitFor(() -> {
+                try {
+                    /* requests admitted before the drain started are answered by the second worker */
+                    return get(port, "/zood").getResponseCode() == 503;
+                } catch (IOException e) {
+                    /* the listening socket is closed already */
+                    return true;
+                }
+            });
+            assertTrue(stopper.isAlive());
+
+            gate.countDown();
+            String response = new String(readResponse(inFlight.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.toLowerCase().contains("connection: close\r\n"));
+            assertTrue(response, response.endsWith("salam"));
+        }
+        stopper.join(10000);
+        assertTrue(String.valueOf(stopMillis[0]), !stopper.isAlive() && stopMillis[0] < 5000);
+        server = null;
+    }
+
+    @Test
+    public void isolatedContexts() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.contexts = 2;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"POST\", \"/\", echo);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin echo(request) {\n" +
+                "  defineFunction(\"bebin dakheli() { bede 1; }\");\n" +
+                "  bede matn(request.body);\n" +
+                "}\n" +
+                "bebin matn(body) { bede \"salam \" + body; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            /* each handler blocks its worker until the body of its request arrives */
+            first.getOutputStream().write("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            second.getOutputStream().write("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            waitFor(() -> stat("activeWorkers") == 2);
+            first.getOutputStream().write("avval".getBytes(StandardCharsets.US_ASCII));
+            second.getOutputStream().write("dovom".getBytes(StandardCharsets.US_ASCII));
+            String response = new String(readResponse(first.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.endsWith("salam avval"));
+            response = new String(readResponse(second.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.endsWith("salam dovom"));
+        }
+        /* functions defined by the handlers stay in their own contexts */
+        assertTrue(context.getBindings("hashemi").hasMember("matn"));
+        assertTrue(!context.getBindings("hashemi").hasMember("dakheli"));
+    }
+
+    @Test
+    public void reusePort() throws Exception {
+        int port = freePort();
+        String source = "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam\"; }\n";
+        context.close();
+        /* the worker processes of the launcher, simulated by two contexts binding the same port */
+        context = Context.newBuilder().allowCreateThread(true).allowAllAccess(true).option("hashemi.WebReusePort", "true").build();
+        server = start(source, port);
+        Context second = Context.newBuilder().allowCreateThread(true).allowAllAccess(true).option("hashemi.WebReusePort", "true").build();
+        try {
+            second.eval("hashemi", source + "bebin tamoom(s) { stop(s); }");
+            Value secondServer = second.getBindings("hashemi").getMember("server").execute((long) port);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("salam", read(get(port, "/")));
+            }
+            second.getBindings("hashemi").getMember("tamoom").execute(secondServer);
+        } finally {
+            second.close();
+        }
+        assertEquals("salam", read(get(port, "/")));
+    }
+
+    @Test
+    public void serverRegistry() throws Exception {
+        int port = freePort();
+        int otherPort = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam\"; }\n" +
+                "bebin dobare(s, port) { bede webserver(port) == s && webserver(port, 4) == s && webservers()[port] == s; }\n" +
+                "bebin digari(port) { bede webserver(port) == webservers()[port]; }\n" +
+                "bebin hameServerha() { bede webservers(); }\n" +
+                "bebin hame() { bede stopAll(1000); }\n", port);
+        // @formatter:on
+        Value bindings = context.getBindings("hashemi");
+        /* the port is bound already, binding it again would fail */
+        assertTrue(bindings.getMember("dobare").execute(server, (long) port).asBoolean());
+        assertEquals(1, bindings.getMember("hameServerha").execute().getMemberKeys().size());
+        assertEquals("salam", read(get(port, "/")));
+
+        assertTrue(bindings.getMember("digari").execute((long) otherPort).asBoolean());
+        assertEquals(2, bindings.getMember("hameServerha").execute().getMemberKeys().size());
+
+        assertEquals(2, bindings.getMember("hame").execute().asLong());
+        assertEquals(0, bindings.getMember("hameServerha").execute().getMemberKeys().size());
+        server = null;
+        /* the ports are free again */
+        new ServerSocket(port).close();
+        new ServerSocket(otherPort).close();
+    }
+
+    @Test
+    public void events() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"nio\";\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin akhbar(s) { bede addEvents(s, \"/akhbar/:otagh\", moshtarak); }\n" +
+                "bebin moshtarak(request, kanal) {\n" +
+                "  kanal.send(\"salam \" + request.query.esm + \" \" + request.params.otagh, \"khosh\");\n" +
+                "}\n", port);
+        // @formatter:on
+        Value hub = context.getBindings("hashemi").getMember("akhbar").execute(server);
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            first.setSoTimeout(10000);
+            second.setSoTimeout(10000);
+            for (Socket socket : new Socket[]{first, second}) {
+                socket.getOutputStream().write("GET /akhbar/varzesh?esm=ali HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                String head = readUntil(socket.getInputStream(), "\r\n\r\n");
+                assertTrue(head, head.startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(head, head.contains("Content-Type: text/event-stream; charset=utf-8\r\n"));
+                assertTrue(head, head.contains("Connection: close\r\n"));
+                assertEquals("event: khosh\ndata: salam ali varzesh\n\n", readUntil(socket.getInputStream(), "\n\n"));
+            }
+            waitFor(() -> hub.getMember("subscribers").asLong() == 2);
+
+            assertEquals(2, hub.getMember("send").execute("khat 1\nkhat 2").asLong());
+            for (Socket socket : new Socket[]{first, second}) {
+                assertEquals("data: khat 1\ndata: khat 2\n\n", readUntil(socket.getInputStream(), "\n\n"));
+            }
+
+            first.close();
+            waitFor(() -> hub.getMember("subscribers").asLong() == 1);
+            assertEquals(1, hub.getMember("send").execute("tanha", "payan").asLong());
+            assertEquals("event: payan\ndata: tanha\n\n", readUntil(second.getInputStream(), "\n\n"));
+        }
+        waitFor(() -> hub.getMember("subscribers").asLong() == 0);
+    }
+
+    @Test
+    public void asyncHandlers() throws Exception {
+        Path file = folder.newFile("matn.txt").toPath();
+        Files.write(file, "salam\ndonya".getBytes(StandardCharsets.UTF_8));
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.workers = 1;\n" +
+                "  tanzimat.asyncTimeout = 1000;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/kham\", kham);\n" +
+                "  addHandler(s, \"GET\", \"/sakhte\", sakhte);\n" +
+                "  addHandler(s, \"GET\", \"/montazer\", montazer);\n" +
+                "  addHandler(s, \"GET\", \"/salam\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin kham(request) { bede readFileAsync(request.query.path); }\n" +
+                "bebin sakhte(request) { bede then(then(readFileAsync(request.query.path), dobare), sakht); }\n" +
+                "bebin dobare(matn) { bede readFileAsync(matn); }\n" +
+                "bebin sakht(matn) {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 201;\n" +
+                "  javab.body = \"<\" + matn + \">\";\n" +
+                "  bede javab;\n" +
+                "}\n" +
+                "bebin montazer() { bede future(); }\n" +
+                "bebin salam() { bede \"salam\"; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        assertEquals("salam\ndonya", read(get(port, "/kham?path=" + file)));
+        assertEquals(500, get(port, "/kham?path=" + file + ".nist").getResponseCode());
+        /* the continuation fails, the content of the file is no path */
+        assertEquals(500, get(port, "/sakhte?path=" + file).getResponseCode());
+        waitFor(() -> stat("futuresFailed") == 1);
+
+        Path link = folder.newFile("link.txt").toPath();
+        Files.write(link, file.toString().getBytes(StandardCharsets.UTF_8));
+        HttpURLConnection connection = get(port, "/sakhte?path=" + link);
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("<salam\ndonya>", read(connection));
+
+        /* the only worker is free while a request waits for its future */
+        HttpURLConnection waiting = get(port, "/montazer");
+        Thread waiter = new Thread(() -> {
+            try {
+                waiting.getResponseCode();
+            } catch (IOException ignored) {
+                /* checked below */
+            }
+        });
+        waiter.start();
+        waitFor(() -> stat("suspended") == 1);
+        assertEquals("salam", read(get(port, "/salam")));
+        waiter.join();
+        assertEquals(504, waiting.getResponseCode());
+        waitFor(() -> stat("suspended") == 0 && stat("inFlight") == 0);
+    }
+
+    @Test
+    public void thenKeepsTheBebinItWasGiven() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/avaz\", avaz);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin avaz(request) {\n" +
+                "  f = future();\n" +
+                "  g = then(f, sakht);\n" +
+                "  defineFunction(\"bebin sakht(matn) { bede 313; }\");\n" +
+                "  f.complete(\"salam\");\n" +
+                "  bede g;\n" +
+                "}\n" +
+                "bebin sakht(matn) { bede \"ghadim \" + matn; }\n", port);
+        // @formatter:on
+        HttpURLConnection connection = get(port, "/avaz");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("ghadim salam", read(connection));
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        metrics("httpserver");
+    }
+
+    @Test
+    public void metricsNio() throws Exception {
+        metrics("nio");
+    }
+
+    private void metrics(String engine) throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"" + engine + "\";\n" +
+                "  tanzimat.metrics = \"/metrics\";\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/salam/:esm\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam \" + request.params.esm; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port);
+        // @formatter:on
+        for (String name : new String[]{"ali", "mamad", "zahra"}) {
+            assertEquals("salam " + name, read(get(port, "/salam/" + name)));
+        }
+        assertEquals(404, get(port, "/nist").getResponseCode());
+        /* the stats of a request are recorded after its response is sent */
+        waitFor(() -> stat("completed") == 4);
+
+        HttpURLConnection connection = get(port, "/metrics");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/plain; version=0.0.4; charset=utf-8", connection.getContentType());
+        String text = read(connection);
+        String route = "{route=\"GET /salam/:esm\"";
+        assertTrue(text, text.contains("# TYPE hashemi_web_first_byte_seconds histogram\n"));
+        assertTrue(text, text.contains("hashemi_web_first_byte_seconds_count" + route + "} 3\n"));
+        assertTrue(text, text.contains("hashemi_web_first_byte_seconds_bucket" + route + ",le=\"+Inf\"} 3\n"));
+        assertTrue(text, text.contains("hashemi_web_first_byte_seconds_bucket" + route + ",le=\"0.0001\"} "));
+        assertTrue(text, text.contains("hashemi_web_handler_seconds_count" + route + "} 3\n"));
+        assertTrue(text, text.contains("hashemi_web_response_bytes_bucket" + route + ",le=\"128\"} 3\n"));
+        assertTrue(text, text.contains("hashemi_web_response_bytes_sum" + route + "} " + "salam alisalam mamadsalam zahra".length() + "\n"));
+        assertTrue(text, text.contains("hashemi_web_first_byte_seconds_count{route=\"unmatched\"} 1\n"));
+        assertTrue(text, text.contains("hashemi_web_handler_seconds_count{route=\"unmatched\"} 0\n"));
+        assertTrue(text, text.contains("# TYPE hashemi_web_in_flight gauge\nhashemi_web_in_flight "));
+        assertTrue(text, text.contains("hashemi_web_accepted_total 4\n"));
+
+        connection = get(port, "/metrics");
+        connection.setRequestMethod("POST");
+        assertEquals(405, connection.getResponseCode());
+    }
+
+    @Test
+    public void accessLog() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("access.log");
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port, log) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.accessLog = log;\n" +
+                "  tanzimat.accessLogSize = 200;\n" +
+                "  tanzimat.accessLogFiles = 2;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/salam/:esm\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam \" + request.params.esm; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port, log.toString());
+        // @formatter:on
+        for (int i = 0; i < 10; i++) {
+            String target = "/salam/" + i + (i == 9 ? "?bale=1" : "");
+            assertEquals("salam " + i, read(get(port, target)));
+            /* one request per batch, so the file is rotated between them */
+            waitFor(() -> contents(log).contains(" " + target + " "));
+        }
+        assertEquals(404, get(port, "/nist").getResponseCode());
+        waitFor(() -> contents(log).contains(" /nist "));
+        assertEquals(0, stat("accessLogDropped"));
+
+        context.eval("hashemi", "bebin tamoom(s) { stop(s); }");
+        context.getBindings("hashemi").getMember("tamoom").execute(server);
+        server = null;
+        Path first = log.resolveSibling("access.log.1");
+        assertTrue(Files.exists(first));
+        assertTrue(Files.exists(log.resolveSibling("access.log.2")));
+        assertFalse(Files.exists(log.resolveSibling("access.log.3")));
+        String[] lines = (contents(first) + contents(log)).split("\n");
+        assertTrue(lines[lines.length - 2], lines[lines.length - 2].matches("\\S+Z GET /salam/9\\?bale=1 200 7 \\d+us"));
+        assertTrue(lines[lines.length - 1], lines[lines.length - 1].matches("\\S+Z GET /nist 404 \\d+ \\d+us"));
+        assertTrue(Files.size(first) <= 200);
+    }
+
+    @Test
+    public void accessLogSurvivesFailedWrites() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("access.log");
+        /* a directory that cannot be deleted makes every rotation fail */
+        Path blocker = Files.createDirectories(log.resolveSibling("access.log.1").resolve("x"));
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port, log) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.accessLog = log;\n" +
+                "  tanzimat.accessLogSize = 100;\n" +
+                "  tanzimat.accessLogFiles = 1;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/salam/:esm\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam \" + request.params.esm; }\n" +
+                "bebin amar(s, name) { bede serverStats(s)[name]; }\n", port, log.toString());
+        // @formatter:on
+        for (int i = 0; i < 5; i++) {
+            assertEquals("salam " + i, read(get(port, "/salam/" + i)));
+            Thread.sleep(30);
+        }
+        waitFor(() -> stat("accessLogFailed") > 0);
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        assertEquals("salam dobare", read(get(port, "/salam/dobare")));
+        waitFor(() -> contents(log.resolveSibling("access.log.1")).contains(" /salam/dobare ") || contents(log).contains(" /salam/dobare "));
+        assertEquals(0, stat("accessLogDropped"));
+    }
+
+    private static String contents(Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private long stat(String name) {
+        return context.getBindings("hashemi").getMember("amar").execute(server, name).asLong();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /** Reads one response with a Content-Length from a kept-alive connection. */
+    private static byte[] readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int contentLength = -1;
+        int headEnd = -1;
+        while (headEnd < 0 || out.size() < headEnd + contentLength) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            out.write(b);
+            if (headEnd < 0 && out.size() >= 4) {
+                String head = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+                if (head.endsWith("\r\n\r\n")) {
+                    headEnd = out.size();
+                    for (String line : head.split("\r\n")) {
+                        if (line.toLowerCase().startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(line.substring(15).trim());
+                        }
+                    }
+                    contentLength = Math.max(contentLength, 0);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void redefinedHandler() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  s = webserver(port);\n" +
+                "  addHandler(s, \"GET\", \"/\", salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam() {\n" +
+                "  javab = jadid();\n" +
+                "  javab.body = \"avval\";\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        assertEquals("avval", read(get(port, "/")));
+        context.eval("hashemi", "bebin salam() { javab = jadid(); javab.body = \"dovom\"; bede javab; }");
+        assertEquals("dovom", read(get(port, "/")));
+    }
+
+    @Test
+    public void nioEngine() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.workers = 2;\n" +
+                "  tanzimat.engine = \"nio\";\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, \"GET\", \"/salam/:esm\", salam);\n" +
+                "  addHandler(s, \"POST\", \"/echo\", echo);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) {\n" +
+                "  javab = jadid();\n" +
+                "  javab.body = \"salam \" + request.params.esm + request.query.alamat;\n" +
+                "  bede javab;\n" +
+                "}\n" +
+                "bebin echo(request) {\n" +
+                "  javab = jadid();\n" +
+                "  javab.status = 201;\n" +
+                "  javab.body = request.headers[\"x-salam\"] + \" \" + request.body;\n" +
+                "  bede javab;\n" +
+                "}\n", port);
+        // @formatter:on
+        for (int i = 0; i < 5; i++) {
+            HttpURLConnection connection = get(port, "/salam/mamad?alamat=!");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("salam mamad!", read(connection));
+        }
+
+        HttpURLConnection connection = get(port, "/echo");
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("X-Salam", "dorood");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("badane".getBytes(StandardCharsets.UTF_8));
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("dorood badane", read(connection));
+
+        assertEquals(405, get(port, "/echo").getResponseCode());
+        assertEquals(404, get(port, "/nist").getResponseCode());
+
+        /* two pipelined requests on one connection, the second one closes it */
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /salam/ali?alamat=. HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "POST /echo HTTP/1.1\r\nHost: localhost\r\nX-Salam: hi\r\nContent-Length: 3\r\nConnection: close\r\n\r\nabc").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String responses = readAll(socket.getInputStream());
+            assertTrue(responses, responses.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(responses, responses.contains("\r\n\r\nsalam ali.HTTP/1.1 201 Created\r\n"));
+            assertTrue(responses, responses.contains("Connection: close\r\n"));
+            assertTrue(responses, responses.endsWith("\r\n\r\nhi abc"));
+        }
+    }
+
+    @Test
+    public void nioTimeoutsAndLengths() throws Exception {
+        int port = freePort();
+        // @formatter:off
+        server = start(
+                "bebin server(port) {\n" +
+                "  tanzimat = jadid();\n" +
+                "  tanzimat.engine = \"nio\";\n" +
+                "  tanzimat.idleTimeout = 300;\n" +
+                "  s = webserver(port, tanzimat);\n" +
+                "  addHandler(s, salam);\n" +
+                "  start(s);\n" +
+                "  bede s;\n" +
+                "}\n" +
+                "bebin salam(request) { bede \"salam\"; }\n", port);
+        // @formatter:on
+        try (Socket partial = new Socket("localhost", port); Socket idle = new Socket("localhost", port)) {
+            partial.setSoTimeout(5000);
+            idle.setSoTimeout(5000);
+            partial.getOutputStream().write("GET / HTTP/1.1\r\nHost: x\r\n".getBytes(StandardCharsets.US_ASCII));
+            idle.getOutputStream().write("GET / HTTP/1.1\r\nHost: x\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            String response = new String(readResponse(idle.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response, response.endsWith("salam"));
+
+            /* neither sends another request, both are closed */
+            assertEquals(-1, partial.getInputStream().read());
+            assertEquals(-1, idle.getInputStream().read());
+        }
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write("POST / HTTP/1.1\r\nHost: x\r\nContent-Length: 3\r\nContent-Length: 4\r\n\r\nabcd".getBytes(StandardCharsets.US_ASCII));
+            String response = readAll(socket.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 400 "));
+        }
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write("POST / HTTP/1.1\r\nHost: x\r\nContent-Length: 3\r\nContent-Length: 3\r\nConnection: close\r\n\r\nabc".getBytes(StandardCharsets.US_ASCII));
+            String response = readAll(socket.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 200 ") && response.endsWith("salam"));
+        }
+    }
+
+    private Value start(String source, int port, Object... arguments) {
+        context.eval("hashemi", source);
+        Object[] values = new Object[arguments.length + 1];
+        values[0] = (long) port;
+        System.arraycopy(arguments, 0, values, 1, arguments.length);
+        return context.getBindings("hashemi").getMember("server").execute(values);
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    static HttpURLConnection get(int port, String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    }
+
+    static String read(HttpURLConnection connection) throws IOException {
+        return readAll(connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream());
+    }
+
+    static byte[] readBytes(HttpURLConnection connection) throws IOException {
+        return readAllBytes(connection.getInputStream());
+    }
+
+    static String readAll(InputStream in) throws IOException {
+        return new String(readAllBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /** Reads byte by byte until the text read so far ends with the terminator. */
+    static String readUntil(InputStream in, String terminator) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (!new String(out.toByteArray(), StandardCharsets.UTF_8).endsWith(terminator)) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            out.write(b);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static byte[] readAllBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,199 @@
+package ninja.soroosh.hashem.lang.test;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback throughput benchmark of the Hashemi web server. For every worker count from one up to
+ * the number of available processors, a server is started and hammered by as many client threads
+ * as there are processors. The handler does a bit of arithmetic so that the request rate depends
+ * on how many workers run handlers in parallel.
+ * <p>
+ * Run it with {@code java ... HashemWebServerBenchmark [seconds] [maxWorkers] [port] [engine]},
+ * where {@code engine} is {@code httpserver} (default) or {@code nio}; it is not part of the unit
+ * tests.
+ * <p>
+ * With {@code compare} as the engine, both engines are measured against each other instead: the
+ * handler answers a constant and every client sends its requests one after another over a single
+ * keep-alive connection, so the rate is bound by the engine rather than by the handler or by
+ * {@link HttpURLConnection}. It prints the rate of each engine with {@code maxWorkers} workers and
+ * the ratio of {@code nio} to {@code httpserver}.
+ */
+public class HashemWebServerBenchmark {
+
+    // @formatter:off
+    private static final String SERVER =
+            "bebin server(port, workers, engine, handler) {\n" +
+            "  tanzimat = jadid();\n" +
+            "  tanzimat.workers = workers;\n" +
+            "  tanzimat.engine = engine;\n" +
+            "  s = webserver(port, tanzimat);\n" +
+            "  addHandler(s, handler);\n" +
+            "  start(s);\n" +
+            "  bede s;\n" +
+            "}\n" +
+            "bebin kar() {\n" +
+            "  i = 0;\n" +
+            "  jam = 0;\n" +
+            "  ta (i < 20000) bood {\n" +
+            "    jam = jam + i % 7;\n" +
+            "    i = i + 1;\n" +
+            "  }\n" +
+            "  javab = jadid();\n" +
+            "  javab.status = 200;\n" +
+            "  javab.body = \"jam: \" + jam;\n" +
+            "  bede javab;\n" +
+            "}\n" +
+            "bebin salam() {\n" +
+            "  javab = jadid();\n" +
+            "  javab.status = 200;\n" +
+            "  javab.body = \"salam\";\n" +
+            "  bede javab;\n" +
+            "}\n" +
+            "bebin tamoom(s) {\n" +
+            "  stop(s);\n" +
+            "}\n";
+    // @formatter:on
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int maxWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 9190;
+        String engine = args.length > 3 ? args[3] : "httpserver";
+        int clients = Math.max(maxWorkers, Runtime.getRuntime().availableProcessors());
+
+        if ("compare".equals(engine)) {
+            double httpServer = run(port, maxWorkers, "httpserver", "salam", clients, seconds, true);
+            double nio = run(port + 1, maxWorkers, "nio", "salam", clients, seconds, true);
+            System.out.println("engine\trequests/sec");
+            System.out.printf("httpserver\t%.1f%n", httpServer);
+            System.out.printf("nio\t%.1f%n", nio);
+            System.out.printf("nio / httpserver\t%.2f%n", nio / httpServer);
+            return;
+        }
+        System.out.println("engine " + engine);
+        System.out.println("workers\trequests/sec");
+        for (int workers = 1; workers <= maxWorkers; workers++) {
+            double rate = run(port + workers, workers, engine, "kar", clients, seconds, false);
+            System.out.printf("%d\t%.1f%n", workers, rate);
+        }
+    }
+
+    private static double run(int port, int workers, String engine, String handler, int clients, int seconds, boolean keepAlive) throws Exception {
+        try (Context context = Context.newBuilder().allowCreateThread(true).allowAllAccess(true).build()) {
+            context.eval("hashemi", SERVER);
+            Value bindings = context.getBindings("hashemi");
+            Value server = bindings.getMember("server").execute((long) port, (long) workers, engine, bindings.getMember(handler));
+            try {
+                URL url = new URL("http://localhost:" + port + "/");
+                /* warm up, so that the measurement sees compiled handlers */
+                hammer(url, clients, Math.max(1, seconds / 2), keepAlive);
+                long requests = hammer(url, clients, seconds, keepAlive);
+                return requests / (double) seconds;
+            } finally {
+                bindings.getMember("tamoom").execute(server);
+            }
+        }
+    }
+
+    private static long hammer(URL url, int clients, int seconds, boolean keepAlive) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong requests = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(keepAlive ? () -> keepAlive(url, running, requests) : () -> {
+                byte[] buffer = new byte[4096];
+                while (running.get()) {
+                    try {
+                        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                        try (InputStream in = connection.getInputStream()) {
+                            while (in.read(buffer) >= 0) {
+                                // drain, so that the connection can be kept alive
+                            }
+                        }
+                        requests.incrementAndGet();
+                    } catch (IOException e) {
+                        // count only completed requests
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return requests.get();
+    }
+
+    /**
+     * Sends requests over one connection until {@code running} is cleared, reading each response
+     * before the next request. Only responses with a {@code Content-Length} are understood.
+     */
+    private static void keepAlive(URL url, AtomicBoolean running, AtomicLong requests) {
+        byte[] request = ("GET " + url.getPath() + " HTTP/1.1\r\nHost: " + url.getHost() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        while (running.get()) {
+            try (Socket socket = new Socket(url.getHost(), url.getPort())) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                while (running.get()) {
+                    out.write(request);
+                    out.flush();
+                    if (!readResponse(in)) {
+                        break;
+                    }
+                    requests.incrementAndGet();
+                }
+            } catch (IOException e) {
+                // count only completed requests
+            }
+        }
+    }
+
+    /** Reads one response, returns {@code false} if the server closed the connection. */
+    private static boolean readResponse(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        long length = 0;
+        boolean close = false;
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                return false;
+            } else if (c != '\n') {
+                line.append((char) c);
+                continue;
+            }
+            String header = line.toString().trim().toLowerCase();
+            line.setLength(0);
+            if (header.isEmpty()) {
+                break;
+            } else if (header.startsWith("content-length:")) {
+                length = Long.parseLong(header.substring("content-length:".length()).trim());
+            } else if (header.equals("connection: close")) {
+                close = true;
+            }
+        }
+        for (long i = 0; i < length; i++) {
+            if (in.read() < 0) {
+                return false;
+            }
+        }
+        return !close;
+    }
+}
@@ -6,7 +6,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.graalvm.polyglot.Context;
@@ -18,14 +20,31 @@ public final class HashemiMain {
 
     private static final String HASHEMI = "hashemi";
 
+    /** Runs the script in this many worker processes, see {@link HashemiSupervisor}. */
+    private static final String WORKERS = "--workers=";
+
+    /** Interval in seconds in which the supervisor prints the summed numbers of the workers. */
+    private static final String WORKER_STATS = "--workerStats=";
+
     /**
      * The main entry point.
      */
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         Source source;
         Map<String, String> options = new HashMap<>();
         String file = null;
+        int workers = 0;
+        long workerStats = 0;
+        List<String> workerArguments = new ArrayList<>();
         for (String arg : args) {
+            if (arg.startsWith(WORKERS)) {
+                workers = parsePositive(arg, WORKERS);
+                continue;
+            } else if (arg.startsWith(WORKER_STATS)) {
+                workerStats = parsePositive(arg, WORKER_STATS);
+                continue;
+            }
+            workerArguments.add(arg);
             if (parseOption(options, arg)) {
                 continue;
             } else {
@@ -35,6 +54,14 @@ public final class HashemiMain {
             }
         }
 
+        if (workers > 0) {
+            if (file == null) {
+                System.err.println(WORKERS + "N needs a source file, the workers can not share the standard input.");
+                System.exit(1);
+            }
+            System.exit(new HashemiSupervisor(workers, workerArguments, workerStats, System.err).run());
+        }
+
         if (file == null) {
             // @formatter:off
             source = Source.newBuilder(HASHEMI, new InputStreamReader(System.in), "<stdin>").build();
@@ -94,6 +121,20 @@ public final class HashemiMain {
         }
     }
 
+    private static int parsePositive(String arg, String option) {
+        try {
+            int value = Integer.parseInt(arg.substring(option.length()));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println(option + " must be followed by a positive number, got " + arg);
+        System.exit(1);
+        return 0;
+    }
+
     private static boolean parseOption(Map<String, String> options, String arg) {
         if (arg.length() <= 2 || !arg.startsWith("--")) {
             return false;
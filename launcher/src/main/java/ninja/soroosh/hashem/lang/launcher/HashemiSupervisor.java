@@ -0,0 +1,231 @@
+package ninja.soroosh.hashem.lang.launcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.graalvm.nativeimage.ImageInfo;
+import org.graalvm.nativeimage.ProcessProperties;
+
+/**
+ * Runs a script in several worker processes, started with {@code hashemi --workers=N file}. Every
+ * worker is a separate JVM (or a separate native process), so handlers never contend for one heap
+ * or one interpreter. The workers run with {@code --hashemi.WebReusePort}, which binds their web
+ * servers with {@code SO_REUSEPORT}: they all listen on the same ports and the kernel spreads the
+ * connections over them.
+ * <p>
+ * The supervisor restarts a worker that exits with an error and stops once every worker exited
+ * normally. Each worker writes the numbers of its web servers to a file, with
+ * {@code --workerStats=SECONDS} the supervisor prints their sum in that interval.
+ */
+final class HashemiSupervisor {
+
+    private static final long POLL_MILLIS = 200;
+    private static final long RESTART_DELAY_MILLIS = 1000;
+
+    /** JVM options of the supervisor that workers must not inherit, they bind a debug port. */
+    private static final String[] AGENT_OPTIONS = {"-agentlib:", "-agentpath:", "-javaagent:", "-Xdebug", "-Xrunjdwp"};
+
+    private final int workers;
+    private final List<String> command;
+    private final List<String> arguments;
+    private final long statsMillis;
+    private final PrintStream err;
+    private final Process[] processes;
+    private final long[] restartAt;
+    private final boolean[] finished;
+    private Path statsDirectory;
+    private int restarts;
+    private boolean stopped;
+
+    /**
+     * @param arguments the command line of the launcher without the supervisor options, passed on
+     *            to every worker
+     */
+    HashemiSupervisor(int workers, List<String> arguments, long statsSeconds, PrintStream err) {
+        this(workers, workerCommand(), arguments, statsSeconds, err);
+    }
+
+    /**
+     * @param command the command that starts a worker, followed by the worker options and the
+     *            arguments
+     */
+    HashemiSupervisor(int workers, List<String> command, List<String> arguments, long statsSeconds, PrintStream err) {
+        this.workers = workers;
+        this.command = command;
+        this.arguments = arguments;
+        this.statsMillis = statsSeconds * 1000;
+        this.err = err;
+        this.processes = new Process[workers];
+        this.restartAt = new long[workers];
+        this.finished = new boolean[workers];
+    }
+
+    int run() throws IOException, InterruptedException {
+        Thread shutdown = new Thread(this::stopWorkers, "hashemi-supervisor-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        try {
+            startWorkers();
+            long nextStats = System.currentTimeMillis() + statsMillis;
+            while (supervise()) {
+                Thread.sleep(POLL_MILLIS);
+                if (statsMillis > 0 && System.currentTimeMillis() >= nextStats) {
+                    printStats();
+                    nextStats += statsMillis;
+                }
+            }
+            return 0;
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(shutdown);
+            stopWorkers();
+        }
+    }
+
+    void startWorkers() throws IOException {
+        statsDirectory = Files.createTempDirectory("hashemi-workers");
+        for (int i = 0; i < workers; i++) {
+            start(i);
+        }
+    }
+
+    /**
+     * Restarts the workers that failed and whose restart delay passed.
+     *
+     * @return whether a worker is still running or about to be restarted
+     */
+    synchronized boolean supervise() throws IOException {
+        if (stopped) {
+            return false;
+        }
+        boolean running = false;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < workers; i++) {
+            if (finished[i]) {
+                continue;
+            }
+            running = true;
+            if (processes[i] == null) {
+                if (now >= restartAt[i]) {
+                    start(i);
+                }
+            } else if (!processes[i].isAlive()) {
+                int exitCode = processes[i].exitValue();
+                processes[i] = null;
+                if (exitCode == 0) {
+                    finished[i] = true;
+                } else {
+                    /* the delay keeps a worker that fails right away from spinning */
+                    err.println("hashemi: worker " + (i + 1) + " exited with code " + exitCode + ", restarting");
+                    restarts++;
+                    restartAt[i] = now + RESTART_DELAY_MILLIS;
+                }
+            }
+        }
+        return running;
+    }
+
+    private void start(int worker) throws IOException {
+        List<String> line = new ArrayList<>(command);
+        line.add("--hashemi.WebReusePort=true");
+        line.add("--hashemi.WebStatsFile=" + statsFile(worker));
+        line.addAll(arguments);
+        processes[worker] = new ProcessBuilder(line).inheritIO().start();
+    }
+
+    private static List<String> workerCommand() {
+        List<String> command = new ArrayList<>();
+        if (ImageInfo.inImageRuntimeCode()) {
+            command.add(ProcessProperties.getExecutableName());
+        } else {
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmOptions(ManagementFactory.getRuntimeMXBean().getInputArguments()));
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(HashemiMain.class.getName());
+        }
+        return command;
+    }
+
+    /**
+     * The JVM options of the supervisor without the agents, e.g. a debugger listening on a port,
+     * which every worker would try to bind again and fail.
+     */
+    static List<String> jvmOptions(List<String> supervisorOptions) {
+        List<String> options = new ArrayList<>();
+        for (String option : supervisorOptions) {
+            boolean agent = false;
+            for (String prefix : AGENT_OPTIONS) {
+                agent |= option.startsWith(prefix);
+            }
+            if (!agent) {
+                options.add(option);
+            }
+        }
+        return options;
+    }
+
+    private Path statsFile(int worker) {
+        return statsDirectory.resolve("worker-" + (worker + 1) + ".properties");
+    }
+
+    /** Prints the sum of the numbers the workers wrote last. */
+    synchronized void printStats() {
+        Map<String, Long> sums = new TreeMap<>();
+        int reporting = 0;
+        for (int i = 0; i < workers; i++) {
+            Path file = statsFile(i);
+            if (!Files.exists(file)) {
+                continue;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                continue;
+            }
+            reporting++;
+            for (String name : properties.stringPropertyNames()) {
+                sums.merge(name, Long.parseLong(properties.getProperty(name)), Long::sum);
+            }
+        }
+        err.println("hashemi: " + reporting + "/" + workers + " workers, " + restarts + " restarts, " + sums);
+    }
+
+    synchronized void stopWorkers() {
+        stopped = true;
+        for (Process process : processes) {
+            if (process != null) {
+                process.destroy();
+            }
+        }
+        for (Process process : processes) {
+            if (process != null) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (statsDirectory != null) {
+            try (Stream<Path> files = Files.list(statsDirectory)) {
+                files.forEach(file -> file.toFile().delete());
+            } catch (IOException e) {
+                /* left to the cleanup of the temporary directory */
+            }
+            statsDirectory.toFile().delete();
+            statsDirectory = null;
+        }
+    }
+}
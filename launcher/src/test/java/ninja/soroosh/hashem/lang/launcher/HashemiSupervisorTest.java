@@ -0,0 +1,55 @@
+package ninja.soroosh.hashem.lang.launcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Runs the supervisor with shell scripts as workers. The script gets the worker options as
+ * {@code $1} and {@code $2}, the second names the file for its numbers.
+ */
+public class HashemiSupervisorTest {
+
+    /** Fails on the first start, then writes its numbers and exits normally. */
+    private static final String FAIL_ONCE = "f=${2#--hashemi.WebStatsFile=}; " +
+                    "if [ ! -e \"$f.failed\" ]; then touch \"$f.failed\"; exit 3; fi; " +
+                    "echo requests=$3 > \"$f\"";
+
+    @Test
+    public void testRestartsFailedWorkersAndSumsTheirStats() throws Exception {
+        Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        HashemiSupervisor supervisor = new HashemiSupervisor(2, Arrays.asList("sh", "-c", FAIL_ONCE, "worker"),
+                        Collections.singletonList("5"), 0, new PrintStream(err, true));
+        try {
+            supervisor.startWorkers();
+            long deadline = System.currentTimeMillis() + 30000;
+            while (supervisor.supervise()) {
+                Assert.assertTrue("the workers did not finish", System.currentTimeMillis() < deadline);
+                Thread.sleep(50);
+            }
+            supervisor.printStats();
+        } finally {
+            supervisor.stopWorkers();
+        }
+        String output = err.toString();
+        Assert.assertTrue(output, output.contains("hashemi: worker 1 exited with code 3, restarting"));
+        Assert.assertTrue(output, output.contains("hashemi: worker 2 exited with code 3, restarting"));
+        Assert.assertTrue(output, output.contains("hashemi: 2/2 workers, 2 restarts, {requests=10}"));
+        /* stopped workers are not started again */
+        Assert.assertFalse(supervisor.supervise());
+    }
+
+    @Test
+    public void testWorkersDoNotInheritAgents() {
+        Assert.assertEquals(Arrays.asList("-Xmx1g", "-Dtruffle.class.path.append=hashem.jar"),
+                        HashemiSupervisor.jvmOptions(Arrays.asList("-Xmx1g", "-agentlib:jdwp=transport=dt_socket,server=y,address=5005",
+                                        "-Dtruffle.class.path.append=hashem.jar", "-javaagent:profiler.jar", "-Xdebug",
+                                        "-Xrunjdwp:transport=dt_socket,address=5006", "-agentpath:/opt/libyjp.so")));
+    }
+}